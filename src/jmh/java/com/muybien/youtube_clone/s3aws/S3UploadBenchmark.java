@@ -0,0 +1,129 @@
+package com.muybien.youtube_clone.s3aws;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end latency of storing a video and its thumbnail: the previous path
+// (blocking client, one file after the other) against the non-blocking client
+// sending both at once. Runs against a local S3 stand-in that answers every
+// PUT after a fixed delay, standing in for the round trip to the bucket.
+// Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args=S3UploadBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class S3UploadBenchmark {
+
+    private static final String BUCKET = "bench-bucket";
+
+    @Param({"20", "100"})
+    private int latencyMillis;
+
+    private HttpServer standIn;
+    private ExecutorService standInExecutor;
+    private S3Client s3Client;
+    private S3AsyncClient s3AsyncClient;
+    private Path video;
+    private Path thumbnail;
+
+    @Setup
+    public void setUp() throws IOException {
+        standInExecutor = Executors.newCachedThreadPool();
+        standIn = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        standIn.createContext("/" + BUCKET + "/", this::handlePut);
+        standIn.setExecutor(standInExecutor);
+        standIn.start();
+
+        var endpoint = URI.create("http://localhost:" + standIn.getAddress().getPort());
+        var credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret"));
+        var serviceConfiguration = S3Configuration.builder()
+                .pathStyleAccessEnabled(true)
+                .checksumValidationEnabled(false)
+                .build();
+        s3Client = S3Client.builder()
+                .region(Region.EU_CENTRAL_1)
+                .credentialsProvider(credentials)
+                .endpointOverride(endpoint)
+                .serviceConfiguration(serviceConfiguration)
+                .build();
+        s3AsyncClient = S3AsyncClient.builder()
+                .region(Region.EU_CENTRAL_1)
+                .credentialsProvider(credentials)
+                .endpointOverride(endpoint)
+                .serviceConfiguration(serviceConfiguration)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(64))
+                .build();
+
+        video = Files.createTempFile("bench-video-", ".mp4");
+        Files.write(video, new byte[4 * 1024 * 1024]);
+        thumbnail = Files.createTempFile("bench-thumbnail-", ".jpeg");
+        Files.write(thumbnail, new byte[64 * 1024]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        s3Client.close();
+        s3AsyncClient.close();
+        standIn.stop(0);
+        standInExecutor.shutdownNow();
+        Files.deleteIfExists(video);
+        Files.deleteIfExists(thumbnail);
+    }
+
+    @Benchmark
+    public void sequentialBlocking() {
+        s3Client.putObject(request("video.mp4", "video/mp4"), RequestBody.fromFile(video));
+        s3Client.putObject(request("thumbnail.jpeg", "image/jpeg"), RequestBody.fromFile(thumbnail));
+    }
+
+    @Benchmark
+    public void concurrentNonBlocking() {
+        CompletableFuture.allOf(
+                s3AsyncClient.putObject(request("video.mp4", "video/mp4"), AsyncRequestBody.fromFile(video)),
+                s3AsyncClient.putObject(request("thumbnail.jpeg", "image/jpeg"), AsyncRequestBody.fromFile(thumbnail))
+        ).join();
+    }
+
+    private PutObjectRequest request(String key, String contentType) {
+        return PutObjectRequest.builder()
+                .bucket(BUCKET)
+                .key(key)
+                .contentType(contentType)
+                .build();
+    }
+
+    private void handlePut(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+}
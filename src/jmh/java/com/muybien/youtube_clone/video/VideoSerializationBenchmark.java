@@ -0,0 +1,112 @@
+package com.muybien.youtube_clone.video;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.muybien.youtube_clone.comment.CommentDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// JSON vs CBOR encoding of the payloads mobile clients fetch most: a video
+// with its comments and a page of cards. Payload sizes are printed on setup.
+// Run with: mvn -Pbenchmark test-compile exec:exec
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VideoSerializationBenchmark {
+
+    @Param({"10", "200"})
+    private int comments;
+
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+    private VideoDTO video;
+    private VideoCardPage page;
+    private byte[] videoJson;
+    private byte[] videoCbor;
+
+    @Setup
+    public void setUp() throws Exception {
+        json = Jackson2ObjectMapperBuilder.json().build();
+        cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Set<CommentDTO> commentSet = IntStream.range(0, comments)
+                .mapToObj(i -> CommentDTO.builder()
+                        .authorName("Author " + i)
+                        .commentInput("Comment number " + i + " on this video, long enough to look realistic.")
+                        .createdDate(now.plusMinutes(i))
+                        .build())
+                .collect(Collectors.toSet());
+        video = VideoDTO.builder()
+                .username("Joe Smith")
+                .title("Sample video")
+                .description("A description of the sample video.")
+                .videoUrl("https://bucket.s3.amazonaws.com/video.mp4")
+                .thumbnailUrl("https://bucket.s3.amazonaws.com/thumbnail.jpg")
+                .videoViewCounter(new AtomicInteger(123_456))
+                .likes(new AtomicInteger(4_321))
+                .disLikes(new AtomicInteger(21))
+                .comments(commentSet)
+                .build();
+        List<VideoCardDTO> cards = IntStream.range(0, 20)
+                .mapToObj(i -> VideoCardDTO.builder()
+                        .id(i)
+                        .username("Joe Smith")
+                        .title("Video " + i)
+                        .thumbnailUrl("https://bucket.s3.amazonaws.com/thumbnail-" + i + ".jpg")
+                        .videoViewCounter(new AtomicInteger(i * 1000))
+                        .likes(new AtomicInteger(i * 10))
+                        .disLikes(new AtomicInteger(i))
+                        .createdDate(now.minusDays(i))
+                        .build())
+                .toList();
+        page = new VideoCardPage(cards, "bmV4dC1jdXJzb3I");
+
+        videoJson = json.writeValueAsBytes(video);
+        videoCbor = cbor.writeValueAsBytes(video);
+        System.out.printf("%n[comments=%d] video: json=%d B, cbor=%d B; card page: json=%d B, cbor=%d B%n",
+                comments, videoJson.length, videoCbor.length,
+                json.writeValueAsBytes(page).length, cbor.writeValueAsBytes(page).length);
+    }
+
+    @Benchmark
+    public byte[] writeVideoJson() throws Exception {
+        return json.writeValueAsBytes(video);
+    }
+
+    @Benchmark
+    public byte[] writeVideoCbor() throws Exception {
+        return cbor.writeValueAsBytes(video);
+    }
+
+    @Benchmark
+    public byte[] writeCardPageJson() throws Exception {
+        return json.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeCardPageCbor() throws Exception {
+        return cbor.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public VideoDTO readVideoJson() throws Exception {
+        return json.readValue(videoJson, VideoDTO.class);
+    }
+
+    @Benchmark
+    public VideoDTO readVideoCbor() throws Exception {
+        return cbor.readValue(videoCbor, VideoDTO.class);
+    }
+}
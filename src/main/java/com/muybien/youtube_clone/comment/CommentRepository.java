@@ -1,6 +1,16 @@
 package com.muybien.youtube_clone.comment;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+
+    // deletes at most limit rows, so each statement holds its locks briefly
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM comment WHERE video_id = :videoId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByVideoId(@Param("videoId") Integer videoId, @Param("limit") int limit);
 }
@@ -1,6 +1,7 @@
 package com.muybien.youtube_clone.comment;
 
 import com.muybien.youtube_clone.user.User;
+import com.muybien.youtube_clone.video.VideoDetailsCache;
 import com.muybien.youtube_clone.video.VideoService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -18,6 +19,7 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final CommentDTOMapper commentDTOMapper;
     private final VideoService videoService;
+    private final VideoDetailsCache videoDetailsCache;
 
     @Transactional
     public void addComment(Integer videoId, CommentRequest request, Authentication connectedUser) {
@@ -32,6 +34,7 @@ public class CommentService {
                 .build();
 
         commentRepository.save(comment);
+        videoDetailsCache.evict(videoId);
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,22 @@
+package com.muybien.youtube_clone.common;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// stores counters as plain INT columns so they can be
+// indexed, sorted on and updated in place by SQL
+@Converter
+public class AtomicIntegerConverter implements AttributeConverter<AtomicInteger, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(AtomicInteger attribute) {
+        return attribute == null ? 0 : attribute.get();
+    }
+
+    @Override
+    public AtomicInteger convertToEntityAttribute(Integer dbData) {
+        return new AtomicInteger(dbData == null ? 0 : dbData);
+    }
+}
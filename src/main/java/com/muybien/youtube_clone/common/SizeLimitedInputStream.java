@@ -0,0 +1,59 @@
+package com.muybien.youtube_clone.common;
+
+import com.muybien.youtube_clone.handler.UploadTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Fails the read once more than maxBytes have been consumed, for bodies whose
+// size isn't known up front (e.g. chunked uploads). Callers whose storage
+// client wraps the failure can still tell with limitExceeded.
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private long consumed;
+    private volatile boolean limitExceeded;
+
+    public SizeLimitedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    public boolean limitExceeded() {
+        return limitExceeded;
+    }
+
+    private void count(long bytes) {
+        consumed += bytes;
+        if (consumed > maxBytes) {
+            limitExceeded = true;
+            throw new UploadTooLargeException("File exceeds the maximum upload size of " + maxBytes + " bytes.", null);
+        }
+    }
+}
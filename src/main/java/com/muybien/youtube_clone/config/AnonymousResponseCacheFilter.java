@@ -0,0 +1,215 @@
+package com.muybien.youtube_clone.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Microcache for guest GETs of the public video endpoints, whose responses
+// are the same for every anonymous caller. Complete responses are kept for a
+// short TTL; once expired, an entry is still served for a while as stale
+// while exactly one request per key goes through the application to refresh
+// it. Misses with nothing to serve are collapsed the same way: one request
+// renders the response and the others wait for it. Requests carrying
+// Authorization always bypass the cache.
+public class AnonymousResponseCacheFilter extends OncePerRequestFilter {
+
+    static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final Pattern CACHEABLE_PATH = Pattern.compile("/videos(/cards|/\\d+)?");
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final long ttlNanos;
+    private final Cache<String, CachedResponse> responses;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedResponse>> loading = new ConcurrentHashMap<>();
+
+    public AnonymousResponseCacheFilter(Duration ttl, Duration staleTtl, long maxBytes) {
+        this.ttlNanos = ttl.toNanos();
+        this.responses = Caffeine.newBuilder()
+                .expireAfterWrite(ttl.plus(staleTtl))
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse response) ->
+                        key.length() + response.body().length + ENTRY_OVERHEAD_BYTES)
+                // evict on the writing request, so the budget holds even under bursts
+                .executor(Runnable::run)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !"GET".equals(request.getMethod())
+                || request.getHeader(HttpHeaders.AUTHORIZATION) != null
+                || !CACHEABLE_PATH.matcher(path).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        String key = cacheKey(request);
+        CachedResponse cached = responses.getIfPresent(key);
+
+        if (cached != null && System.nanoTime() - cached.storedAt() < ttlNanos) {
+            write(cached, "HIT", request, response);
+            return;
+        }
+
+        var load = new CompletableFuture<CachedResponse>();
+        CompletableFuture<CachedResponse> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            if (cached != null) {
+                write(cached, "STALE", request, response);
+                return;
+            }
+            CachedResponse loaded = running.join();
+            if (loaded != null) {
+                write(loaded, "HIT", request, response);
+                return;
+            }
+            // the response wasn't cacheable (an error, say), so render our own
+            fetchAndStore(key, "MISS", request, response, filterChain);
+            return;
+        }
+
+        CachedResponse stored = null;
+        try {
+            stored = fetchAndStore(key, cached == null ? "MISS" : "REFRESH", request, response, filterChain);
+        } finally {
+            loading.remove(key);
+            load.complete(stored);
+        }
+    }
+
+    // returns what was stored, or null when the response can't be cached
+    private CachedResponse fetchAndStore(String key,
+                               String cacheStatus,
+                               HttpServletRequest request,
+                               HttpServletResponse response,
+                               FilterChain filterChain) throws ServletException, IOException {
+        var wrapper = new ContentCachingResponseWrapper(response);
+        wrapper.setHeader(CACHE_STATUS_HEADER, cacheStatus);
+        filterChain.doFilter(new UnconditionalRequest(request), wrapper);
+
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && !request.isAsyncStarted()) {
+            var fresh = new CachedResponse(
+                    wrapper.getContentType(),
+                    wrapper.getHeader(HttpHeaders.ETAG),
+                    wrapper.getHeader(HttpHeaders.CACHE_CONTROL),
+                    wrapper.getHeaders(HttpHeaders.VARY).isEmpty()
+                            ? null
+                            : String.join(", ", wrapper.getHeaders(HttpHeaders.VARY)),
+                    wrapper.getContentAsByteArray(),
+                    System.nanoTime());
+            responses.put(key, fresh);
+            if (matches(request, fresh.eTag())) {
+                wrapper.resetBuffer();
+                writeNotModified(fresh, response);
+                return fresh;
+            }
+            wrapper.copyBodyToResponse();
+            return fresh;
+        }
+        wrapper.copyBodyToResponse();
+        return null;
+    }
+
+    private void write(CachedResponse cached,
+                       String cacheStatus,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        response.setHeader(CACHE_STATUS_HEADER, cacheStatus);
+        if (matches(request, cached.eTag())) {
+            writeNotModified(cached, response);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.contentType());
+        setHeaderIfPresent(response, HttpHeaders.ETAG, cached.eTag());
+        setHeaderIfPresent(response, HttpHeaders.CACHE_CONTROL, cached.cacheControl());
+        setHeaderIfPresent(response, HttpHeaders.VARY, cached.vary());
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    private void writeNotModified(CachedResponse cached, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        setHeaderIfPresent(response, HttpHeaders.ETAG, cached.eTag());
+        setHeaderIfPresent(response, HttpHeaders.CACHE_CONTROL, cached.cacheControl());
+        setHeaderIfPresent(response, HttpHeaders.VARY, cached.vary());
+    }
+
+    private boolean matches(HttpServletRequest request, String eTag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(eTag));
+    }
+
+    private void setHeaderIfPresent(HttpServletResponse response, String name, String value) {
+        if (value != null) {
+            response.setHeader(name, value);
+        }
+    }
+
+    // the representation depends on the query (cursor, fields, ...) and on the
+    // negotiated format
+    private String cacheKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return request.getRequestURI()
+                + (query == null ? "" : "?" + query)
+                + "|" + request.getHeader(HttpHeaders.ACCEPT);
+    }
+
+    // a conditional request may be answered with an empty 304, which can't be
+    // stored, so the application always renders the full response here
+    private static final class UnconditionalRequest extends HttpServletRequestWrapper {
+
+        UnconditionalRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)
+                    ? Collections.emptyEnumeration()
+                    : super.getHeaders(name);
+        }
+    }
+
+    private record CachedResponse(
+            String contentType,
+            String eTag,
+            String cacheControl,
+            String vary,
+            byte[] body,
+            long storedAt
+    ) {
+    }
+}
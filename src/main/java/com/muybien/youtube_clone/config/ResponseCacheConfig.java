@@ -0,0 +1,30 @@
+package com.muybien.youtube_clone.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "video.response-cache.enabled", matchIfMissing = true)
+public class ResponseCacheConfig {
+
+    // ordered after the security filter chain so cached responses carry the
+    // same security headers and only requests that passed it are served
+    @Bean
+    public FilterRegistrationBean<AnonymousResponseCacheFilter> anonymousResponseCacheFilter(
+            @Value("${video.response-cache.ttl:2s}") Duration ttl,
+            @Value("${video.response-cache.stale-ttl:30s}") Duration staleTtl,
+            @Value("${video.response-cache.max-size:64MB}") DataSize maxSize
+    ) {
+        var registration = new FilterRegistrationBean<>(
+                new AnonymousResponseCacheFilter(ttl, staleTtl, maxSize.toBytes()));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
@@ -3,6 +3,7 @@ package com.muybien.youtube_clone.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -25,11 +26,18 @@ public class SecurityConfiguration {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth ->
-                        auth.requestMatchers(
-                                        "/auth/**",
-                                        "/videos/{videoId}",
-                                        "/videos"
-                                )
+                        auth.requestMatchers("/auth/**")
+                                .permitAll()
+                                .requestMatchers(HttpMethod.GET, "/videos", "/videos/cards", "/videos/{videoId:\\d+}",
+                                        "/videos/{videoId:\\d+}/stream", "/videos/{videoId:\\d+}/thumbnail",
+                                        "/videos/{videoId:\\d+}/thumbnail/{width:\\d+}")
+                                .permitAll()
+                                .requestMatchers(HttpMethod.HEAD, "/videos/{videoId:\\d+}/stream", "/videos/{videoId:\\d+}/thumbnail",
+                                        "/videos/{videoId:\\d+}/thumbnail/{width:\\d+}")
+                                .permitAll()
+                                .requestMatchers(HttpMethod.POST, "/videos/{videoId}/view")
+                                .permitAll()
+                                .requestMatchers(HttpMethod.GET, "/media/*")
                                 .permitAll()
                                 .anyRequest().authenticated()
                 )
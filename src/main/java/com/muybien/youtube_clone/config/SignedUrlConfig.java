@@ -0,0 +1,18 @@
+package com.muybien.youtube_clone.config;
+
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SignedUrlConfig {
+
+    // after the security filter chain, like the response cache, whose paths it doesn't share
+    @Bean
+    public FilterRegistrationBean<SignedUrlFilter> signedUrlFilter(UrlSigner urlSigner) {
+        var registration = new FilterRegistrationBean<>(new SignedUrlFilter(urlSigner));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
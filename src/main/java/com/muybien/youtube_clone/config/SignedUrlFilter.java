@@ -0,0 +1,72 @@
+package com.muybien.youtube_clone.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// Lets requests for video files through only with a valid, unexpired
+// signature from UrlSigner. Nothing is looked up, the check is an HMAC over
+// the path. Responses may be cached publicly until the URL expires.
+public class SignedUrlFilter extends OncePerRequestFilter {
+
+    // /media serves the local backend's files; upload responses sign the
+    // URLs of them they hand out, see PlaybackUrls
+    private static final Pattern SIGNED_PATH = Pattern.compile("/videos/\\d+/(stream|thumbnail(/\\d+)?)|/media/[^/]+");
+    // decoded and without ;params, the way the security matchers and the
+    // handler mappings see it, so /videos/1/%73tream can't slip past
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    static {
+        PATH_HELPER.setUrlDecode(true);
+        PATH_HELPER.setRemoveSemicolonContent(true);
+    }
+
+    private final UrlSigner urlSigner;
+
+    public SignedUrlFilter(UrlSigner urlSigner) {
+        this.urlSigner = urlSigner;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !SIGNED_PATH.matcher(pathOf(request)).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        Optional<Instant> expiresAt = urlSigner.verify(pathOf(request),
+                request.getParameter(UrlSigner.EXPIRES_PARAM),
+                request.getParameter(UrlSigner.SIGNATURE_PARAM));
+        if (expiresAt.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("The link is invalid or has expired.");
+            return;
+        }
+        Duration remaining = Duration.between(Instant.now(), expiresAt.get());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(remaining).cachePublic().getHeaderValue());
+        filterChain.doFilter(request, response);
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return PATH_HELPER.getPathWithinApplication(request);
+    }
+}
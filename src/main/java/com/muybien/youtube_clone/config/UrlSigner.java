@@ -0,0 +1,105 @@
+package com.muybien.youtube_clone.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+// Signs URLs with an HMAC-SHA256 of the path and its expiry, so they can be
+// checked by SignedUrlFilter from the request alone. The expiry is rounded up
+// to the end of a time bucket: every URL issued for a path within one bucket
+// is identical, so browsers and proxies in front of the app keep hitting the
+// same cache key, and it is valid for at least ttl. While keys are rotated,
+// URLs signed with the previous key are still accepted.
+@Service
+public class UrlSigner {
+
+    public static final String EXPIRES_PARAM = "expires";
+    public static final String SIGNATURE_PARAM = "signature";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Mac mac;
+    private final Mac previousMac;
+    private final String baseUrl;
+    private final long ttlSeconds;
+    private final long bucketSeconds;
+
+    public UrlSigner(@Value("${security.signed-urls.secret-key}") String secretKey,
+                     @Value("${security.signed-urls.previous-secret-key:}") String previousSecretKey,
+                     @Value("${security.signed-urls.base-url:http://localhost:8080/api/v1}") String baseUrl,
+                     @Value("${security.signed-urls.ttl:1h}") Duration ttl,
+                     @Value("${security.signed-urls.bucket:5m}") Duration bucket) {
+        this.mac = mac(secretKey);
+        this.previousMac = StringUtils.hasText(previousSecretKey) ? mac(previousSecretKey) : null;
+        this.baseUrl = StringUtils.trimTrailingCharacter(baseUrl, '/');
+        this.ttlSeconds = ttl.toSeconds();
+        this.bucketSeconds = Math.max(1, bucket.toSeconds());
+    }
+
+    // path is relative to the context path, e.g. /videos/1/stream
+    public String sign(String path) {
+        return sign(path, Instant.now());
+    }
+
+    // the expiry when the signature is valid and not yet expired
+    public Optional<Instant> verify(String path, String expires, String signature) {
+        if (expires == null || signature == null) {
+            return Optional.empty();
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(expires);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (expiresAt <= Instant.now().getEpochSecond()) {
+            return Optional.empty();
+        }
+        byte[] presented = signature.getBytes(StandardCharsets.US_ASCII);
+        boolean valid = MessageDigest.isEqual(presented, signature(mac, path, expiresAt))
+                || previousMac != null && MessageDigest.isEqual(presented, signature(previousMac, path, expiresAt));
+        return valid ? Optional.of(Instant.ofEpochSecond(expiresAt)) : Optional.empty();
+    }
+
+    String sign(String path, Instant now) {
+        long expiresAt = expiryFor(now);
+        return baseUrl + path + "?" + EXPIRES_PARAM + "=" + expiresAt
+                + "&" + SIGNATURE_PARAM + "=" + new String(signature(mac, path, expiresAt), StandardCharsets.US_ASCII);
+    }
+
+    long expiryFor(Instant now) {
+        long earliest = now.getEpochSecond() + ttlSeconds;
+        return Math.ceilDiv(earliest, bucketSeconds) * bucketSeconds;
+    }
+
+    // a Mac isn't thread-safe, a clone of the initialized one is cheaper than a new instance
+    private static byte[] signature(Mac prototype, String path, long expiresAt) {
+        Mac mac;
+        try {
+            mac = (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] digest = mac.doFinal((path + "\n" + expiresAt).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encode(digest);
+    }
+
+    private static Mac mac(String secretKey) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Couldn't initialize " + ALGORITHM, e);
+        }
+    }
+}
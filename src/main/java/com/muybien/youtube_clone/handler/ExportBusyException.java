@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class ExportBusyException extends RuntimeException {
+    public ExportBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.muybien.youtube_clone.handler;
 
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -33,6 +34,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
     }
 
+    @ExceptionHandler(UploadTooLargeException.class)
+    public ResponseEntity<String> handleUploadTooLargeException(UploadTooLargeException e) {
+        return ResponseEntity.status(PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
     @ExceptionHandler(FileFetchUrlException.class)
     public ResponseEntity<String> handleFileFetchUrlException(FileFetchUrlException e) {
         return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
@@ -68,6 +74,77 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(NOT_FOUND).body(e.getMessage());
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException e) {
+        return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidVideoIdsException.class)
+    public ResponseEntity<String> handleInvalidVideoIdsException(InvalidVideoIdsException e) {
+        return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<String> handleInvalidFieldsException(InvalidFieldsException e) {
+        return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidVideoMetadataException.class)
+    public ResponseEntity<String> handleInvalidVideoMetadataException(InvalidVideoMetadataException e) {
+        return ResponseEntity.status(BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<String> handleIngestQueueFullException(IngestQueueFullException e) {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(IngestJobNotFoundException.class)
+    public ResponseEntity<String> handleIngestJobNotFoundException(IngestJobNotFoundException e) {
+        return ResponseEntity.status(NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(PresignedUploadNotFoundException.class)
+    public ResponseEntity<String> handlePresignedUploadNotFoundException(PresignedUploadNotFoundException e) {
+        return ResponseEntity.status(NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(ResumableUploadNotFoundException.class)
+    public ResponseEntity<String> handleResumableUploadNotFoundException(ResumableUploadNotFoundException e) {
+        return ResponseEntity.status(NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(UploadVerificationException.class)
+    public ResponseEntity<String> handleUploadVerificationException(UploadVerificationException e) {
+        return ResponseEntity.status(UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    @ExceptionHandler(StorageOperationNotSupportedException.class)
+    public ResponseEntity<String> handleStorageOperationNotSupportedException(StorageOperationNotSupportedException e) {
+        return ResponseEntity.status(NOT_IMPLEMENTED).body(e.getMessage());
+    }
+
+    @ExceptionHandler(ExportBusyException.class)
+    public ResponseEntity<String> handleExportBusyException(ExportBusyException e) {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(StorageUnavailableException.class)
+    public ResponseEntity<String> handleStorageUnavailableException(StorageUnavailableException e) {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(MediaNotFoundException.class)
+    public ResponseEntity<String> handleMediaNotFoundException(MediaNotFoundException e) {
+        return ResponseEntity.status(NOT_FOUND).body(e.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Object> handleValidationExceptions(
             MethodArgumentNotValidException e) {
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class IngestJobNotFoundException extends RuntimeException {
+    public IngestJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class IngestQueueFullException extends RuntimeException {
+    public IngestQueueFullException(String message) {
+        super(message);
+    }
+}
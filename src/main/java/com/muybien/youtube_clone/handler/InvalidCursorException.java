@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class InvalidFieldsException extends RuntimeException {
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+}
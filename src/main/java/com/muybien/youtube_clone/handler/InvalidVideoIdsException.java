@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class InvalidVideoIdsException extends RuntimeException {
+    public InvalidVideoIdsException(String message) {
+        super(message);
+    }
+}
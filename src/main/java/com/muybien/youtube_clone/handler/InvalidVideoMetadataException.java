@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class InvalidVideoMetadataException extends RuntimeException {
+    public InvalidVideoMetadataException(String message) {
+        super(message);
+    }
+}
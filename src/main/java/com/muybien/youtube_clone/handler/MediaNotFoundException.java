@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class MediaNotFoundException extends RuntimeException {
+    public MediaNotFoundException(String message) {
+        super(message);
+    }
+}
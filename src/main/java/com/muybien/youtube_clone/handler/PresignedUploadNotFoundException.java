@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class PresignedUploadNotFoundException extends RuntimeException {
+    public PresignedUploadNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class ResumableUploadNotFoundException extends RuntimeException {
+    public ResumableUploadNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class StorageOperationNotSupportedException extends RuntimeException {
+    public StorageOperationNotSupportedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.muybien.youtube_clone.handler;
+
+public class StorageUnavailableException extends RuntimeException {
+    public StorageUnavailableException(String message) {
+        super(message);
+    }
+
+    public StorageUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class UploadTooLargeException extends FileUploadException {
+    public UploadTooLargeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.handler;
+
+public class UploadVerificationException extends RuntimeException {
+    public UploadVerificationException(String message) {
+        super(message);
+    }
+}
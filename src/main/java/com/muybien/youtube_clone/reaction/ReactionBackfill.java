@@ -0,0 +1,22 @@
+package com.muybien.youtube_clone.reaction;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+// A legacy reaction table whose rows have been copied into
+// user_video_reaction, recorded in the same transaction as the copy so it's
+// never repeated. Only written by VideoReactionReconciler, with plain SQL.
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "reaction_backfill")
+public class ReactionBackfill extends BaseEntity {
+
+    @Id
+    @Column(length = 64)
+    private String tableName;
+}
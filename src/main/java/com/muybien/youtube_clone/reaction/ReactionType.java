@@ -0,0 +1,6 @@
+package com.muybien.youtube_clone.reaction;
+
+public enum ReactionType {
+    LIKE,
+    DISLIKE
+}
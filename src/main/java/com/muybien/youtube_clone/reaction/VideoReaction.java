@@ -0,0 +1,32 @@
+package com.muybien.youtube_clone.reaction;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "user_video_reaction",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_user_video_reaction_user_video", columnNames = {"user_id", "video_id"}),
+        indexes = @Index(name = "idx_user_video_reaction_video_state", columnList = "video_id, state"))
+public class VideoReaction extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "video_id", nullable = false)
+    private Integer videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ReactionType state;
+}
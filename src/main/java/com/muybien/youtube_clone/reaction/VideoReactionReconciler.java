@@ -0,0 +1,134 @@
+package com.muybien.youtube_clone.reaction;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+// Counters on the video row are maintained incrementally by every toggle;
+// this job periodically recounts them from user_video_reaction, which is
+// the source of truth, to repair any drift. Runs in id ranges so each
+// statement only locks a bounded number of video rows.
+//
+// Reactions used to live in the user_liked_videos/user_dis_liked_videos
+// collection tables. On startup each one still there is renamed with a
+// _backfilling suffix, so nothing else uses it, copied into
+// user_video_reaction in the same transaction that records the copy in
+// reaction_backfill, and finally renamed to _backfilled. MySQL commits
+// around a rename, so a crash can stop between the steps; the next startup
+// resumes from the table's name and the record, and a copy that committed
+// is never repeated, which would resurrect reactions removed since.
+// Recounting waits until every table is done; against an empty reaction
+// table it would zero every video's counters.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VideoReactionReconciler {
+
+    static final int CHUNK_SIZE = 1000;
+    static final String RECONCILE_SQL = """
+            UPDATE video v
+            SET v.likes = (SELECT COUNT(*) FROM user_video_reaction r
+                           WHERE r.video_id = v.id AND r.state = 'LIKE'),
+                v.dis_likes = (SELECT COUNT(*) FROM user_video_reaction r
+                               WHERE r.video_id = v.id AND r.state = 'DISLIKE')
+            WHERE v.id BETWEEN ? AND ?
+            """;
+
+    // likes first, so a user listed in both tables keeps the like
+    static final List<LegacyTable> LEGACY_TABLES = List.of(
+            new LegacyTable("user_liked_videos", "liked_videos", ReactionType.LIKE),
+            new LegacyTable("user_dis_liked_videos", "dis_liked_videos", ReactionType.DISLIKE));
+    static final String BACKFILL_SQL = """
+            INSERT IGNORE INTO user_video_reaction (user_id, video_id, state, created_date)
+            SELECT l.user_id, l.%s, '%s', NOW(6) FROM %s l
+            """;
+    static final String TABLE_EXISTS_SQL =
+            "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+    static final String BACKFILLED_SQL = "SELECT COUNT(*) FROM reaction_backfill WHERE table_name = ?";
+    static final String MARK_BACKFILLED_SQL =
+            "INSERT INTO reaction_backfill (table_name, created_date) VALUES (?, NOW(6))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLegacyReactions() {
+        for (LegacyTable table : LEGACY_TABLES) {
+            try {
+                backfill(table);
+            } catch (DataAccessException e) {
+                // another instance may have got there first; otherwise the next startup resumes
+                log.warn("Failed to backfill reactions from {}.", table.name(), e);
+            }
+        }
+    }
+
+    private void backfill(LegacyTable table) {
+        if (exists(table.name())) {
+            jdbcTemplate.execute("RENAME TABLE " + table.name() + " TO " + table.backfilling());
+        }
+        if (!exists(table.backfilling())) {
+            return;
+        }
+        if (!isBackfilled(table)) {
+            Integer copied = transactionTemplate.execute(status -> {
+                // first, so a copy running in another instance waits here and then fails on the key
+                jdbcTemplate.update(MARK_BACKFILLED_SQL, table.name());
+                return jdbcTemplate.update(BACKFILL_SQL.formatted(table.videoColumn(), table.state(), table.backfilling()));
+            });
+            log.info("Backfilled {} reactions from {}.", copied, table.name());
+        }
+        jdbcTemplate.execute("RENAME TABLE " + table.backfilling() + " TO " + table.name() + "_backfilled");
+    }
+
+    @Scheduled(cron = "${video.reactions.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        if (LEGACY_TABLES.stream().anyMatch(table -> exists(table.name()) || exists(table.backfilling()))) {
+            log.warn("Skipping reaction counter reconciliation until the legacy reaction tables are backfilled.");
+            return;
+        }
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM video");
+        if (bounds.get("min_id") == null) {
+            return;
+        }
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+
+        int updated = 0;
+        for (long from = minId; from <= maxId; from += CHUNK_SIZE) {
+            long to = Math.min(from + CHUNK_SIZE - 1, maxId);
+            try {
+                updated += jdbcTemplate.update(RECONCILE_SQL, from, to);
+            } catch (DataAccessException e) {
+                log.warn("Failed to reconcile reaction counters for videos {}-{}.", from, to, e);
+            }
+        }
+        log.info("Reconciled reaction counters, {} video rows visited.", updated);
+    }
+
+    private boolean exists(String table) {
+        Integer count = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean isBackfilled(LegacyTable table) {
+        Integer count = jdbcTemplate.queryForObject(BACKFILLED_SQL, Integer.class, table.name());
+        return count != null && count > 0;
+    }
+
+    record LegacyTable(String name, String videoColumn, ReactionType state) {
+
+        String backfilling() {
+            return name + "_backfilling";
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.muybien.youtube_clone.reaction;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface VideoReactionRepository extends JpaRepository<VideoReaction, Long> {
+
+    // not locked itself: toggles lock the video row first, see
+    // VideoRepository.lockLiveById
+    @Query("select r.state from VideoReaction r where r.userId = :userId and r.videoId = :videoId")
+    Optional<ReactionType> findState(@Param("userId") Integer userId,
+                                     @Param("videoId") Integer videoId);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_video_reaction (user_id, video_id, state, created_date)
+            VALUES (:userId, :videoId, :state, NOW(6)) AS new
+            ON DUPLICATE KEY UPDATE state = new.state, last_modified_date = NOW(6)
+            """, nativeQuery = true)
+    void upsertState(@Param("userId") Integer userId,
+                     @Param("videoId") Integer videoId,
+                     @Param("state") String state);
+
+    @Modifying
+    @Query("delete from VideoReaction r where r.userId = :userId and r.videoId = :videoId")
+    void deleteByUserIdAndVideoId(@Param("userId") Integer userId,
+                                  @Param("videoId") Integer videoId);
+
+    // deletes at most limit rows, so each statement holds its locks briefly
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_video_reaction WHERE video_id = :videoId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByVideoId(@Param("videoId") Integer videoId, @Param("limit") int limit);
+}
@@ -0,0 +1,58 @@
+package com.muybien.youtube_clone.s3aws;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+// Reports every buffer handed to the HTTP client, e.g. to track progress.
+// A retried request is read again, so the count can exceed the length.
+class CountingAsyncRequestBody implements AsyncRequestBody {
+
+    private final AsyncRequestBody delegate;
+    private final LongConsumer onTransferred;
+
+    CountingAsyncRequestBody(AsyncRequestBody delegate, LongConsumer onTransferred) {
+        this.delegate = delegate;
+        this.onTransferred = onTransferred;
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public String contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        delegate.subscribe(new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                onTransferred.accept(buffer.remaining());
+                subscriber.onNext(buffer);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                subscriber.onError(error);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+    }
+}
@@ -1,15 +1,28 @@
 package com.muybien.youtube_clone.s3aws;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
 import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
 public class S3Config {
 
     private final Region region = Region.of(System.getenv("AWS_DEFAULT_REGION"));
@@ -19,11 +32,64 @@ public class S3Config {
         return EnvironmentVariableCredentialsProvider.create();
     }
 
+    // aws.s3.endpoint points the client at an S3-compatible stand-in
+    // (e.g. MinIO or LocalStack) for local runs and integration tests
+    @Bean
+    public S3Client s3Client(EnvironmentVariableCredentialsProvider credentialsProvider,
+                             @Value("${aws.s3.endpoint:}") String endpoint) {
+        var builder = S3Client.builder()
+                .credentialsProvider(credentialsProvider)
+                .region(region);
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint))
+                    .forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    // Non-blocking client on a small Netty event loop. max-concurrency caps the
+    // open connections shared by all transfers and their parts; requests beyond
+    // it wait for a connection instead of opening more.
     @Bean
-    public S3Client s3Client(EnvironmentVariableCredentialsProvider credentialsProvider) {
-        return S3Client.builder()
+    public S3AsyncClient s3AsyncClient(EnvironmentVariableCredentialsProvider credentialsProvider,
+                                       @Value("${aws.s3.endpoint:}") String endpoint,
+                                       @Value("${aws.s3.async.max-concurrency:64}") int maxConcurrency,
+                                       @Value("${aws.s3.async.max-pending-connection-acquires:10000}") int maxPendingAcquires,
+                                       @Value("${aws.s3.async.connection-acquisition-timeout:30s}") Duration acquisitionTimeout,
+                                       @Value("${aws.s3.multipart.threshold:64MB}") DataSize multipartThreshold,
+                                       @Value("${aws.s3.multipart.part-size:16MB}") DataSize partSize) {
+        var builder = S3AsyncClient.builder()
                 .credentialsProvider(credentialsProvider)
                 .region(region)
-                .build();
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .maxPendingConnectionAcquires(maxPendingAcquires)
+                        .connectionAcquisitionTimeout(acquisitionTimeout))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(multipartThreshold.toBytes())
+                        .minimumPartSizeInBytes(partSize.toBytes())
+                        .build());
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint))
+                    .forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    // signs URLs for uploads that go straight from the client to the bucket
+    @Bean
+    public S3Presigner s3Presigner(EnvironmentVariableCredentialsProvider credentialsProvider,
+                                   @Value("${aws.s3.endpoint:}") String endpoint) {
+        var builder = S3Presigner.builder()
+                .credentialsProvider(credentialsProvider)
+                .region(region);
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint))
+                    .serviceConfiguration(S3Configuration.builder()
+                            .pathStyleAccessEnabled(true)
+                            .build());
+        }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
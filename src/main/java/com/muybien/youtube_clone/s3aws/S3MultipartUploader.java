@@ -0,0 +1,170 @@
+package com.muybien.youtube_clone.s3aws;
+
+import com.muybien.youtube_clone.handler.FileUploadException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// Uploads streams of unknown length through the S3 multipart API (files of
+// known size use the async client's own multipart support). Parts are read
+// from the stream one after another and uploaded concurrently; at most
+// `concurrency` parts of one upload are buffered or in flight at a time, so
+// memory stays at concurrency * partSize per upload. A failed part is retried
+// on its own, and if it keeps failing the whole upload is aborted so no
+// orphaned parts are left behind (and billed) in the bucket.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3MultipartUploader {
+
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    private final S3Client s3Client;
+    private final int partSize;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final ExecutorService executor;
+
+    public S3MultipartUploader(S3Client s3Client,
+                               @Value("${aws.s3.multipart.part-size:16MB}") DataSize partSize,
+                               @Value("${aws.s3.multipart.concurrency:4}") int concurrency,
+                               @Value("${aws.s3.multipart.max-attempts:3}") int maxAttempts) {
+        this.s3Client = s3Client;
+        this.partSize = Math.toIntExact(partSize.toBytes());
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.executor = Executors.newFixedThreadPool(concurrency, Thread.ofPlatform()
+                .name("s3-part-upload-", 0)
+                .daemon(true)
+                .factory());
+    }
+
+    public void upload(String bucket, String key, InputStream in, String contentType, Map<String, String> metadata) {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .metadata(metadata)
+                .build()).uploadId();
+
+        var inFlight = new Semaphore(concurrency);
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            byte[] part = in.readNBytes(partSize);
+            // an empty stream still needs one (empty) part to complete
+            do {
+                inFlight.acquire();
+                if (parts.stream().anyMatch(future -> future.state() == Future.State.FAILED)) {
+                    inFlight.release();
+                    break;
+                }
+                int number = partNumber++;
+                byte[] bytes = part;
+                parts.add(executor.submit(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, number, bytes);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                part = in.readNBytes(partSize);
+            } while (part.length > 0);
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> future : parts) {
+                completedParts.add(future.get());
+            }
+            completedParts.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+        } catch (IOException e) {
+            abort(bucket, key, uploadId, parts);
+            throw new FileUploadException("Failed to read file input stream", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, parts);
+            throw new FileUploadException("Upload of " + key + " was interrupted", e);
+        } catch (ExecutionException | SdkException e) {
+            abort(bucket, key, uploadId, parts);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new FileUploadException("Failed to upload file " + key, cause);
+        } catch (RuntimeException e) {
+            abort(bucket, key, uploadId, parts);
+            throw e;
+        }
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] bytes)
+            throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) bytes.length)
+                        .build(), RequestBody.fromBytes(bytes));
+                return CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build();
+            } catch (SdkException e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                log.warn("Upload of part {} of {} failed (attempt {}/{}), retrying.",
+                        partNumber, key, attempt, maxAttempts, e);
+                Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+            }
+        }
+    }
+
+    // client errors other than throttling won't succeed on a retry
+    private boolean isRetryable(SdkException e) {
+        if (e instanceof S3Exception s3Exception) {
+            int status = s3Exception.statusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        return true;
+    }
+
+    private void abort(String bucket, String key, String uploadId, List<Future<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkException e) {
+            log.error("Failed to abort multipart upload {} of {}, its parts remain in the bucket.", uploadId, key, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
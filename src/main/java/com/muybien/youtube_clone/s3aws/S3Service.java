@@ -1,66 +1,337 @@
 package com.muybien.youtube_clone.s3aws;
 
 import com.muybien.youtube_clone.handler.FileDeletionException;
+import com.muybien.youtube_clone.handler.FileFetchUrlException;
 import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.common.Futures;
+import com.muybien.youtube_clone.storage.BlobInfo;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.ContentHash;
+import com.muybien.youtube_clone.storage.PresignedPut;
+import com.muybien.youtube_clone.storage.StorageConfig;
+import com.muybien.youtube_clone.storage.StoredObject;
 import lombok.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
 
-@Service
+@Service(StorageConfig.BACKEND)
 @Builder
 @RequiredArgsConstructor
-public class S3Service {
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3Service implements BlobStorage {
+
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    // the most keys a DeleteObjects request takes
+    private static final int MAX_DELETE_BATCH = 1000;
 
     private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
+    private final S3MultipartUploader multipartUploader;
+    private final S3Presigner s3Presigner;
     private final String bucketName = System.getenv("AWS_BUCKET_NAME");
 
-    public String uploadFileAndFetchFileUrl(MultipartFile file) {
-        String filenameExtension = StringUtils.getFilenameExtension(file.getOriginalFilename());
-        String fileKey = UUID.randomUUID() + filenameExtension;
+    // Goes through the non-blocking client, so no thread waits on the transfer;
+    // files from aws.s3.multipart.threshold on are sent in parallel parts.
+    // S3 checks a CRC32C of every request body, and for a single-part upload
+    // the object's CRC32C is compared with the one hashed when the file was
+    // first received (a multipart object only has a checksum of its parts).
+    @Override
+    public CompletableFuture<String> uploadFileAsync(Path file,
+                                                     String contentType,
+                                                     String extension,
+                                                     ContentHash hash,
+                                                     LongConsumer onTransferred) {
+        String fileKey = hash.fileKey(extension);
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .contentType(contentType)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32_C)
+                .build();
+        var body = new CountingAsyncRequestBody(AsyncRequestBody.fromFile(file), onTransferred);
+        return s3AsyncClient.putObject(putObjectRequest, body)
+                .handle((response, error) -> {
+                    String fileUrl = uploadedFileUrl(fileKey, error);
+                    verifyChecksum(fileKey, hash, response.checksumCRC32C());
+                    return fileUrl;
+                });
+    }
+
+    private void verifyChecksum(String fileKey, ContentHash hash, String storedCrc32c) {
+        boolean singlePart = storedCrc32c != null && !storedCrc32c.contains("-");
+        if (singlePart && !storedCrc32c.equals(hash.crc32c())) {
+            deleteFile(fileKey);
+            throw new FileUploadException("Stored file " + fileKey + " doesn't match the uploaded content", null);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType) {
+        String fileKey = newFileKey(BlobStorage.extensionOf(contentType));
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .contentType(contentType)
+                .build();
+        return s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromBytes(bytes))
+                .handle((response, error) -> uploadedFileUrl(fileKey, error));
+    }
+
+    // size is unknown, so the stream always goes through multipart upload and
+    // is never held in memory or on disk as a whole
+    @Override
+    public String uploadStreamAndFetchFileUrl(InputStream in, String contentType) {
+        String fileKey = newFileKey(BlobStorage.extensionOf(contentType));
+        multipartUploader.upload(bucketName, fileKey, in, contentType, Map.of());
+        return fetchFileUrl(fileKey);
+    }
+
+    private String uploadedFileUrl(String fileKey, Throwable error) {
+        if (error != null) {
+            throw new FileUploadException("Failed to upload file " + fileKey, Futures.unwrap(error));
+        }
+        return fetchFileUrl(fileKey);
+    }
+
+    // Content type, length and SHA-256 are part of the signature, so S3 rejects
+    // an upload that doesn't match what was declared when the URL was issued.
+    @Override
+    public PresignedPut presignPut(String fileKey,
+                                   String contentType,
+                                   long size,
+                                   String checksumSha256,
+                                   Duration ttl) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .contentType(contentType)
+                .contentLength(size)
+                .checksumSHA256(checksumSha256)
+                .build();
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .putObjectRequest(putObjectRequest)
+                .build());
+
+        // host and content-length are set by every HTTP client on its own
+        Map<String, String> headers = new TreeMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host") && !name.equalsIgnoreCase("content-length")) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return new PresignedPut(presigned.url().toString(), headers, presigned.expiration());
+    }
+
+    // a plain S3 multipart upload; S3 itself keeps the parts until it's
+    // completed or aborted
+    @Override
+    public String startChunkedUpload(String fileKey, String contentType) {
+        try {
+            return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileKey)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (SdkException e) {
+            throw new FileUploadException("Failed to start upload of " + fileKey, e);
+        }
+    }
 
+    @Override
+    public String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length) {
         try {
-            Map<String, String> metadata = new HashMap<>();
-            metadata.put(file.getOriginalFilename(), file.getContentType());
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            return s3Client.uploadPart(UploadPartRequest.builder()
                     .bucket(bucketName)
                     .key(fileKey)
-                    .metadata(metadata)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+                    .uploadId(uploadId)
+                    .partNumber(chunkNumber)
+                    .contentLength(length)
+                    .build(), RequestBody.fromInputStream(in, length)).eTag();
+        } catch (SdkException e) {
+            throw new FileUploadException("Failed to upload chunk " + chunkNumber + " of " + fileKey, e);
+        }
+    }
 
-            GetUrlRequest urlRequest = GetUrlRequest.builder()
+    @Override
+    public String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions) {
+        List<CompletedPart> parts = new ArrayList<>(chunkVersions.size());
+        for (int i = 0; i < chunkVersions.size(); i++) {
+            parts.add(CompletedPart.builder().partNumber(i + 1).eTag(chunkVersions.get(i)).build());
+        }
+        try {
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
                     .bucket(bucketName)
                     .key(fileKey)
-                    .build();
-            URL url = s3Client.utilities().getUrl(urlRequest);
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (SdkException e) {
+            throw new FileUploadException("Failed to complete upload of " + fileKey, e);
+        }
+        return fetchFileUrl(fileKey);
+    }
+
+    // an upload that is already gone counts as aborted
+    @Override
+    public void abortChunkedUpload(String fileKey, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileKey)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (NoSuchUploadException e) {
+            // nothing left to abort
+        } catch (SdkException e) {
+            throw new FileDeletionException("Failed to abort upload of " + fileKey, e);
+        }
+    }
 
-            return url.toString();
+    @Override
+    public Optional<StoredObject> findObject(String fileKey) {
+        try {
+            HeadObjectResponse response = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileKey)
+                    .checksumMode(ChecksumMode.ENABLED)
+                    .build());
+            return Optional.of(new StoredObject(response.contentLength(), response.checksumSHA256()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new FileFetchUrlException("Failed to look up file " + fileKey, e);
+        }
+    }
+
+    @Override
+    public Optional<BlobInfo> describe(String fileUrl) {
+        String fileKey = keyOf(fileUrl);
+        try {
+            HeadObjectResponse response = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileKey)
+                    .build());
+            return Optional.of(new BlobInfo(response.contentLength(), response.eTag(), response.lastModified()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
         } catch (S3Exception e) {
-            throw new FileUploadException("Failed to upload file " + file.getOriginalFilename(), e);
-        } catch (IOException e) {
-            throw new FileUploadException("Failed to read file input stream", e);
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new FileFetchUrlException("Failed to look up file " + fileKey, e);
         }
     }
 
-    public void deleteFileFromS3(String fileUrl) {
+    // a ranged GET, copied through one small buffer
+    @Override
+    public void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        String fileKey = keyOf(fileUrl);
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .range("bytes=" + start + "-" + (start + length - 1))
+                .build();
+        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(getObjectRequest)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            int read;
+            while ((read = in.read(buffer.array())) != -1) {
+                buffer.limit(read);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (SdkException e) {
+            throw new FileFetchUrlException("Failed to read file " + fileKey, e);
+        }
+    }
+
+    // stored URLs end with the file key, which never contains a slash
+    private String keyOf(String fileUrl) {
+        return fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String fetchFileUrl(String fileKey) {
+        GetUrlRequest urlRequest = GetUrlRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .build();
+        URL url = s3Client.utilities().getUrl(urlRequest);
+        return url.toString();
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
         try {
             DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
                     .bucket(bucketName)
-                    .key(fileUrl)
+                    .key(keyOf(fileUrl))
                     .build();
             s3Client.deleteObject(deleteObjectRequest);
         } catch (S3Exception e) {
             throw new FileDeletionException("Failed to delete file " + fileUrl, e);
         }
     }
-}
\ No newline at end of file
+
+    // One DeleteObjects request per MAX_DELETE_BATCH keys, sent concurrently;
+    // every batch is attempted even if one fails. A key S3 reports as not
+    // deleted fails the call, deleting it again later is harmless.
+    @Override
+    public void deleteFiles(String... fileUrls) {
+        List<ObjectIdentifier> objects = Arrays.stream(fileUrls)
+                .map(fileUrl -> ObjectIdentifier.builder().key(keyOf(fileUrl)).build())
+                .distinct()
+                .toList();
+        List<CompletableFuture<DeleteObjectsResponse>> deletes = new ArrayList<>();
+        for (int from = 0; from < objects.size(); from += MAX_DELETE_BATCH) {
+            deletes.add(s3AsyncClient.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder()
+                            .objects(objects.subList(from, Math.min(from + MAX_DELETE_BATCH, objects.size())))
+                            .quiet(true)
+                            .build())
+                    .build()));
+        }
+        try {
+            Futures.join(CompletableFuture.allOf(deletes.toArray(CompletableFuture[]::new)));
+        } catch (SdkException e) {
+            throw new FileDeletionException("Failed to delete files " + String.join(", ", fileUrls), e);
+        }
+        List<String> failed = deletes.stream()
+                .flatMap(delete -> delete.join().errors().stream())
+                .map(error -> error.key() + " (" + error.code() + ")")
+                .toList();
+        if (!failed.isEmpty()) {
+            throw new FileDeletionException("Failed to delete files " + String.join(", ", failed), null);
+        }
+    }
+}
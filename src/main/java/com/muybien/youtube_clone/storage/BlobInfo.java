@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.storage;
+
+import java.time.Instant;
+
+// eTag is quoted and changes whenever the content does
+public record BlobInfo(long size, String eTag, Instant lastModified) {
+}
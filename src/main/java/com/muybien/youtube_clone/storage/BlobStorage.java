@@ -0,0 +1,79 @@
+package com.muybien.youtube_clone.storage;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+
+// Where video and thumbnail files are kept. storage.backend picks the
+// implementation: s3 (default) or local, which keeps the files in a directory
+// on this host and serves them under /media, to signed requests only.
+// Uploads return the file's storage URL; deletes accept either that URL or
+// the file key.
+public interface BlobStorage {
+
+    // stored under hash.fileKey(extension), so the same content always ends
+    // up at the same URL; storage rejects bytes that don't match the hash
+    CompletableFuture<String> uploadFileAsync(Path file,
+                                              String contentType,
+                                              String extension,
+                                              ContentHash hash,
+                                              LongConsumer onTransferred);
+
+    CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType);
+
+    // the stream's length is unknown and it is never held in memory as a whole
+    String uploadStreamAndFetchFileUrl(InputStream in, String contentType);
+
+    // backends that can't accept uploads straight from clients throw
+    // StorageOperationNotSupportedException
+    PresignedPut presignPut(String fileKey, String contentType, long size, String checksumSha256, Duration ttl);
+
+    Optional<StoredObject> findObject(String fileKey);
+
+    // Chunked uploads that outlive a dropped connection: every chunk is
+    // stored as it arrives, under the returned upload id, and the chunks are
+    // assembled into fileKey on completion. A chunk sent again replaces the
+    // earlier one. Chunks other than the last must be at least 5MB on S3.
+    String startChunkedUpload(String fileKey, String contentType);
+
+    // returns the chunk's version, which completeChunkedUpload needs back
+    String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length);
+
+    // chunkVersions in chunk order, starting with chunk number 1
+    String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions);
+
+    void abortChunkedUpload(String fileKey, String uploadId);
+
+    Optional<BlobInfo> describe(String fileUrl);
+
+    // only the requested part of the file is read, however large it is
+    void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException;
+
+    String fetchFileUrl(String fileKey);
+
+    void deleteFile(String fileUrl);
+
+    void deleteFiles(String... fileUrls);
+
+    default String newFileKey(String extension) {
+        return extension == null ? UUID.randomUUID().toString() : UUID.randomUUID() + "." + extension;
+    }
+
+    static String extensionOf(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType).getSubtype();
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.muybien.youtube_clone.storage;
+
+import java.time.Duration;
+
+// Opens when the failure rate over the last windowSize calls reaches the
+// threshold. While open every call is refused; after openDuration a single
+// trial call is let through, which closes the breaker if it succeeds and
+// opens it again if it fails.
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final boolean[] failed;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int windowSize, int failureRateThreshold, Duration openDuration) {
+        this.windowSize = windowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.failed = new boolean[windowSize];
+    }
+
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    // a permitted call that ended without telling anything about the backend
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized void onSuccess() {
+        switch (state) {
+            case HALF_OPEN -> close();
+            case CLOSED -> record(false);
+            case OPEN -> { }
+        }
+    }
+
+    synchronized void onFailure() {
+        switch (state) {
+            case HALF_OPEN -> open();
+            case CLOSED -> {
+                record(true);
+                if (recorded == windowSize && failures * 100 >= failureRateThreshold * windowSize) {
+                    open();
+                }
+            }
+            case OPEN -> { }
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            failures -= failed[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+// A stored file identified by its content, with the number of videos that
+// refer to it. The file is deleted when the last reference is released.
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "content_blob",
+        indexes = @Index(name = "idx_content_blob_file_url", columnList = "fileUrl", unique = true))
+public class ContentBlob extends BaseEntity {
+
+    // SHA-256 in hex
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private String fileUrl;
+
+    private long size;
+
+    @Column(length = 8)
+    private String crc32c;
+
+    private int refCount;
+}
@@ -0,0 +1,39 @@
+package com.muybien.youtube_clone.storage;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    // returns 0 when the content isn't stored yet
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE content_blob SET ref_count = ref_count + 1 WHERE id = :id", nativeQuery = true)
+    int addReference(@Param("id") String id);
+
+    // two uploads of the same new content may both get here, the second
+    // one only adds its reference
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO content_blob (id, file_url, size, crc32c, ref_count, created_date)
+            VALUES (:id, :fileUrl, :size, :crc32c, 1, NOW())
+            ON DUPLICATE KEY UPDATE ref_count = ref_count + 1
+            """, nativeQuery = true)
+    void insertOrAddReference(@Param("id") String id,
+                              @Param("fileUrl") String fileUrl,
+                              @Param("size") long size,
+                              @Param("crc32c") String crc32c);
+
+    // locked so a reference added meanwhile waits until the file is deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ContentBlob> findForUpdateByFileUrlIn(Collection<String> fileUrls);
+}
@@ -0,0 +1,11 @@
+package com.muybien.youtube_clone.storage;
+
+// What a file's bytes hash to. sha256 (hex) identifies the content and names
+// the stored file; crc32c (base64, the way S3 reports it) is compared with
+// what storage computed on its side.
+public record ContentHash(String sha256, String crc32c, long size) {
+
+    public String fileKey(String extension) {
+        return extension == null ? sha256 : sha256 + "." + extension;
+    }
+}
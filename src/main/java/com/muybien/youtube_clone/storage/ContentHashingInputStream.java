@@ -0,0 +1,78 @@
+package com.muybien.youtube_clone.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+// Hashes the bytes as they are read, so copying the stream somewhere yields
+// its ContentHash in the same pass, without reading the bytes again.
+public class ContentHashingInputStream extends FilterInputStream {
+
+    private final MessageDigest sha256;
+    private final CRC32C crc32c = new CRC32C();
+    private long size;
+    private ContentHash hash;
+
+    public ContentHashingInputStream(InputStream in) {
+        super(in);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            sha256.update((byte) b);
+            crc32c.update(b);
+            size++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            sha256.update(buffer, offset, read);
+            crc32c.update(buffer, offset, read);
+            size += read;
+        }
+        return read;
+    }
+
+    // skipped bytes still have to be hashed
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    // only meaningful once the stream has been read to the end
+    public ContentHash hash() {
+        if (hash == null) {
+            byte[] crc = ByteBuffer.allocate(Integer.BYTES).putInt((int) crc32c.getValue()).array();
+            hash = new ContentHash(HexFormat.of().formatHex(sha256.digest()), Base64.getEncoder().encodeToString(crc), size);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,127 @@
+package com.muybien.youtube_clone.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+// Content-addressed uploads. A file is stored under a key derived from its
+// SHA-256 and counted in content_blob, so when a creator uploads the same
+// bytes again (e.g. retrying after a flaky upload) the stored file gets
+// another reference instead of another copy. Releasing a file deletes it
+// once nothing refers to it; files stored some other way (streamed and
+// presigned uploads) have no entry and are deleted right away.
+@Service
+public class ContentStore {
+
+    private final BlobStorage blobStorage;
+    private final ContentBlobRepository contentBlobRepository;
+    private final PendingReleaseRepository pendingReleaseRepository;
+    private final Counter bytesDeduplicated;
+
+    public ContentStore(BlobStorage blobStorage,
+                        ContentBlobRepository contentBlobRepository,
+                        PendingReleaseRepository pendingReleaseRepository,
+                        MeterRegistry meterRegistry) {
+        this.blobStorage = blobStorage;
+        this.contentBlobRepository = contentBlobRepository;
+        this.pendingReleaseRepository = pendingReleaseRepository;
+        this.bytesDeduplicated = Counter.builder("storage.dedup.bytes.saved")
+                .description("Bytes not uploaded because the same content was already stored")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // hash must have been computed from the file, see ContentHashingInputStream
+    public CompletableFuture<String> store(Path file,
+                                           String contentType,
+                                           String extension,
+                                           ContentHash hash,
+                                           LongConsumer onTransferred) {
+        // with the reference taken, the entry can't be released under us
+        if (contentBlobRepository.addReference(hash.sha256()) == 1) {
+            String fileUrl = contentBlobRepository.findById(hash.sha256()).orElseThrow().getFileUrl();
+            bytesDeduplicated.increment(hash.size());
+            onTransferred.accept(hash.size());
+            return CompletableFuture.completedFuture(fileUrl);
+        }
+        return blobStorage.uploadFileAsync(file, contentType, extension, hash, onTransferred)
+                .thenApply(fileUrl -> register(hash, fileUrl));
+    }
+
+    private String register(ContentHash hash, String fileUrl) {
+        contentBlobRepository.insertOrAddReference(hash.sha256(), fileUrl, hash.size(), hash.crc32c());
+        String storedUrl = contentBlobRepository.findById(hash.sha256()).orElseThrow().getFileUrl();
+        // the same content was stored meanwhile under another extension
+        if (!storedUrl.equals(fileUrl)) {
+            blobStorage.deleteFile(fileUrl);
+        }
+        return storedUrl;
+    }
+
+    // Files are deleted while their entries are locked, so a concurrent
+    // upload of the same content waits and then stores it again. If deleting
+    // fails, the references are kept. A file listed twice is released twice.
+    @Transactional
+    public void release(String... fileUrls) {
+        Map<String, Long> releases = Arrays.stream(fileUrls)
+                .collect(Collectors.groupingBy(Function.identity(), LinkedHashMap::new, Collectors.counting()));
+        Map<String, ContentBlob> blobs = contentBlobRepository.findForUpdateByFileUrlIn(releases.keySet()).stream()
+                .collect(Collectors.toMap(ContentBlob::getFileUrl, Function.identity()));
+        List<String> unreferenced = new ArrayList<>();
+        releases.forEach((fileUrl, count) -> {
+            ContentBlob blob = blobs.get(fileUrl);
+            if (blob == null) {
+                unreferenced.add(fileUrl);
+            } else if (blob.getRefCount() <= count) {
+                contentBlobRepository.delete(blob);
+                unreferenced.add(fileUrl);
+            } else {
+                blob.setRefCount((int) (blob.getRefCount() - count));
+            }
+        });
+        if (!unreferenced.isEmpty()) {
+            blobStorage.deleteFiles(unreferenced.toArray(String[]::new));
+        }
+    }
+
+    // Queues the release in the caller's transaction, so it happens exactly
+    // when the caller commits, without waiting on storage. PendingReleaseWorker
+    // releases the queue in batches.
+    @Transactional
+    public void releaseLater(String... fileUrls) {
+        LocalDateTime now = LocalDateTime.now();
+        pendingReleaseRepository.saveAll(Arrays.stream(fileUrls)
+                .map(fileUrl -> PendingRelease.builder()
+                        .fileUrl(fileUrl)
+                        .nextAttemptAt(now)
+                        .createdDate(now)
+                        .build())
+                .toList());
+    }
+
+    // the queue entries are removed in the transaction that releases them;
+    // entries already released by another worker are skipped
+    @Transactional
+    public void releasePending(Collection<Long> ids) {
+        List<PendingRelease> pending = pendingReleaseRepository.findForUpdateByIdIn(ids);
+        if (pending.isEmpty()) {
+            return;
+        }
+        release(pending.stream().map(PendingRelease::getFileUrl).toArray(String[]::new));
+        pendingReleaseRepository.deleteAllInBatch(pending);
+    }
+}
@@ -0,0 +1,374 @@
+package com.muybien.youtube_clone.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.muybien.youtube_clone.handler.MediaNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+// Keeps hot media on this node, so a popular file is fetched from the backend
+// once per node instead of once per viewer. Images (thumbnails) are kept whole
+// in memory; everything else is cached on local disk in fixed-size segments,
+// so a viewer seeking into a long video only pulls the segments around the
+// position being played. A missing segment is filled on the fill executor and
+// every reader of that segment waits for the same fetch; the segment after the
+// one being sent is filled ahead of time. Both tiers evict once their size
+// budget is reached. File keys are never rewritten, so entries only go stale
+// when the file is deleted through this node.
+@Slf4j
+public class EdgeCachedBlobStorage implements BlobStorage {
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String SEGMENTS_DIR = "segments";
+    private static final int MAX_CACHED_BLOBS = 10_000;
+    private static final Duration BLOB_INFO_TTL = Duration.ofMinutes(10);
+    // fills waiting beyond this are refused and the reader goes to the backend
+    private static final int FILL_QUEUE_PER_THREAD = 16;
+
+    private final BlobStorage delegate;
+    private final Path cacheDir;
+    private final long segmentSize;
+    private final Cache<String, BlobInfo> blobs;
+    private final Cache<String, byte[]> images;
+    private final Cache<Segment, CachedSegment> segments;
+    private final ConcurrentMap<Segment, CompletableFuture<CachedSegment>> fills = new ConcurrentHashMap<>();
+    private final ExecutorService fillExecutor;
+    private final Counter imageBytesSaved;
+    private final Counter segmentBytesSaved;
+    private final Counter imageBytesFetched;
+    private final Counter segmentBytesFetched;
+
+    public EdgeCachedBlobStorage(BlobStorage delegate,
+                                 MeterRegistry meterRegistry,
+                                 Path cacheDir,
+                                 DataSize segmentSize,
+                                 DataSize diskBudget,
+                                 DataSize memoryBudget,
+                                 int fillConcurrency) {
+        this.delegate = delegate;
+        this.cacheDir = cacheDir.toAbsolutePath().normalize().resolve(SEGMENTS_DIR);
+        this.segmentSize = segmentSize.toBytes();
+        this.blobs = Caffeine.newBuilder()
+                .expireAfterWrite(BLOB_INFO_TTL)
+                .maximumSize(MAX_CACHED_BLOBS)
+                .build();
+        this.images = Caffeine.newBuilder()
+                .maximumWeight(memoryBudget.toBytes())
+                .<String, byte[]>weigher((url, bytes) -> bytes.length)
+                .recordStats()
+                .build();
+        this.segments = Caffeine.newBuilder()
+                .maximumWeight(diskBudget.toBytes())
+                .<Segment, CachedSegment>weigher((segment, cached) -> cached.length())
+                .removalListener(this::onSegmentRemoved)
+                .recordStats()
+                .build();
+        this.fillExecutor = new ThreadPoolExecutor(fillConcurrency, fillConcurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fillConcurrency * FILL_QUEUE_PER_THREAD),
+                Thread.ofPlatform().name("edge-cache-fill-", 0).daemon(true).factory());
+
+        // hit ratios come from the cache.gets meters, bytes saved from these
+        CaffeineCacheMetrics.monitor(meterRegistry, images, "media.edge.images");
+        CaffeineCacheMetrics.monitor(meterRegistry, segments, "media.edge.segments");
+        this.imageBytesSaved = bytesCounter(meterRegistry, "media.edge.bytes.saved", "memory", "served from the cache instead of storage");
+        this.segmentBytesSaved = bytesCounter(meterRegistry, "media.edge.bytes.saved", "disk", "served from the cache instead of storage");
+        this.imageBytesFetched = bytesCounter(meterRegistry, "media.edge.bytes.fetched", "memory", "read from storage into the cache or past it");
+        this.segmentBytesFetched = bytesCounter(meterRegistry, "media.edge.bytes.fetched", "disk", "read from storage into the cache or past it");
+    }
+
+    // The index lives in memory, so segments left by a previous run are
+    // unreachable. Only our own segment files are removed, from a subdirectory
+    // of the configured one: whatever else is in there isn't ours to delete.
+    @PostConstruct
+    void prepareCacheDir() throws IOException {
+        Files.createDirectories(cacheDir);
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : files.toList()) {
+                if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                        && file.getFileName().toString().endsWith(SEGMENT_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFileAsync(Path file,
+                                                     String contentType,
+                                                     String extension,
+                                                     ContentHash hash,
+                                                     LongConsumer onTransferred) {
+        return delegate.uploadFileAsync(file, contentType, extension, hash, onTransferred);
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType) {
+        return delegate.uploadBytesAsync(bytes, contentType);
+    }
+
+    @Override
+    public String uploadStreamAndFetchFileUrl(InputStream in, String contentType) {
+        return delegate.uploadStreamAndFetchFileUrl(in, contentType);
+    }
+
+    @Override
+    public PresignedPut presignPut(String fileKey, String contentType, long size, String checksumSha256, Duration ttl) {
+        return delegate.presignPut(fileKey, contentType, size, checksumSha256, ttl);
+    }
+
+    @Override
+    public String startChunkedUpload(String fileKey, String contentType) {
+        return delegate.startChunkedUpload(fileKey, contentType);
+    }
+
+    @Override
+    public String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length) {
+        return delegate.uploadChunk(fileKey, uploadId, chunkNumber, in, length);
+    }
+
+    @Override
+    public String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions) {
+        return delegate.completeChunkedUpload(fileKey, uploadId, chunkVersions);
+    }
+
+    @Override
+    public void abortChunkedUpload(String fileKey, String uploadId) {
+        delegate.abortChunkedUpload(fileKey, uploadId);
+    }
+
+    @Override
+    public Optional<StoredObject> findObject(String fileKey) {
+        return delegate.findObject(fileKey);
+    }
+
+    @Override
+    public Optional<BlobInfo> describe(String fileUrl) {
+        return Optional.ofNullable(blobs.get(fileUrl, url -> delegate.describe(url).orElse(null)));
+    }
+
+    @Override
+    public void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException {
+        if (isImage(fileUrl)) {
+            // peeks through the map view so only the get below counts as a hit or miss
+            boolean cached = images.asMap().containsKey(fileUrl);
+            byte[] bytes = images.get(fileUrl, this::fetchImage);
+            if (cached) {
+                imageBytesSaved.increment(length);
+            }
+            write(ByteBuffer.wrap(bytes, Math.toIntExact(start), Math.toIntExact(length)), target);
+            return;
+        }
+
+        long size = sizeOf(fileUrl);
+        long end = start + length;
+        for (long position = start; position < end; ) {
+            Segment segment = new Segment(fileUrl, position / segmentSize);
+            long segmentStart = segment.index() * segmentSize;
+            long sliceEnd = Math.min(end, segmentStart + segmentSize);
+            if (segmentStart + segmentSize < size) {
+                fill(new Segment(fileUrl, segment.index() + 1), size);
+            }
+            if (!transferCached(segment, size, position - segmentStart, sliceEnd - position, target)) {
+                delegate.transferRange(fileUrl, position, sliceEnd - position, target);
+                segmentBytesFetched.increment(sliceEnd - position);
+            }
+            position = sliceEnd;
+        }
+    }
+
+    @Override
+    public String fetchFileUrl(String fileKey) {
+        return delegate.fetchFileUrl(fileKey);
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
+        try {
+            delegate.deleteFile(fileUrl);
+        } finally {
+            evict(Set.of(fileUrl));
+        }
+    }
+
+    @Override
+    public void deleteFiles(String... fileUrls) {
+        try {
+            delegate.deleteFiles(fileUrls);
+        } finally {
+            evict(Set.of(fileUrls));
+        }
+    }
+
+    @Override
+    public String newFileKey(String extension) {
+        return delegate.newFileKey(extension);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fillExecutor.shutdownNow();
+    }
+
+    // false when the segment couldn't be cached (fill refused or failed, or
+    // evicted while being opened), the caller then reads past the cache
+    private boolean transferCached(Segment segment, long size, long offset, long length, WritableByteChannel target) throws IOException {
+        CachedSegment cached = segments.getIfPresent(segment);
+        if (cached == null) {
+            try {
+                cached = fill(segment, size).join();
+            } catch (CompletionException | CancellationException e) {
+                log.debug("Couldn't cache segment {} of {}", segment.index(), segment.fileUrl(), e);
+                return false;
+            }
+        } else {
+            segmentBytesSaved.increment(length);
+        }
+        try (FileChannel source = FileChannel.open(cached.file(), StandardOpenOption.READ)) {
+            for (long position = offset; position < offset + length; ) {
+                position += source.transferTo(position, offset + length - position, target);
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    // one fetch per segment however many readers are waiting for it
+    private CompletableFuture<CachedSegment> fill(Segment segment, long size) {
+        CachedSegment cached = segments.asMap().get(segment);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        var created = new CompletableFuture<CachedSegment>();
+        var existing = fills.putIfAbsent(segment, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            fillExecutor.execute(() -> {
+                try {
+                    created.complete(download(segment, size));
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    fills.remove(segment, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fills.remove(segment, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private CachedSegment download(Segment segment, long size) throws IOException {
+        long segmentStart = segment.index() * segmentSize;
+        int length = Math.toIntExact(Math.min(segmentSize, size - segmentStart));
+        Path temp = Files.createTempFile(cacheDir, ".fill-", SEGMENT_SUFFIX);
+        try {
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                delegate.transferRange(segment.fileUrl(), segmentStart, length, target);
+            }
+            segmentBytesFetched.increment(length);
+            Path file = Files.move(temp, cacheDir.resolve(UUID.randomUUID() + SEGMENT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            var cached = new CachedSegment(file, length);
+            segments.put(segment, cached);
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private byte[] fetchImage(String fileUrl) {
+        long size = sizeOf(fileUrl);
+        var out = new ByteArrayOutputStream(Math.toIntExact(size));
+        try {
+            delegate.transferRange(fileUrl, 0, size, Channels.newChannel(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        imageBytesFetched.increment(size);
+        return out.toByteArray();
+    }
+
+    private long sizeOf(String fileUrl) {
+        return describe(fileUrl)
+                .orElseThrow(() -> new MediaNotFoundException("File " + fileUrl + " doesn't exist."))
+                .size();
+    }
+
+    private void evict(Set<String> fileUrls) {
+        fileUrls.forEach(fileUrl -> {
+            blobs.invalidate(fileUrl);
+            images.invalidate(fileUrl);
+        });
+        segments.asMap().keySet().removeIf(segment -> fileUrls.contains(segment.fileUrl()));
+    }
+
+    private void onSegmentRemoved(Segment segment, CachedSegment cached, RemovalCause cause) {
+        if (cached != null) {
+            try {
+                Files.deleteIfExists(cached.file());
+            } catch (IOException e) {
+                log.warn("Couldn't delete cached segment {}", cached.file(), e);
+            }
+        }
+    }
+
+    private static boolean isImage(String fileUrl) {
+        return MediaTypeFactory.getMediaType(fileUrl)
+                .map(mediaType -> "image".equals(mediaType.getType()))
+                .orElse(false);
+    }
+
+    private static void write(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static Counter bytesCounter(MeterRegistry meterRegistry, String name, String tier, String description) {
+        return Counter.builder(name)
+                .description("Media bytes " + description)
+                .baseUnit("bytes")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private record Segment(String fileUrl, long index) {
+    }
+
+    private record CachedSegment(Path file, int length) {
+    }
+}
@@ -0,0 +1,353 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileDeletionException;
+import com.muybien.youtube_clone.handler.FileFetchUrlException;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.StorageOperationNotSupportedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+// Keeps files in a directory on this host, for on-prem deployments and for
+// tests that shouldn't depend on a bucket. Bytes are moved with
+// FileChannel.transferTo/transferFrom, so file-to-file copies stay in the
+// kernel instead of passing through the heap. Every file is written under a
+// temporary name and moved into place, so readers never see a partial file.
+@Slf4j
+@Service(StorageConfig.BACKEND)
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalFileSystemStorage implements BlobStorage {
+
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final String CHUNKS_PREFIX = ".chunks-";
+    // bounds a single transfer call so progress is reported as it goes
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Path rootDir;
+    private final String publicUrl;
+    private final ExecutorService executor;
+
+    public LocalFileSystemStorage(@Value("${storage.local.root-dir:./media}") Path rootDir,
+                                  @Value("${storage.local.public-url:http://localhost:8080/api/v1/media}") String publicUrl,
+                                  @Value("${storage.local.io-threads:4}") int ioThreads) {
+        this.rootDir = rootDir.toAbsolutePath().normalize();
+        this.publicUrl = StringUtils.trimTrailingCharacter(publicUrl, '/');
+        this.executor = Executors.newFixedThreadPool(ioThreads, Thread.ofPlatform()
+                .name("local-storage-", 0)
+                .daemon(true)
+                .factory());
+    }
+
+    // temporary files left behind by a previous run were never moved into place
+    @PostConstruct
+    void prepareRootDir() throws IOException {
+        Files.createDirectories(rootDir);
+        try (Stream<Path> leftovers = Files.list(rootDir)) {
+            leftovers.filter(path -> path.getFileName().toString().startsWith(TEMP_PREFIX))
+                    .forEach(this::deleteQuietly);
+        }
+    }
+
+    // the copy never leaves this host and stays in the kernel, it isn't hashed again
+    @Override
+    public CompletableFuture<String> uploadFileAsync(Path file,
+                                                     String contentType,
+                                                     String extension,
+                                                     ContentHash hash,
+                                                     LongConsumer onTransferred) {
+        String fileKey = hash.fileKey(extension);
+        return CompletableFuture.supplyAsync(() -> {
+            write(fileKey, target -> {
+                try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        long transferred = source.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), target);
+                        position += transferred;
+                        onTransferred.accept(transferred);
+                    }
+                }
+            });
+            return fetchFileUrl(fileKey);
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType) {
+        String fileKey = newFileKey(BlobStorage.extensionOf(contentType));
+        return CompletableFuture.supplyAsync(() -> {
+            write(fileKey, target -> {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+            });
+            return fetchFileUrl(fileKey);
+        }, executor);
+    }
+
+    @Override
+    public String uploadStreamAndFetchFileUrl(InputStream in, String contentType) {
+        String fileKey = newFileKey(BlobStorage.extensionOf(contentType));
+        write(fileKey, target -> {
+            ReadableByteChannel source = Channels.newChannel(in);
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        });
+        return fetchFileUrl(fileKey);
+    }
+
+    @Override
+    public PresignedPut presignPut(String fileKey, String contentType, long size, String checksumSha256, Duration ttl) {
+        throw new StorageOperationNotSupportedException(
+                "Direct uploads aren't available with local storage, upload through the API instead.");
+    }
+
+    // chunks are kept as files in a directory of their own until they're
+    // concatenated, which survives restarts like S3's parts do
+    @Override
+    public String startChunkedUpload(String fileKey, String contentType) {
+        resolve(fileKey);
+        String uploadId = UUID.randomUUID().toString();
+        try {
+            Files.createDirectories(chunksDir(uploadId));
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to start upload of " + fileKey, e);
+        }
+        return uploadId;
+    }
+
+    @Override
+    public String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length) {
+        Path chunk = chunksDir(uploadId).resolve(Integer.toString(chunkNumber));
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(chunksDir(uploadId), TEMP_PREFIX, ".part");
+            long written = 0;
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ReadableByteChannel source = Channels.newChannel(in);
+                long transferred;
+                while (written < length && (transferred = target.transferFrom(source, written, length - written)) > 0) {
+                    written += transferred;
+                }
+            }
+            if (written != length) {
+                throw new FileUploadException("Chunk " + chunkNumber + " of " + fileKey + " ended after "
+                        + written + " of " + length + " bytes", null);
+            }
+            Files.move(temp, chunk, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return Long.toHexString(Files.getLastModifiedTime(chunk).toMillis()) + "-" + Long.toHexString(length);
+        } catch (NoSuchFileException e) {
+            deleteQuietly(temp);
+            throw new FileUploadException("Upload " + uploadId + " of " + fileKey + " doesn't exist", e);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new FileUploadException("Failed to store chunk " + chunkNumber + " of " + fileKey, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions) {
+        Path chunks = chunksDir(uploadId);
+        write(fileKey, target -> {
+            for (int chunkNumber = 1; chunkNumber <= chunkVersions.size(); chunkNumber++) {
+                try (FileChannel source = FileChannel.open(chunks.resolve(Integer.toString(chunkNumber)), StandardOpenOption.READ)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+            }
+        });
+        deleteDirectoryQuietly(chunks);
+        return fetchFileUrl(fileKey);
+    }
+
+    @Override
+    public void abortChunkedUpload(String fileKey, String uploadId) {
+        deleteDirectoryQuietly(chunksDir(uploadId));
+    }
+
+    // upload ids are generated here, but come back from the database
+    private Path chunksDir(String uploadId) {
+        Path dir = rootDir.resolve(CHUNKS_PREFIX + uploadId).normalize();
+        if (!rootDir.equals(dir.getParent())) {
+            throw new InvalidFileUrlException("Invalid upload id " + uploadId);
+        }
+        return dir;
+    }
+
+    private void deleteDirectoryQuietly(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(this::deleteQuietly);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.warn("Failed to list chunks in {}.", dir, e);
+        }
+        deleteQuietly(dir);
+    }
+
+    // the checksum is computed by reading the whole file
+    @Override
+    public Optional<StoredObject> findObject(String fileKey) {
+        try (FileChannel channel = FileChannel.open(resolve(fileKey), StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            return Optional.of(new StoredObject(channel.size(), Base64.getEncoder().encodeToString(digest.digest())));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new FileFetchUrlException("Failed to look up file " + fileKey, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the version is derived from size and modification time
+    @Override
+    public Optional<BlobInfo> describe(String fileUrl) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(keyOf(fileUrl)), BasicFileAttributes.class);
+            Instant lastModified = attributes.lastModifiedTime().toInstant();
+            String eTag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified.toEpochMilli()) + "\"";
+            return Optional.of(new BlobInfo(attributes.size(), eTag, lastModified));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new FileFetchUrlException("Failed to look up file " + fileUrl, e);
+        }
+    }
+
+    @Override
+    public void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel source = FileChannel.open(resolve(keyOf(fileUrl)), StandardOpenOption.READ)) {
+            long end = start + length;
+            for (long position = start; position < end; ) {
+                position += source.transferTo(position, end - position, target);
+            }
+        }
+    }
+
+    @Override
+    public String fetchFileUrl(String fileKey) {
+        return publicUrl + "/" + fileKey;
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
+        try {
+            Files.deleteIfExists(resolve(keyOf(fileUrl)));
+        } catch (IOException e) {
+            throw new FileDeletionException("Failed to delete file " + fileUrl, e);
+        }
+    }
+
+    // every file is attempted even if one fails
+    @Override
+    public void deleteFiles(String... fileUrls) {
+        FileDeletionException failure = null;
+        for (String fileUrl : fileUrls) {
+            try {
+                deleteFile(fileUrl);
+            } catch (FileDeletionException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private String keyOf(String fileUrl) {
+        return fileUrl.startsWith(publicUrl + "/") ? fileUrl.substring(publicUrl.length() + 1) : fileUrl;
+    }
+
+    // keys are plain file names, anything reaching outside the root or at
+    // a temporary file is rejected
+    Path resolve(String fileKey) {
+        Path path = rootDir.resolve(fileKey).normalize();
+        if (!rootDir.equals(path.getParent()) || fileKey.startsWith(".")) {
+            throw new InvalidFileUrlException("Invalid file key " + fileKey);
+        }
+        return path;
+    }
+
+    private void write(String fileKey, ChannelWriter writer) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(rootDir, TEMP_PREFIX, ".part");
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writer.writeTo(target);
+            }
+            Files.move(temp, resolve(fileKey), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new FileUploadException("Failed to store file " + fileKey, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}.", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private interface ChannelWriter {
+        void writeTo(FileChannel target) throws IOException;
+    }
+}
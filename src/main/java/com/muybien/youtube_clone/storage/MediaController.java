@@ -0,0 +1,72 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.MediaNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Serves the files of the local storage backend. When the connector supports
+// it (Tomcat's NIO connector does), the file is handed back to Tomcat and sent
+// with sendfile, so its bytes never reach user space; otherwise it is copied
+// to the response with FileChannel.transferTo.
+@RestController
+@RequestMapping("/media")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class MediaController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalFileSystemStorage localFileSystemStorage;
+
+    @GetMapping("/{fileKey}")
+    public void download(@PathVariable String fileKey,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Path file;
+        long size;
+        try {
+            file = localFileSystemStorage.resolve(fileKey).toRealPath();
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            throw new MediaNotFoundException("File " + fileKey + " doesn't exist.");
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileKey)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString());
+        response.setContentLengthLong(size);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            for (long position = 0; position < size; ) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+// A file whose reference is to be released in the background, see
+// ContentStore.releaseLater. Kept until the release succeeds.
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "pending_release",
+        indexes = @Index(name = "idx_pending_release_next_attempt_at", columnList = "nextAttemptAt"))
+public class PendingRelease extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String fileUrl;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+}
@@ -0,0 +1,32 @@
+package com.muybien.youtube_clone.storage;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PendingReleaseRepository extends JpaRepository<PendingRelease, Long> {
+
+    List<PendingRelease> findByNextAttemptAtBeforeOrderByNextAttemptAt(LocalDateTime now, Limit limit);
+
+    // locked so a batch read by two workers at once is released only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PendingRelease> findForUpdateByIdIn(Collection<Long> ids);
+
+    // an update rather than a save, which would insert the entry again had
+    // another worker released it meanwhile
+    @Transactional
+    @Modifying
+    @Query("update PendingRelease p set p.attempts = :attempts, p.nextAttemptAt = :nextAttemptAt where p.id = :id")
+    void postpone(@Param("id") Long id,
+                  @Param("attempts") int attempts,
+                  @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
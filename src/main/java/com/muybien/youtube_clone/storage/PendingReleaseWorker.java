@@ -0,0 +1,73 @@
+package com.muybien.youtube_clone.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Works through the releases queued by ContentStore.releaseLater, a batch
+// per transaction so the files of a batch go out in one bulk delete. When a
+// batch fails its files are retried one by one, so a single file storage
+// keeps refusing doesn't hold up the rest; failed entries are retried with
+// exponential backoff and never dropped.
+@Slf4j
+@Component
+public class PendingReleaseWorker {
+
+    private final ContentStore contentStore;
+    private final PendingReleaseRepository pendingReleaseRepository;
+    private final int batchSize;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+
+    public PendingReleaseWorker(ContentStore contentStore,
+                                PendingReleaseRepository pendingReleaseRepository,
+                                @Value("${storage.release.batch-size:1000}") int batchSize,
+                                @Value("${storage.release.retry-backoff:1m}") Duration retryBackoff,
+                                @Value("${storage.release.max-retry-backoff:1h}") Duration maxRetryBackoff) {
+        this.contentStore = contentStore;
+        this.pendingReleaseRepository = pendingReleaseRepository;
+        this.batchSize = batchSize;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    @Scheduled(fixedDelayString = "${storage.release.interval:30s}")
+    public void releasePending() {
+        List<PendingRelease> due;
+        do {
+            due = pendingReleaseRepository.findByNextAttemptAtBeforeOrderByNextAttemptAt(
+                    LocalDateTime.now(), Limit.of(batchSize));
+            if (due.isEmpty()) {
+                return;
+            }
+            try {
+                contentStore.releasePending(due.stream().map(PendingRelease::getId).toList());
+            } catch (RuntimeException e) {
+                log.warn("Failed to release a batch of {} files, retrying them one by one.", due.size(), e);
+                due.forEach(this::releaseAlone);
+            }
+        } while (due.size() == batchSize);
+    }
+
+    private void releaseAlone(PendingRelease pending) {
+        try {
+            contentStore.releasePending(List.of(pending.getId()));
+        } catch (RuntimeException e) {
+            int attempts = pending.getAttempts() + 1;
+            Duration backoff = backoffAfter(attempts);
+            log.warn("Failed to release file {}, attempt {}, retrying in {}.", pending.getFileUrl(), attempts, backoff, e);
+            pendingReleaseRepository.postpone(pending.getId(), attempts, LocalDateTime.now().plus(backoff));
+        }
+    }
+
+    Duration backoffAfter(int attempts) {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : backoff;
+    }
+}
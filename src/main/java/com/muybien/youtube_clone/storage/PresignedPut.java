@@ -0,0 +1,8 @@
+package com.muybien.youtube_clone.storage;
+
+import java.time.Instant;
+import java.util.Map;
+
+// the headers have to be sent with the PUT exactly as given
+public record PresignedPut(String url, Map<String, String> headers, Instant expiresAt) {
+}
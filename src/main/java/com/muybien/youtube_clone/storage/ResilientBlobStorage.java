@@ -0,0 +1,393 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.MediaNotFoundException;
+import com.muybien.youtube_clone.handler.StorageOperationNotSupportedException;
+import com.muybien.youtube_clone.handler.StorageUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+// Keeps a slow or failing storage backend from taking the rest of the
+// application down with it.
+// - Bulkhead: a call holds one of maxConcurrentCalls permits for as long as
+//   the backend works on it, and waits at most maxWait for one, so storage
+//   trouble ties up a bounded number of threads.
+// - Timeouts: blocking calls run on a virtual thread and the caller gives up
+//   after metadataTimeout (describe, findObject, deletes) or transferTimeout
+//   (uploads, ranged reads); the abandoned call is interrupted.
+// - Retries: idempotent metadata calls are retried with exponential backoff
+//   and full jitter.
+// - Circuit breaker: once too many recent calls failed, calls fail at once
+//   with StorageUnavailableException until a trial call succeeds.
+// Errors caused by the request itself (unknown file, unsupported operation,
+// a viewer who hangs up or stalls) are passed on without counting as failures.
+@Slf4j
+public class ResilientBlobStorage implements BlobStorage {
+
+    private final BlobStorage delegate;
+    private final Duration metadataTimeout;
+    private final Duration transferTimeout;
+    private final Semaphore bulkhead;
+    private final Duration maxWait;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("storage-call-", 0).factory());
+
+    ResilientBlobStorage(BlobStorage delegate,
+                         MeterRegistry meterRegistry,
+                         Duration metadataTimeout,
+                         Duration transferTimeout,
+                         int maxConcurrentCalls,
+                         Duration maxWait,
+                         int maxAttempts,
+                         Duration backoff,
+                         Duration maxBackoff,
+                         CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.metadataTimeout = metadataTimeout;
+        this.transferTimeout = transferTimeout;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxWait = maxWait;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.circuitBreaker = circuitBreaker;
+
+        Gauge.builder("storage.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Storage circuit breaker state: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+        Gauge.builder("storage.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Storage calls that can still start without waiting")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFileAsync(Path file,
+                                                     String contentType,
+                                                     String extension,
+                                                     ContentHash hash,
+                                                     LongConsumer onTransferred) {
+        return callAsync("uploadFile", () -> delegate.uploadFileAsync(file, contentType, extension, hash, onTransferred));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType) {
+        return callAsync("uploadBytes", () -> delegate.uploadBytesAsync(bytes, contentType));
+    }
+
+    // the stream can be read only once, so it's never retried
+    @Override
+    public String uploadStreamAndFetchFileUrl(InputStream in, String contentType) {
+        return unchecked(() -> call("uploadStream", transferTimeout, 1,
+                () -> delegate.uploadStreamAndFetchFileUrl(in, contentType)));
+    }
+
+    // signing is local, nothing to guard
+    @Override
+    public PresignedPut presignPut(String fileKey, String contentType, long size, String checksumSha256, Duration ttl) {
+        return delegate.presignPut(fileKey, contentType, size, checksumSha256, ttl);
+    }
+
+    // starting and completing aren't idempotent, a retry could leave an
+    // upload behind or fail on one that already completed
+    @Override
+    public String startChunkedUpload(String fileKey, String contentType) {
+        return unchecked(() -> call("startChunkedUpload", metadataTimeout, 1,
+                () -> delegate.startChunkedUpload(fileKey, contentType)));
+    }
+
+    // the stream can be read only once, so it's never retried
+    @Override
+    public String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length) {
+        return unchecked(() -> call("uploadChunk", transferTimeout, 1,
+                () -> delegate.uploadChunk(fileKey, uploadId, chunkNumber, in, length)));
+    }
+
+    @Override
+    public String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions) {
+        return unchecked(() -> call("completeChunkedUpload", transferTimeout, 1,
+                () -> delegate.completeChunkedUpload(fileKey, uploadId, chunkVersions)));
+    }
+
+    @Override
+    public void abortChunkedUpload(String fileKey, String uploadId) {
+        unchecked(() -> call("abortChunkedUpload", metadataTimeout, maxAttempts, () -> {
+            delegate.abortChunkedUpload(fileKey, uploadId);
+            return null;
+        }));
+    }
+
+    @Override
+    public Optional<StoredObject> findObject(String fileKey) {
+        return unchecked(() -> call("findObject", metadataTimeout, maxAttempts, () -> delegate.findObject(fileKey)));
+    }
+
+    @Override
+    public Optional<BlobInfo> describe(String fileUrl) {
+        return unchecked(() -> call("describe", metadataTimeout, maxAttempts, () -> delegate.describe(fileUrl)));
+    }
+
+    // One backend read per range, streamed straight to the target, so S3
+    // serves it with a single GET and local files keep transferTo. The permit
+    // is held for the whole transfer. A write that fails, or a timeout that
+    // strikes while a write is blocked, is the viewer's doing and doesn't
+    // count against the breaker. Bytes may already have reached the target,
+    // so it's never retried.
+    @Override
+    public void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException {
+        var viewer = new ViewerChannel(target);
+        attempt("transferRange", transferTimeout, () -> {
+            delegate.transferRange(fileUrl, start, length, viewer);
+            return null;
+        }, viewer::isAtFault);
+    }
+
+    @Override
+    public String fetchFileUrl(String fileKey) {
+        return delegate.fetchFileUrl(fileKey);
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
+        unchecked(() -> call("deleteFile", metadataTimeout, maxAttempts, () -> {
+            delegate.deleteFile(fileUrl);
+            return null;
+        }));
+    }
+
+    @Override
+    public void deleteFiles(String... fileUrls) {
+        unchecked(() -> call("deleteFiles", metadataTimeout, maxAttempts, () -> {
+            delegate.deleteFiles(fileUrls);
+            return null;
+        }));
+    }
+
+    @Override
+    public String newFileKey(String extension) {
+        return delegate.newFileKey(extension);
+    }
+
+    private <T> T call(String operation, Duration timeout, int attempts, StorageCall<T> storageCall) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(operation, timeout, storageCall, () -> false);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= attempts || !isRetryable(e)) {
+                    throw e;
+                }
+                log.debug("Storage call {} failed, attempt {} of {}", operation, attempt, attempts, e);
+                sleep(backoffBefore(attempt + 1));
+            }
+        }
+    }
+
+    private <T> T attempt(String operation,
+                          Duration timeout,
+                          StorageCall<T> storageCall,
+                          BooleanSupplier callerAtFault) throws IOException {
+        acquire(operation);
+        Future<T> future = executor.submit(() -> {
+            try {
+                return storageCall.call();
+            } finally {
+                bulkhead.release();
+            }
+        });
+
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            record(operation, null);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            var timedOut = new StorageUnavailableException("Storage didn't answer " + operation + " within " + timeout + ".", e);
+            record(operation, timedOut, callerAtFault.getAsBoolean());
+            throw timedOut;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.releasePermission();
+            Thread.currentThread().interrupt();
+            throw new StorageUnavailableException("Interrupted while waiting for storage.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            record(operation, cause, callerAtFault.getAsBoolean());
+            switch (cause) {
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                case Error error -> throw error;
+                default -> throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    // uploads already run without blocking a thread, only the bulkhead,
+    // breaker and timeout apply; the permit is held until the backend is done
+    private CompletableFuture<String> callAsync(String operation, Supplier<CompletableFuture<String>> storageCall) {
+        acquire(operation);
+        CompletableFuture<String> upload;
+        try {
+            upload = storageCall.get();
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            record(operation, e);
+            throw e;
+        }
+        upload.whenComplete((url, failure) -> bulkhead.release());
+
+        return upload.copy()
+                .orTimeout(transferTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((url, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause instanceof TimeoutException) {
+                        upload.cancel(true);
+                    }
+                    record(operation, cause);
+                });
+    }
+
+    private void acquire(String operation) {
+        try {
+            if (!bulkhead.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                count(operation, "rejected");
+                throw new CallRejectedException("Storage is busy, try again later.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageUnavailableException("Interrupted while waiting for storage.", e);
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            count(operation, "rejected");
+            throw new CallRejectedException("Storage is unavailable, try again later.");
+        }
+    }
+
+    private void record(String operation, Throwable failure) {
+        record(operation, failure, false);
+    }
+
+    private void record(String operation, Throwable failure, boolean callerAtFault) {
+        if (failure == null) {
+            circuitBreaker.onSuccess();
+            count(operation, "success");
+        } else if (callerAtFault || isCallerError(failure)) {
+            circuitBreaker.releasePermission();
+            count(operation, "rejected");
+        } else {
+            circuitBreaker.onFailure();
+            count(operation, failure instanceof StorageUnavailableException || failure instanceof TimeoutException
+                    ? "timeout" : "failure");
+        }
+    }
+
+    private void count(String operation, String outcome) {
+        meterRegistry.counter("storage.calls", "operation", operation, "outcome", outcome).increment();
+    }
+
+    // a busy bulkhead or an open breaker won't be different a moment later
+    private static boolean isRetryable(Exception e) {
+        return !isCallerError(e) && !(e instanceof CallRejectedException);
+    }
+
+    // full jitter: anywhere between zero and the exponential delay
+    private Duration backoffBefore(int attempt) {
+        long exponential = backoff.toMillis() << Math.min(attempt - 2, 20);
+        long cap = Math.min(maxBackoff.toMillis(), exponential);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private static boolean isCallerError(Throwable e) {
+        return e instanceof InvalidFileUrlException
+                || e instanceof MediaNotFoundException
+                || e instanceof StorageOperationNotSupportedException;
+    }
+
+    private static void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageUnavailableException("Interrupted while waiting to retry a storage call.", e);
+        }
+    }
+
+    private static <T> T unchecked(StorageCall<T> storageCall) {
+        try {
+            return storageCall.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the target of a ranged read, noting when the viewer is to blame
+    private static final class ViewerChannel implements WritableByteChannel {
+
+        private final WritableByteChannel target;
+        private volatile boolean writing;
+        private volatile boolean failed;
+
+        ViewerChannel(WritableByteChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            writing = true;
+            try {
+                return target.write(src);
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                throw e;
+            } finally {
+                writing = false;
+            }
+        }
+
+        boolean isAtFault() {
+            return writing || failed;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+
+    // refused by the bulkhead or the open breaker, without calling the backend
+    private static final class CallRejectedException extends StorageUnavailableException {
+        CallRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StorageCall<T> {
+        T call() throws IOException;
+    }
+}
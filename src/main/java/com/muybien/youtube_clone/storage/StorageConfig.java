@@ -0,0 +1,63 @@
+package com.muybien.youtube_clone.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// The backend picked by storage.backend is registered under BACKEND and
+// wrapped in the resilience layer. What the rest of the application gets
+// injected as BlobStorage is that layer behind the edge cache, or the layer
+// itself when the cache is switched off. The cache sits outside, so cached
+// media is still served while the circuit breaker is open.
+@Configuration
+public class StorageConfig {
+
+    public static final String BACKEND = "storageBackend";
+    static final String RESILIENT = "resilientStorage";
+
+    @Bean(RESILIENT)
+    public ResilientBlobStorage resilientBlobStorage(@Qualifier(BACKEND) BlobStorage backend,
+                                                     MeterRegistry meterRegistry,
+                                                     @Value("${storage.resilience.metadata-timeout:5s}") Duration metadataTimeout,
+                                                     @Value("${storage.resilience.transfer-timeout:10m}") Duration transferTimeout,
+                                                     @Value("${storage.resilience.max-concurrent-calls:64}") int maxConcurrentCalls,
+                                                     @Value("${storage.resilience.max-wait:100ms}") Duration maxWait,
+                                                     @Value("${storage.resilience.max-attempts:3}") int maxAttempts,
+                                                     @Value("${storage.resilience.backoff:100ms}") Duration backoff,
+                                                     @Value("${storage.resilience.max-backoff:2s}") Duration maxBackoff,
+                                                     @Value("${storage.resilience.circuit-breaker.window-size:20}") int windowSize,
+                                                     @Value("${storage.resilience.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                                                     @Value("${storage.resilience.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        return new ResilientBlobStorage(backend, meterRegistry, metadataTimeout, transferTimeout, maxConcurrentCalls,
+                maxWait, maxAttempts, backoff, maxBackoff, new CircuitBreaker(windowSize, failureRateThreshold, openDuration));
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "storage.edge-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public EdgeCachedBlobStorage edgeCachedBlobStorage(@Qualifier(RESILIENT) BlobStorage storage,
+                                                       MeterRegistry meterRegistry,
+                                                       @Value("${storage.edge-cache.dir:${java.io.tmpdir}/youtube-clone-edge-cache}") Path cacheDir,
+                                                       @Value("${storage.edge-cache.segment-size:4MB}") DataSize segmentSize,
+                                                       @Value("${storage.edge-cache.disk-budget:10GB}") DataSize diskBudget,
+                                                       @Value("${storage.edge-cache.memory-budget:64MB}") DataSize memoryBudget,
+                                                       @Value("${storage.edge-cache.fill-concurrency:4}") int fillConcurrency) {
+        return new EdgeCachedBlobStorage(storage, meterRegistry, cacheDir, segmentSize, diskBudget, memoryBudget, fillConcurrency);
+    }
+
+    // with the edge cache switched off the resilience layer is injected as is
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "storage.edge-cache.enabled", havingValue = "false")
+    public BlobStorage uncachedBlobStorage(@Qualifier(RESILIENT) BlobStorage storage) {
+        return storage;
+    }
+}
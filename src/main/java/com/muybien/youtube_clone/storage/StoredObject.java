@@ -0,0 +1,5 @@
+package com.muybien.youtube_clone.storage;
+
+// checksumSha256 is base64 encoded, null when the object was stored without one
+public record StoredObject(long size, String checksumSha256) {
+}
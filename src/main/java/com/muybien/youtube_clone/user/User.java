@@ -32,10 +32,6 @@ public class User extends BaseEntity implements UserDetails {
     @ElementCollection(fetch = FetchType.EAGER)
     private List<Integer> watchedVideoHistory = new LinkedList<>();
     @ElementCollection(fetch = FetchType.EAGER)
-    private Set<Integer> likedVideos = new HashSet<>();
-    @ElementCollection(fetch = FetchType.EAGER)
-    private Set<Integer> disLikedVideos =  new HashSet<>();
-    @ElementCollection(fetch = FetchType.EAGER)
     private Set<Integer> userSubscribedTo = new HashSet<>();
     @ElementCollection(fetch = FetchType.EAGER)
     private Set<Integer> userSubscribedBy = new HashSet<>();
@@ -56,22 +52,6 @@ public class User extends BaseEntity implements UserDetails {
         watchedVideoHistory.remove(videoId);
     }
 
-    public void addVideoToLikedVideos(Integer videoId) {
-        likedVideos.add(videoId);
-    }
-
-    public void removeVideoFromLikedVideos(Integer videoId) {
-        likedVideos.remove(videoId);
-    }
-
-    public void addVideoToDisLikedVideos(Integer videoId) {
-        disLikedVideos.add(videoId);
-    }
-
-    public void removeVideoFromDisLikedVideos(Integer videoId) {
-        disLikedVideos.remove(videoId);
-    }
-
     public void addUserToSubscribedTo(Integer userId) {
         userSubscribedTo.add(userId);
     }
@@ -31,46 +31,6 @@ public class UserService {
         userRepository.save(user);
     }
 
-    @Transactional
-    public void addVideoToLikedVideos(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        user.addVideoToLikedVideos(videoId);
-        userRepository.save(user);
-    }
-
-    @Transactional
-    public void removeVideoFromLikedVideos(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        user.removeVideoFromLikedVideos(videoId);
-        userRepository.save(user);
-    }
-
-    @Transactional
-    public void addVideoToDisLikedVideos(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        user.addVideoToDisLikedVideos(videoId);
-        userRepository.save(user);
-    }
-
-    @Transactional
-    public void removeVideoFromDisLikedVideos(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        user.removeVideoFromDisLikedVideos(videoId);
-        userRepository.save(user);
-    }
-
-    @Transactional(readOnly = true)
-    public boolean isVideoLikedByUser(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        return user.getLikedVideos().stream().anyMatch(likedVideo -> likedVideo.equals(videoId));
-    }
-
-    @Transactional(readOnly = true)
-    public boolean isVideoDisLikedByUser(Integer videoId, Authentication connectedUser) {
-        var user = (User) connectedUser.getPrincipal();
-        return user.getDisLikedVideos().stream().anyMatch(disLikedVideo -> disLikedVideo.equals(videoId));
-    }
-
     // method returns reversed LinkedList to obtain
     // recent watched video from latest to oldest
     @Transactional(readOnly = true)
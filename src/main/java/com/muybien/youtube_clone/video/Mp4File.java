@@ -0,0 +1,409 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+// Layout of an MP4 (ISO base media / QuickTime) file, read from its top-level
+// boxes without touching the media data. Only moov, the index telling where
+// every sample is, is read into memory, and only when it's at most
+// maxMoovSize, so memory stays bounded whatever the size of the video.
+// When moov comes after mdat a player has to fetch the end of the file before
+// it can start; fastStart streams the file with moov moved in front of the
+// media data and its chunk offsets shifted to match.
+@Slf4j
+final class Mp4File {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_HEADER_SIZE = 16;
+    private static final long MAX_32_BIT_OFFSET = 0xFFFF_FFFFL;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    // of the first mdat, -1 when there is none
+    private final long mdatOffset;
+    private final long moovOffset;
+    private final ByteBuffer moov;
+    private final boolean fragmented;
+    private final VideoMetadata metadata;
+    private final List<ChunkOffsets> chunkOffsets;
+
+    private Mp4File(FileChannel channel,
+                    long fileSize,
+                    long mdatOffset,
+                    long moovOffset,
+                    ByteBuffer moov,
+                    boolean fragmented,
+                    VideoMetadata metadata,
+                    List<ChunkOffsets> chunkOffsets) {
+        this.channel = channel;
+        this.fileSize = fileSize;
+        this.mdatOffset = mdatOffset;
+        this.moovOffset = moovOffset;
+        this.moov = moov;
+        this.fragmented = fragmented;
+        this.metadata = metadata;
+        this.chunkOffsets = chunkOffsets;
+    }
+
+    // empty when the file isn't an MP4, is truncated, or its moov is too
+    // large or can't be parsed
+    static Optional<Mp4File> read(FileChannel channel, long maxMoovSize) throws IOException {
+        long fileSize = channel.size();
+        long mdatOffset = -1;
+        long moovOffset = -1;
+        long moovSize = 0;
+        boolean fragmented = false;
+        ByteBuffer header = ByteBuffer.allocate(LARGE_HEADER_SIZE);
+        for (long position = 0; position < fileSize; ) {
+            header.clear().limit((int) Math.min(LARGE_HEADER_SIZE, fileSize - position));
+            readFully(channel, header, position);
+            if (header.limit() < HEADER_SIZE || !isBoxType(typeAt(header, 4))) {
+                return Optional.empty();
+            }
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            if (size == 1) {
+                if (header.limit() < LARGE_HEADER_SIZE) {
+                    return Optional.empty();
+                }
+                size = header.getLong(8);
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            if (size < HEADER_SIZE || size > fileSize - position) {
+                return Optional.empty();
+            }
+            switch (typeAt(header, 4)) {
+                case "mdat" -> mdatOffset = mdatOffset < 0 ? position : mdatOffset;
+                case "moof" -> fragmented = true;
+                case "moov" -> {
+                    if (moovOffset >= 0) {
+                        return Optional.empty();
+                    }
+                    moovOffset = position;
+                    moovSize = size;
+                }
+                default -> {
+                }
+            }
+            position += size;
+        }
+        if (moovOffset < 0) {
+            return Optional.empty();
+        }
+        if (moovSize > maxMoovSize) {
+            log.info("moov of {} bytes is larger than the limit of {} bytes, leaving the file as it is.",
+                    moovSize, maxMoovSize);
+            return Optional.empty();
+        }
+
+        ByteBuffer moov = ByteBuffer.allocate((int) moovSize);
+        readFully(channel, moov, moovOffset);
+        try {
+            Atom root = atomAt(moov, 0, moov.capacity());
+            return Optional.of(new Mp4File(channel, fileSize, mdatOffset, moovOffset, moov, fragmented,
+                    readMetadata(moov, root), readChunkOffsets(moov, root)));
+        } catch (MalformedMp4Exception | IndexOutOfBoundsException e) {
+            // a read past the end of a box the checks missed is malformed too
+            log.info("Failed to parse moov: {}.", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    VideoMetadata metadata() {
+        return metadata;
+    }
+
+    boolean isFastStart() {
+        return mdatOffset < 0 || moovOffset < mdatOffset;
+    }
+
+    // The file as [boxes before the first mdat][moov][everything else in
+    // order], read from the channel as the stream is consumed. Empty when moov
+    // is already in front, or when the file can't be rewritten: fragmented
+    // files carry offsets outside moov, and an offset that no longer fits a
+    // 32-bit stco would need the table widened.
+    Optional<InputStream> fastStart() {
+        if (isFastStart() || fragmented) {
+            return Optional.empty();
+        }
+        long moovSize = moov.capacity();
+        ByteBuffer patched = ByteBuffer.allocate(moov.capacity()).put(moov.duplicate().clear());
+        for (ChunkOffsets table : chunkOffsets) {
+            for (int i = 0; i < table.count(); i++) {
+                int index = table.entries() + i * table.entrySize();
+                long offset = table.wide() ? patched.getLong(index) : Integer.toUnsignedLong(patched.getInt(index));
+                // data between the first mdat and moov moves back by the size
+                // of moov, data after moov stays where it was
+                long shifted = offset >= mdatOffset && offset < moovOffset ? offset + moovSize : offset;
+                if (table.wide()) {
+                    patched.putLong(index, shifted);
+                } else if (shifted > MAX_32_BIT_OFFSET) {
+                    log.info("Chunk offset {} doesn't fit stco once moov is moved, leaving the file as it is.", shifted);
+                    return Optional.empty();
+                } else {
+                    patched.putInt(index, (int) shifted);
+                }
+            }
+        }
+        long moovEnd = moovOffset + moovSize;
+        return Optional.of(new SequenceInputStream(Collections.enumeration(List.of(
+                new ChannelRangeInputStream(channel, 0, mdatOffset),
+                new ByteArrayInputStream(patched.array()),
+                new ChannelRangeInputStream(channel, mdatOffset, moovOffset - mdatOffset),
+                new ChannelRangeInputStream(channel, moovEnd, fileSize - moovEnd)))));
+    }
+
+    private static VideoMetadata readMetadata(ByteBuffer moov, Atom root) {
+        var metadata = VideoMetadata.builder();
+        child(moov, root, "mvhd").ifPresent(mvhd -> metadata.durationMillis(durationMillis(moov, mvhd)));
+        for (Atom trak : children(moov, root, "trak")) {
+            boolean video = descend(moov, trak, "mdia", "hdlr")
+                    .filter(hdlr -> hdlr.size() >= 12)
+                    .map(hdlr -> typeAt(moov, hdlr.content() + 8))
+                    .filter("vide"::equals)
+                    .isPresent();
+            if (!video) {
+                continue;
+            }
+            Optional<Atom> sampleEntry = descend(moov, trak, "mdia", "minf", "stbl", "stsd")
+                    .filter(stsd -> stsd.size() >= 8)
+                    .flatMap(stsd -> children(moov, stsd.content() + 8, stsd.end()).stream().findFirst());
+            sampleEntry.ifPresent(entry -> {
+                metadata.codec(codec(moov, entry));
+                // the coded size, used when the track header has none
+                if (entry.size() >= 28) {
+                    metadata.width(Short.toUnsignedInt(moov.getShort(entry.content() + 24)));
+                    metadata.height(Short.toUnsignedInt(moov.getShort(entry.content() + 26)));
+                }
+            });
+            child(moov, trak, "tkhd").ifPresent(tkhd -> displaySize(moov, tkhd, metadata));
+            break;
+        }
+        return metadata.build();
+    }
+
+    private static Long durationMillis(ByteBuffer moov, Atom mvhd) {
+        if (mvhd.size() < 4) {
+            return null;
+        }
+        int version = moov.get(mvhd.content());
+        long timescale;
+        long duration;
+        if (version == 1 && mvhd.size() >= 32) {
+            timescale = Integer.toUnsignedLong(moov.getInt(mvhd.content() + 20));
+            duration = moov.getLong(mvhd.content() + 24);
+        } else if (version == 0 && mvhd.size() >= 20) {
+            timescale = Integer.toUnsignedLong(moov.getInt(mvhd.content() + 12));
+            duration = Integer.toUnsignedLong(moov.getInt(mvhd.content() + 16));
+            // all ones means unknown
+            duration = duration == MAX_32_BIT_OFFSET ? -1 : duration;
+        } else {
+            return null;
+        }
+        if (timescale == 0 || duration < 0) {
+            return null;
+        }
+        return duration / timescale * 1000 + duration % timescale * 1000 / timescale;
+    }
+
+    // width and height as displayed, swapped when the matrix turns the track
+    // by a quarter, as phones record portrait video
+    private static void displaySize(ByteBuffer moov, Atom tkhd, VideoMetadata.VideoMetadataBuilder metadata) {
+        if (tkhd.size() < 4) {
+            return;
+        }
+        int version = moov.get(tkhd.content());
+        int matrix = version == 1 ? tkhd.content() + 52 : tkhd.content() + 40;
+        int dimensions = matrix + 36;
+        if (dimensions + 8 > tkhd.end()) {
+            return;
+        }
+        int width = moov.getInt(dimensions) >>> 16;
+        int height = moov.getInt(dimensions + 4) >>> 16;
+        if (width == 0 || height == 0) {
+            return;
+        }
+        boolean quarterTurn = moov.getInt(matrix) == 0 && moov.getInt(matrix + 4) != 0;
+        metadata.width(quarterTurn ? height : width);
+        metadata.height(quarterTurn ? width : height);
+    }
+
+    // avc1.PPCCLL from the profile, constraints and level in avcC
+    private static String codec(ByteBuffer moov, Atom entry) {
+        if (entry.type().startsWith("avc") && entry.size() > 78) {
+            Optional<Atom> avcC = children(moov, entry.content() + 78, entry.end()).stream()
+                    .filter(atom -> atom.type().equals("avcC") && atom.size() >= 4)
+                    .findFirst();
+            if (avcC.isPresent()) {
+                int content = avcC.get().content();
+                return "%s.%02x%02x%02x".formatted(entry.type(),
+                        moov.get(content + 1), moov.get(content + 2), moov.get(content + 3));
+            }
+        }
+        return entry.type();
+    }
+
+    private static List<ChunkOffsets> readChunkOffsets(ByteBuffer moov, Atom root) {
+        List<ChunkOffsets> tables = new ArrayList<>();
+        for (Atom trak : children(moov, root, "trak")) {
+            Optional<Atom> stbl = descend(moov, trak, "mdia", "minf", "stbl");
+            if (stbl.isEmpty()) {
+                continue;
+            }
+            for (Atom table : children(moov, stbl.get().content(), stbl.get().end())) {
+                boolean wide = table.type().equals("co64");
+                if (!wide && !table.type().equals("stco")) {
+                    continue;
+                }
+                if (table.size() < 8) {
+                    throw new MalformedMp4Exception(table.type() + " is too short");
+                }
+                long count = Integer.toUnsignedLong(moov.getInt(table.content() + 4));
+                int entrySize = wide ? Long.BYTES : Integer.BYTES;
+                if (count * entrySize > table.size() - 8) {
+                    throw new MalformedMp4Exception(table.type() + " has more entries than fit in it");
+                }
+                tables.add(new ChunkOffsets(table.content() + 8, (int) count, wide));
+            }
+        }
+        return tables;
+    }
+
+    private static Optional<Atom> descend(ByteBuffer moov, Atom from, String... types) {
+        Optional<Atom> atom = Optional.of(from);
+        for (String type : types) {
+            atom = atom.flatMap(parent -> child(moov, parent, type));
+        }
+        return atom;
+    }
+
+    private static Optional<Atom> child(ByteBuffer moov, Atom parent, String type) {
+        return children(moov, parent, type).stream().findFirst();
+    }
+
+    private static List<Atom> children(ByteBuffer moov, Atom parent, String type) {
+        return children(moov, parent.content(), parent.end()).stream()
+                .filter(atom -> atom.type().equals(type))
+                .toList();
+    }
+
+    private static List<Atom> children(ByteBuffer moov, int from, int to) {
+        List<Atom> atoms = new ArrayList<>();
+        for (int position = from; position + HEADER_SIZE <= to; ) {
+            Atom atom = atomAt(moov, position, to);
+            atoms.add(atom);
+            position = atom.end();
+        }
+        return atoms;
+    }
+
+    private static Atom atomAt(ByteBuffer moov, int position, int limit) {
+        long size = Integer.toUnsignedLong(moov.getInt(position));
+        int content = position + HEADER_SIZE;
+        if (size == 1) {
+            if (position + LARGE_HEADER_SIZE > limit) {
+                throw new MalformedMp4Exception("box at " + position + " is truncated");
+            }
+            size = moov.getLong(position + 8);
+            content = position + LARGE_HEADER_SIZE;
+        } else if (size == 0) {
+            size = limit - position;
+        }
+        if (size < content - position || size > limit - position) {
+            throw new MalformedMp4Exception("box at " + position + " has an invalid size " + size);
+        }
+        return new Atom(typeAt(moov, position + 4), content, (int) (position + size));
+    }
+
+    private static String typeAt(ByteBuffer buffer, int index) {
+        byte[] type = new byte[4];
+        buffer.get(index, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    // box types are four printable characters, anything else isn't an MP4
+    private static boolean isBoxType(String type) {
+        return type.chars().allMatch(c -> c >= 0x20 && c < 0x7f);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("File ended at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    // a box inside moov; content is where its payload starts
+    private record Atom(String type, int content, int end) {
+
+        int size() {
+            return end - content;
+        }
+    }
+
+    // entries is where the first offset of an stco (32-bit) or co64 table is
+    private record ChunkOffsets(int entries, int count, boolean wide) {
+
+        int entrySize() {
+            return wide ? Long.BYTES : Integer.BYTES;
+        }
+    }
+
+    private static class MalformedMp4Exception extends RuntimeException {
+
+        MalformedMp4Exception(String message) {
+            super(message);
+        }
+    }
+
+    // reads length bytes from position on, without moving the channel
+    private static class ChannelRangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        ChannelRangeInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == 1 ? single[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, remaining)), position);
+            if (read < 0) {
+                throw new EOFException("File ended at " + position);
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+    }
+}
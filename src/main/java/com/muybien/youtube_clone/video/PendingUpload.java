@@ -0,0 +1,45 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+// A presigned upload that was issued but not completed yet, with what the
+// client declared about both files so the stored objects can be verified.
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "pending_upload",
+        indexes = @Index(name = "idx_pending_upload_expires_at", columnList = "expiresAt"))
+public class PendingUpload extends BaseEntity {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    private String title;
+    private String description;
+
+    @Column(nullable = false)
+    private String videoKey;
+    private long videoSize;
+    @Column(length = 44)
+    private String videoChecksum;
+
+    @Column(nullable = false)
+    private String thumbnailKey;
+    private long thumbnailSize;
+    @Column(length = 44)
+    private String thumbnailChecksum;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
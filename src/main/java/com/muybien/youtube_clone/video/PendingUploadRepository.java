@@ -0,0 +1,19 @@
+package com.muybien.youtube_clone.video;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface PendingUploadRepository extends JpaRepository<PendingUpload, String> {
+
+    // locked so a completion retried in parallel creates the video only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<PendingUpload> findForUpdateByIdAndUserId(String id, Integer userId);
+
+    List<PendingUpload> findByExpiresAtBefore(LocalDateTime now, Limit limit);
+}
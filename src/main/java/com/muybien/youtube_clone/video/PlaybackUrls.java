@@ -0,0 +1,85 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.config.UrlSigner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Replaces the storage locations of a video's files with signed URLs of the
+// stream and thumbnail endpoints before they are sent to clients, so the
+// bucket can stay private. Applied to responses only: cached DTOs keep the
+// storage URL, which the application itself reads the files from.
+// Thumbnail variants are signed per width. Upload responses carry the
+// storage URL of the new video; a file of the local backend is only served
+// under /media to signed requests, so its URL is signed too.
+@Component
+public class PlaybackUrls {
+
+    private final UrlSigner urlSigner;
+    // null unless files are kept by the local backend
+    private final String localMediaUrl;
+
+    public PlaybackUrls(UrlSigner urlSigner,
+                        @Value("${storage.backend:s3}") String backend,
+                        @Value("${storage.local.public-url:http://localhost:8080/api/v1/media}") String localMediaUrl) {
+        this.urlSigner = urlSigner;
+        this.localMediaUrl = "local".equals(backend) ? StringUtils.trimTrailingCharacter(localMediaUrl, '/') + "/" : null;
+    }
+
+    public VideoDTO forVideo(Integer videoId, VideoDTO video) {
+        return video.toBuilder()
+                .videoUrl(video.videoUrl() == null ? null : urlSigner.sign("/videos/" + videoId + "/stream"))
+                .thumbnailUrl(video.thumbnailUrl() == null ? null : thumbnailUrl(videoId))
+                .thumbnailVariants(thumbnailVariantUrls(videoId, video.thumbnailVariants()))
+                .build();
+    }
+
+    public VideoCardDTO forCard(VideoCardDTO card) {
+        return card.thumbnailUrl() == null ? card : card.toBuilder()
+                .thumbnailUrl(thumbnailUrl(card.id()))
+                .thumbnailVariants(thumbnailVariantUrls(card.id(), card.thumbnailVariants()))
+                .build();
+    }
+
+    public List<VideoCardDTO> forCards(List<VideoCardDTO> cards) {
+        return cards.stream().map(this::forCard).toList();
+    }
+
+    public VideoCardPage forPage(VideoCardPage page) {
+        return new VideoCardPage(forCards(page.videos()), page.nextCursor());
+    }
+
+    public VideoUploadResponse forUpload(VideoUploadResponse upload) {
+        return new VideoUploadResponse(forFile(upload.videoUrl()));
+    }
+
+    public VideoIngestStatus forIngest(VideoIngestStatus status) {
+        return status.videoUrl() == null ? status : status.toBuilder()
+                .videoUrl(forFile(status.videoUrl()))
+                .build();
+    }
+
+    private String forFile(String fileUrl) {
+        if (localMediaUrl == null || fileUrl == null || !fileUrl.startsWith(localMediaUrl)) {
+            return fileUrl;
+        }
+        return urlSigner.sign("/media/" + fileUrl.substring(localMediaUrl.length()));
+    }
+
+    private String thumbnailUrl(Integer videoId) {
+        return urlSigner.sign("/videos/" + videoId + "/thumbnail");
+    }
+
+    private Map<Integer, String> thumbnailVariantUrls(Integer videoId, Map<Integer, String> variants) {
+        if (variants == null) {
+            return null;
+        }
+        Map<Integer, String> signed = new TreeMap<>();
+        variants.keySet().forEach(width -> signed.put(width, urlSigner.sign("/videos/" + videoId + "/thumbnail/" + width)));
+        return signed;
+    }
+}
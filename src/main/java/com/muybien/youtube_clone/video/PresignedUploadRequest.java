@@ -0,0 +1,33 @@
+package com.muybien.youtube_clone.video;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+
+public record PresignedUploadRequest(
+        @NotBlank(message = "Title is required.")
+        String title,
+        @NotBlank(message = "Description is required.")
+        String description,
+        @NotNull(message = "Video file is required.")
+        @Valid
+        DeclaredFile video,
+        @NotNull(message = "Thumbnail file is required.")
+        @Valid
+        DeclaredFile thumbnail
+) {
+
+    // checksumSha256 is the base64 encoded SHA-256 of the file's content
+    public record DeclaredFile(
+            @NotBlank(message = "Content type is required.")
+            String contentType,
+            @Positive(message = "Size must be positive.")
+            long size,
+            @NotNull(message = "SHA-256 checksum is required.")
+            @Pattern(regexp = "[A-Za-z0-9+/]{43}=", message = "SHA-256 checksum must be base64 encoded.")
+            String checksumSha256
+    ) {
+    }
+}
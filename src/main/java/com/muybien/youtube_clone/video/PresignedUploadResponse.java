@@ -0,0 +1,15 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.storage.PresignedPut;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Builder
+public record PresignedUploadResponse(
+        String uploadId,
+        PresignedPut video,
+        PresignedPut thumbnail,
+        LocalDateTime completeBefore
+) {
+}
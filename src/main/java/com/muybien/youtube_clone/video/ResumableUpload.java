@@ -0,0 +1,66 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.common.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// A chunked video upload in progress. The chunks themselves are in storage
+// under storageUploadId; which of them arrived is recorded here. The
+// thumbnail is stored when the upload starts.
+@Entity
+@SuperBuilder
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Table(name = "resumable_upload",
+        indexes = @Index(name = "idx_resumable_upload_expires_at", columnList = "expiresAt"))
+public class ResumableUpload extends BaseEntity {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    private String title;
+    private String description;
+
+    @Column(nullable = false)
+    private String videoKey;
+    private String videoContentType;
+    private long videoSize;
+    private int chunkSize;
+
+    @Column(nullable = false)
+    private String storageUploadId;
+
+    @Column(nullable = false)
+    private String thumbnailUrl;
+
+    // pushed back by every chunk, so only idle uploads expire
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // chunk number, from 1, to the version storage returned for it
+    @ElementCollection
+    @CollectionTable(name = "resumable_upload_chunk", joinColumns = @JoinColumn(name = "upload_id"))
+    @MapKeyColumn(name = "chunk_number")
+    @Column(name = "version", nullable = false)
+    @Builder.Default
+    private Map<Integer, String> chunks = new HashMap<>();
+
+    public int chunkCount() {
+        return Math.toIntExact(Math.ceilDiv(videoSize, chunkSize));
+    }
+
+    // every chunk is chunkSize long except the last, which holds the rest
+    public long chunkLength(int chunkNumber) {
+        return Math.min(chunkSize, videoSize - (long) (chunkNumber - 1) * chunkSize);
+    }
+}
@@ -0,0 +1,43 @@
+package com.muybien.youtube_clone.video;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ResumableUploadRepository extends JpaRepository<ResumableUpload, String> {
+
+    Optional<ResumableUpload> findByIdAndUserId(String id, Integer userId);
+
+    // locked so completing and purging can't both act on the same upload
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ResumableUpload> findForUpdateByIdAndUserId(String id, Integer userId);
+
+    List<ResumableUpload> findByExpiresAtBefore(LocalDateTime now, Limit limit);
+
+    // chunks arrive in parallel, each is recorded without loading the upload;
+    // a chunk sent again replaces the earlier one
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO resumable_upload_chunk (upload_id, chunk_number, version)
+            VALUES (:uploadId, :chunkNumber, :version)
+            ON DUPLICATE KEY UPDATE version = :version
+            """, nativeQuery = true)
+    void recordChunk(@Param("uploadId") String uploadId,
+                     @Param("chunkNumber") int chunkNumber,
+                     @Param("version") String version);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE resumable_upload SET expires_at = :expiresAt WHERE id = :id", nativeQuery = true)
+    void extendExpiry(@Param("id") String id, @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,21 @@
+package com.muybien.youtube_clone.video;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.web.multipart.MultipartFile;
+
+// the thumbnail is small enough to send whole, only the video is chunked
+public record ResumableUploadRequest(
+        @NotNull(message = "Thumbnail file is required.")
+        MultipartFile thumbnail,
+        @NotBlank(message = "Title is required.")
+        String title,
+        @NotBlank(message = "Description is required.")
+        String description,
+        @NotBlank(message = "Video content type is required.")
+        String videoContentType,
+        @Positive(message = "Video size must be positive.")
+        long videoSize
+) {
+}
@@ -0,0 +1,23 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Chunk n covers bytes (n - 1) * chunkSize up to chunkSize bytes further.
+// Ranges are inclusive, like HTTP byte ranges.
+@Builder
+public record ResumableUploadStatus(
+        String uploadId,
+        long videoSize,
+        int chunkSize,
+        int chunkCount,
+        List<ByteRange> receivedRanges,
+        List<Integer> missingChunks,
+        LocalDateTime expiresAt
+) {
+
+    public record ByteRange(long start, long end) {
+    }
+}
@@ -0,0 +1,197 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.common.Futures;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Resizes an uploaded thumbnail into a fixed set of widths, so list pages
+// fetch a copy close to the size they show instead of the original, which
+// can be several megabytes, plus a placeholder of a few hundred bytes shown
+// blurred while the image loads. The image is decoded once; the widths are
+// resized and encoded in parallel on a pool of their own, apart from request
+// threads. When the pool is saturated the caller resizes itself, which slows
+// the ingest workers down instead of queueing images without bound.
+@Slf4j
+@Service
+public class ThumbnailVariantService {
+
+    private static final int PLACEHOLDER_WIDTH = 16;
+    private static final int MAX_PLACEHOLDER_LENGTH = 2048;
+    // decoded as 4 bytes per pixel, so about 200MB at most
+    private static final long MAX_PIXELS = 50_000_000;
+    private static final float QUALITY = 0.8f;
+    private static final float PLACEHOLDER_QUALITY = 0.5f;
+
+    private final BlobStorage blobStorage;
+    private final int[] widths;
+    private final ThreadPoolExecutor executor;
+
+    public ThumbnailVariantService(BlobStorage blobStorage,
+                                   @Value("${video.thumbnail.widths:160,320,640,1280}") int[] widths,
+                                   @Value("${video.thumbnail.concurrency:2}") int concurrency,
+                                   @Value("${video.thumbnail.queue-capacity:32}") int queueCapacity) {
+        this.blobStorage = blobStorage;
+        this.widths = Arrays.stream(widths).distinct().sorted().toArray();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("thumbnail-", 0).daemon(true).factory(),
+                (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Thumbnail pool is shut down");
+                    }
+                    task.run();
+                });
+    }
+
+    // Only widths smaller than the image are made, it's never enlarged.
+    // A thumbnail that can't be decoded or resized gets no variants, and
+    // variants already stored for it are deleted; the original still works.
+    public ThumbnailVariants generate(Path image) {
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        Map<Integer, CompletableFuture<String>> uploads = new TreeMap<>();
+        try {
+            BufferedImage original = decode(image);
+            if (original == null) {
+                return ThumbnailVariants.NONE;
+            }
+            for (int width : widths) {
+                if (width < original.getWidth()) {
+                    var upload = CompletableFuture.supplyAsync(() -> encode(resize(original, width), QUALITY), executor)
+                            .thenCompose(bytes -> blobStorage.uploadBytesAsync(bytes, MediaType.IMAGE_JPEG_VALUE));
+                    uploads.put(width, upload);
+                    tasks.add(upload);
+                }
+            }
+            var placeholder = CompletableFuture.supplyAsync(() -> placeholder(original), executor);
+            tasks.add(placeholder);
+            Futures.join(CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)));
+
+            Map<Integer, String> urls = new TreeMap<>();
+            uploads.forEach((width, upload) -> urls.put(width, upload.join()));
+            return new ThumbnailVariants(urls, placeholder.join());
+        } catch (RuntimeException e) {
+            log.warn("Failed to make thumbnail variants of {}, only the original is kept.", image, e);
+            // every task has finished here, remove whichever uploads made it
+            uploads.values().forEach(upload -> upload.thenAccept(blobStorage::deleteFile));
+            return ThumbnailVariants.NONE;
+        }
+    }
+
+    // the size is checked before the pixels are decoded
+    private BufferedImage decode(Path image) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                log.info("No decoder for thumbnail {}, it gets no variants.", image);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    log.info("Thumbnail {} has {} pixels, too many to resize.", image, pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode thumbnail " + image, e);
+        }
+    }
+
+    private String placeholder(BufferedImage original) {
+        BufferedImage small = resize(original, Math.min(PLACEHOLDER_WIDTH, original.getWidth()));
+        float[] box = new float[9];
+        Arrays.fill(box, 1f / box.length);
+        BufferedImage blurred = new ConvolveOp(new Kernel(3, 3, box), ConvolveOp.EDGE_NO_OP, null).filter(small, null);
+        String placeholder = "data:" + MediaType.IMAGE_JPEG_VALUE + ";base64,"
+                + Base64.getEncoder().encodeToString(encode(blurred, PLACEHOLDER_QUALITY));
+        return placeholder.length() <= MAX_PLACEHOLDER_LENGTH ? placeholder : null;
+    }
+
+    // halved step by step, as bilinear filtering skips pixels when a single
+    // step shrinks the image to less than half
+    static BufferedImage resize(BufferedImage source, int width) {
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+        BufferedImage current = source;
+        do {
+            int stepWidth = Math.max(width, current.getWidth() / 2);
+            int stepHeight = Math.max(height, current.getHeight() / 2);
+            current = draw(current, stepWidth, stepHeight);
+        } while (current.getWidth() > width || current.getHeight() > height);
+        return current;
+    }
+
+    // onto an opaque white canvas, JPEG has no transparency
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        var out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode thumbnail variant", e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.muybien.youtube_clone.video;
+
+import java.util.Map;
+
+// Smaller copies of a thumbnail by width, and a placeholder small enough to
+// embed in responses as a data: URI.
+public record ThumbnailVariants(
+        Map<Integer, String> urls,
+        String placeholder
+) {
+
+    public static final ThumbnailVariants NONE = new ThumbnailVariants(Map.of(), null);
+
+    public String[] fileUrls() {
+        return urls.values().toArray(String[]::new);
+    }
+}
@@ -0,0 +1,36 @@
+package com.muybien.youtube_clone.video;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// stores variant URLs by width in one column as "width url" lines, so card
+// queries can select them like any other field; URLs never contain whitespace
+@Converter
+public class ThumbnailVariantsConverter implements AttributeConverter<Map<Integer, String>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Map<Integer, String> attribute) {
+        if (attribute == null || attribute.isEmpty()) {
+            return null;
+        }
+        return new TreeMap<>(attribute).entrySet().stream()
+                .map(entry -> entry.getKey() + " " + entry.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public Map<Integer, String> convertToEntityAttribute(String dbData) {
+        Map<Integer, String> variants = new TreeMap<>();
+        if (dbData != null) {
+            for (String line : dbData.split("\n")) {
+                int separator = line.indexOf(' ');
+                variants.put(Integer.parseInt(line.substring(0, separator)), line.substring(separator + 1));
+            }
+        }
+        return variants;
+    }
+}
@@ -1,12 +1,17 @@
 package com.muybien.youtube_clone.video;
 
 import com.muybien.youtube_clone.comment.Comment;
+import com.muybien.youtube_clone.common.AtomicIntegerConverter;
 import com.muybien.youtube_clone.common.BaseEntity;
 import com.muybien.youtube_clone.user.User;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,6 +20,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Getter
 @Setter
 @RequiredArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_video_created_date_id", columnList = "createdDate, id"),
+        @Index(name = "idx_video_view_counter_id", columnList = "videoViewCounter, id"),
+        @Index(name = "idx_video_deleted_at", columnList = "deletedAt")
+})
+// deleted videos stay hidden from every query until VideoPurgeWorker
+// removes them along with their comments and reactions
+@SQLRestriction("deleted_at is null")
 public class Video extends BaseEntity {
 
     @Id
@@ -24,9 +37,25 @@ public class Video extends BaseEntity {
     private String description;
     private String videoUrl;
     private String thumbnailUrl;
+    // smaller copies of the thumbnail by width
+    @Convert(converter = ThumbnailVariantsConverter.class)
+    @Column(length = 2048)
+    private Map<Integer, String> thumbnailVariants;
+    // a data: URI, shown blurred until the thumbnail has loaded
+    @Column(length = 2048)
+    private String thumbnailPlaceholder;
+    // read from MP4 uploads, null when unknown
+    private Long durationMillis;
+    private Integer width;
+    private Integer height;
+    private String codec;
+    @Convert(converter = AtomicIntegerConverter.class)
     private AtomicInteger videoViewCounter;
+    @Convert(converter = AtomicIntegerConverter.class)
     private AtomicInteger likes;
+    @Convert(converter = AtomicIntegerConverter.class)
     private AtomicInteger disLikes;
+    private LocalDateTime deletedAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -34,25 +63,4 @@ public class Video extends BaseEntity {
 
     @OneToMany(mappedBy = "video", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Comment> comments = new HashSet<>();
-
-    public void incrementVideoViewCounter() {
-        videoViewCounter.incrementAndGet();
-    }
-
-    public void incrementVideoLikeCounter() {
-        likes.incrementAndGet();
-    }
-
-    public void decrementVideoLikesCounter() {
-        likes.decrementAndGet();
-    }
-
-    public void incrementVideoDisLikeCounter() {
-        disLikes.incrementAndGet();
-    }
-
-    public void decrementVideoDisLikeCounter() {
-        disLikes.decrementAndGet();
-    }
-
 }
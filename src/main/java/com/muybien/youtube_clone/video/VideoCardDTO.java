@@ -0,0 +1,22 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Builder(toBuilder = true)
+public record VideoCardDTO(
+        Integer id,
+        String username,
+        String title,
+        String thumbnailUrl,
+        Map<Integer, String> thumbnailVariants,
+        String thumbnailPlaceholder,
+        AtomicInteger videoViewCounter,
+        AtomicInteger likes,
+        AtomicInteger disLikes,
+        LocalDateTime createdDate
+) {
+}
@@ -0,0 +1,7 @@
+package com.muybien.youtube_clone.video;
+
+import java.util.List;
+
+public record VideoCardPage(List<VideoCardDTO> videos, String nextCursor) {
+
+}
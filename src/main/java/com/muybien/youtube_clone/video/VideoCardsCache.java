@@ -0,0 +1,57 @@
+package com.muybien.youtube_clone.video;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// Multi-get over the card cache: hits are served from memory and all misses
+// are loaded together with a single IN query, then cached individually.
+// Counters on a cached card may lag by up to the cache's expiry.
+@Component
+public class VideoCardsCache {
+
+    static final String CACHE_NAME = "videoCards";
+
+    private final VideoRepository videoRepository;
+    private final Cache cache;
+
+    public VideoCardsCache(VideoRepository videoRepository, CacheManager cacheManager) {
+        this.videoRepository = videoRepository;
+        this.cache = Objects.requireNonNull(cacheManager.getCache(CACHE_NAME),
+                "Cache '" + CACHE_NAME + "' is not configured.");
+    }
+
+    // cards are returned in the order of the given ids; ids of videos that
+    // don't exist (e.g. deleted since they were watched) are skipped
+    public List<VideoCardDTO> getAll(List<Integer> videoIds) {
+        Map<Integer, VideoCardDTO> cards = new HashMap<>();
+        Set<Integer> misses = new LinkedHashSet<>();
+        for (Integer videoId : videoIds) {
+            VideoCardDTO card = cache.get(videoId, VideoCardDTO.class);
+            if (card != null) {
+                cards.put(videoId, card);
+            } else {
+                misses.add(videoId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            for (VideoCardDTO card : videoRepository.findCardsByIdIn(misses)) {
+                cache.put(card.id(), card);
+                cards.put(card.id(), card);
+            }
+        }
+
+        return videoIds.stream()
+                .map(cards::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // deferred until after commit when called inside a transaction
+    public void evict(Integer videoId) {
+        cache.evict(videoId);
+    }
+}
@@ -0,0 +1,10 @@
+package com.muybien.youtube_clone.video;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public record VideoCounters(
+        AtomicInteger videoViewCounter,
+        AtomicInteger likes,
+        AtomicInteger disLikes
+) {
+}
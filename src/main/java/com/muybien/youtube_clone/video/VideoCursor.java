@@ -0,0 +1,53 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// Opaque keyset position: last seen sort key plus id as a tie-breaker.
+// The first page starts from sentinel values above any stored row.
+record VideoCursor(VideoSort sort, LocalDateTime createdDate, int views, int id) {
+
+    private static final LocalDateTime MAX_CREATED_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final String SEPARATOR = "|";
+
+    static VideoCursor first(VideoSort sort) {
+        return new VideoCursor(sort, MAX_CREATED_DATE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    static VideoCursor after(VideoSort sort, VideoCardDTO card) {
+        return new VideoCursor(sort, card.createdDate(), card.videoViewCounter().get(), card.id());
+    }
+
+    static VideoCursor decode(String cursor, VideoSort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return first(sort);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\" + SEPARATOR);
+            if (parts.length != 3 || VideoSort.valueOf(parts[0]) != sort) {
+                throw new InvalidCursorException("Cursor doesn't match requested sort order.");
+            }
+            int id = Integer.parseInt(parts[2]);
+            return switch (sort) {
+                case NEWEST -> new VideoCursor(sort, LocalDateTime.parse(parts[1]), Integer.MAX_VALUE, id);
+                case MOST_VIEWED -> new VideoCursor(sort, MAX_CREATED_DATE, Integer.parseInt(parts[1]), id);
+            };
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException("Invalid cursor.");
+        }
+    }
+
+    String encode() {
+        String key = switch (sort) {
+            case NEWEST -> createdDate.toString();
+            case MOST_VIEWED -> String.valueOf(views);
+        };
+        String raw = sort.name() + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
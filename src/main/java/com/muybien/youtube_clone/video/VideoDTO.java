@@ -3,19 +3,34 @@ package com.muybien.youtube_clone.video;
 import com.muybien.youtube_clone.comment.CommentDTO;
 import lombok.Builder;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
-@Builder
+@Builder(toBuilder = true)
 public record VideoDTO(
         String username,
         String title,
         String description,
         String videoUrl,
         String thumbnailUrl,
+        Map<Integer, String> thumbnailVariants,
+        String thumbnailPlaceholder,
+        Long durationMillis,
+        Integer width,
+        Integer height,
+        String codec,
         AtomicInteger videoViewCounter,
         AtomicInteger likes,
         AtomicInteger disLikes,
         Set<CommentDTO> comments
 ) {
+
+    public VideoDTO withCounters(VideoCounters counters) {
+        return toBuilder()
+                .videoViewCounter(counters.videoViewCounter())
+                .likes(counters.likes())
+                .disLikes(counters.disLikes())
+                .build();
+    }
 }
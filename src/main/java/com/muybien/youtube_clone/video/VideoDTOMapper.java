@@ -17,6 +17,12 @@ public class VideoDTOMapper {
                 .username(video.getUser().getFullName())
                 .videoUrl(video.getVideoUrl())
                 .thumbnailUrl(video.getThumbnailUrl())
+                .thumbnailVariants(video.getThumbnailVariants())
+                .thumbnailPlaceholder(video.getThumbnailPlaceholder())
+                .durationMillis(video.getDurationMillis())
+                .width(video.getWidth())
+                .height(video.getHeight())
+                .codec(video.getCodec())
                 .title(video.getTitle())
                 .description(video.getDescription())
                 .videoViewCounter(video.getVideoViewCounter())
@@ -25,4 +31,24 @@ public class VideoDTOMapper {
                 .comments(commentDTOMapper.toDTOSet(video.getComments()))
                 .build();
     }
+
+    // leaves comments out without initializing the collection
+    public VideoDTO toSummaryDTO(Video video) {
+        return VideoDTO.builder()
+                .username(video.getUser().getFullName())
+                .videoUrl(video.getVideoUrl())
+                .thumbnailUrl(video.getThumbnailUrl())
+                .thumbnailVariants(video.getThumbnailVariants())
+                .thumbnailPlaceholder(video.getThumbnailPlaceholder())
+                .durationMillis(video.getDurationMillis())
+                .width(video.getWidth())
+                .height(video.getHeight())
+                .codec(video.getCodec())
+                .title(video.getTitle())
+                .description(video.getDescription())
+                .videoViewCounter(video.getVideoViewCounter())
+                .likes(video.getLikes())
+                .disLikes(video.getDisLikes())
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.VideoNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// sync = true collapses concurrent misses on the same id into a single load.
+// Summaries are the same DTO without comments, cached separately so callers
+// that don't need comments never load them.
+@Component
+@RequiredArgsConstructor
+public class VideoDetailsCache {
+
+    static final String CACHE_NAME = "videoDetails";
+    static final String SUMMARY_CACHE_NAME = "videoSummaries";
+
+    private final VideoRepository videoRepository;
+    private final VideoDTOMapper videoDTOMapper;
+    private final CacheManager cacheManager;
+
+    @Cacheable(cacheNames = CACHE_NAME, sync = true)
+    @Transactional(readOnly = true)
+    public VideoDTO get(Integer videoId) {
+        return videoRepository.findDetailsById(videoId)
+                .map(videoDTOMapper::toDTO)
+                .orElseThrow(() -> new VideoNotFoundException(
+                        "Video with ID: " + videoId + " doesn't exist."));
+    }
+
+    @Cacheable(cacheNames = SUMMARY_CACHE_NAME, sync = true)
+    @Transactional(readOnly = true)
+    public VideoDTO getSummary(Integer videoId) {
+        return videoRepository.findSummaryById(videoId)
+                .map(videoDTOMapper::toSummaryDTO)
+                .orElseThrow(() -> new VideoNotFoundException(
+                        "Video with ID: " + videoId + " doesn't exist."));
+    }
+
+    // For changes made in a transaction, once it commits. Patching the cached
+    // entry instead could apply two toggles' counters in the wrong order, and
+    // evicting before the commit would let a concurrent read cache the
+    // counters from before it.
+    public void evictAfterCommit(Integer videoId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictNow(videoId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictNow(videoId);
+            }
+        });
+    }
+
+    private void evictNow(Integer videoId) {
+        for (String cacheName : new String[]{CACHE_NAME, SUMMARY_CACHE_NAME}) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.evict(videoId);
+            }
+        }
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CACHE_NAME),
+            @CacheEvict(cacheNames = SUMMARY_CACHE_NAME)
+    })
+    public void evict(Integer videoId) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.muybien.youtube_clone.video;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Validators for conditional GETs. Derived from the counters plus a hash of
+// the content, so they are cheap to compute from the cached DTO and change
+// whenever anything in the rendered body would. Weak, since the same version
+// may be served with different content encodings.
+final class VideoETags {
+
+    private VideoETags() {
+    }
+
+    static String forDetails(Integer videoId, VideoDTO video) {
+        long contentHash = Objects.hash(video.username(), video.title(), video.description(),
+                video.videoUrl(), video.thumbnailUrl(), video.comments());
+        return weak(videoId + "-" + count(video.videoViewCounter()) + "-" + count(video.likes())
+                + "-" + count(video.disLikes()) + "-" + Long.toHexString(contentHash & 0xffffffffL));
+    }
+
+    static String forPage(VideoCardPage page) {
+        long hash = Objects.hashCode(page.nextCursor());
+        for (VideoCardDTO card : page.videos()) {
+            hash = 31 * hash + Objects.hash(card.id(), card.username(), card.title(),
+                    card.thumbnailUrl(), card.createdDate());
+            hash = 31 * hash + count(card.videoViewCounter());
+            hash = 31 * hash + count(card.likes());
+            hash = 31 * hash + count(card.disLikes());
+        }
+        return weak(page.videos().size() + "-" + Long.toHexString(hash));
+    }
+
+    private static int count(AtomicInteger counter) {
+        return counter == null ? 0 : counter.get();
+    }
+
+    private static String weak(String tag) {
+        return "W/\"" + tag + "\"";
+    }
+}
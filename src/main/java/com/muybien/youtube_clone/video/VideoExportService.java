@@ -0,0 +1,68 @@
+package com.muybien.youtube_clone.video;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.muybien.youtube_clone.handler.ExportBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// Writes every video card as a JSON array while the rows are still being read,
+// so neither the result set nor the serialized body is ever held in memory.
+// An export holds a connection and a read transaction for as long as the
+// client takes to read it, so only a few may run at once.
+@Service
+public class VideoExportService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final VideoRepository videoRepository;
+    private final PlaybackUrls playbackUrls;
+    private final ObjectMapper objectMapper;
+    private final Semaphore exports;
+
+    public VideoExportService(VideoRepository videoRepository,
+                              PlaybackUrls playbackUrls,
+                              ObjectMapper objectMapper,
+                              @Value("${video.export.max-concurrent:2}") int maxConcurrentExports) {
+        this.videoRepository = videoRepository;
+        this.playbackUrls = playbackUrls;
+        this.objectMapper = objectMapper;
+        this.exports = new Semaphore(maxConcurrentExports);
+    }
+
+    // taken before the response starts, so a refused export still gets a 503;
+    // the returned release must run once the export is over
+    public Runnable reserveExport() {
+        if (!exports.tryAcquire()) {
+            throw new ExportBusyException("Too many exports in progress, please try again later.");
+        }
+        return exports::release;
+    }
+
+    @Transactional(readOnly = true)
+    public void exportVideoCards(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(VideoCardDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+             Stream<VideoCardDTO> cards = videoRepository.streamAllCards()) {
+            generator.writeStartArray();
+            int written = 0;
+            for (var iterator = cards.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, playbackUrls.forCard(iterator.next()));
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+}
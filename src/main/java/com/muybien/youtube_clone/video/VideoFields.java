@@ -0,0 +1,53 @@
+package com.muybien.youtube_clone.video;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.muybien.youtube_clone.handler.InvalidFieldsException;
+
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Parsed value of the fields= query parameter, e.g. fields=title,likes.
+// Decides both what is loaded (comments only when asked for) and what is
+// written to the response.
+public record VideoFields(Set<String> names) {
+
+    static final Set<String> AVAILABLE = Arrays.stream(VideoDTO.class.getRecordComponents())
+            .map(RecordComponent::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    public static final VideoFields ALL = new VideoFields(AVAILABLE);
+
+    public static VideoFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Set<String> unknown = new LinkedHashSet<>(names);
+        unknown.removeAll(AVAILABLE);
+        if (!unknown.isEmpty()) {
+            throw new InvalidFieldsException("Unknown fields: " + String.join(", ", unknown)
+                    + ". Available fields: " + String.join(", ", AVAILABLE) + ".");
+        }
+        return names.isEmpty() ? ALL : new VideoFields(Set.copyOf(names));
+    }
+
+    public boolean includesComments() {
+        return names.contains("comments");
+    }
+
+    public Object select(VideoDTO video, ObjectMapper objectMapper) {
+        if (names.equals(AVAILABLE)) {
+            return video;
+        }
+        ObjectNode node = objectMapper.valueToTree(video);
+        return node.retain(names);
+    }
+}
@@ -1,12 +1,20 @@
 package com.muybien.youtube_clone.video;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
-import static org.springframework.http.HttpStatus.*;
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.OK;
 
 @RestController
 @RequestMapping("/videos")
@@ -14,16 +22,80 @@ import static org.springframework.http.HttpStatus.*;
 public class VideoGuestController {
 
     private final VideoService videoService;
+    private final VideoViewService videoViewService;
+    private final VideoStreamService videoStreamService;
+    private final PlaybackUrls playbackUrls;
+    private final ObjectMapper objectMapper;
 
+    // a matching If-None-Match is answered with 304 before the body is serialized
     @GetMapping("{videoId}")
+    public ResponseEntity<Object> getVideoDetails(
+            @PathVariable Integer videoId,
+            @RequestParam(required = false) String fields
+    ) {
+        VideoFields selected = VideoFields.parse(fields);
+        VideoDTO video = playbackUrls.forVideo(videoId, videoService.getVideoDetails(videoId, selected));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(VideoETags.forDetails(videoId, video))
+                .body(selected.select(video, objectMapper));
+    }
+
+    // answers Range requests with 206 and just the requested bytes
+    @GetMapping("{videoId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamVideo(
+            @PathVariable Integer videoId,
+            @RequestHeader HttpHeaders headers,
+            HttpMethod method
+    ) {
+        return videoStreamService.stream(videoId, headers, method == HttpMethod.HEAD);
+    }
+
+    @GetMapping("{videoId}/thumbnail")
+    public ResponseEntity<StreamingResponseBody> streamThumbnail(
+            @PathVariable Integer videoId,
+            @RequestHeader HttpHeaders headers,
+            HttpMethod method
+    ) {
+        return videoStreamService.streamThumbnail(videoId, headers, method == HttpMethod.HEAD);
+    }
+
+    @GetMapping("{videoId}/thumbnail/{width}")
+    public ResponseEntity<StreamingResponseBody> streamThumbnailVariant(
+            @PathVariable Integer videoId,
+            @PathVariable int width,
+            @RequestHeader HttpHeaders headers,
+            HttpMethod method
+    ) {
+        return videoStreamService.streamThumbnailVariant(videoId, width, headers, method == HttpMethod.HEAD);
+    }
+
+    @GetMapping("cards")
     @ResponseStatus(OK)
-    public VideoDTO getVideoDetails(@PathVariable Integer videoId, Authentication connectedUser) {
-        return videoService.getVideoDetails(videoId, connectedUser);
+    public List<VideoCardDTO> findVideoCards(@RequestParam List<Integer> ids) {
+        return playbackUrls.forCards(videoService.findVideoCards(ids));
+    }
+
+    @PostMapping("{videoId}/view")
+    @ResponseStatus(ACCEPTED)
+    public void recordView(
+            @PathVariable Integer videoId,
+            Authentication connectedUser,
+            HttpServletRequest request
+    ) {
+        videoViewService.recordView(videoId, connectedUser, request.getRemoteAddr());
     }
 
     @GetMapping
-    @ResponseStatus(OK)
-    public List<VideoDTO> findAllVideos() {
-        return videoService.findAllVideos();
+    public ResponseEntity<VideoCardPage> findAllVideos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "NEWEST") VideoSort sort
+    ) {
+        VideoCardPage page = playbackUrls.forPage(videoService.findAllVideos(cursor, limit, sort));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(VideoETags.forPage(page))
+                .body(page);
     }
 }
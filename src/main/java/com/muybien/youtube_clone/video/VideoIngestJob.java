@@ -0,0 +1,63 @@
+package com.muybien.youtube_clone.video;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress of one upload, written by its worker and read by status requests.
+final class VideoIngestJob {
+
+    private final String id;
+    private final Integer ownerId;
+    private final long totalBytes;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private volatile VideoIngestStage stage = VideoIngestStage.QUEUED;
+    private volatile String videoUrl;
+    private volatile String failure;
+
+    VideoIngestJob(String id, Integer ownerId, long totalBytes) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.totalBytes = totalBytes;
+    }
+
+    String id() {
+        return id;
+    }
+
+    boolean isOwnedBy(Integer userId) {
+        return ownerId.equals(userId);
+    }
+
+    VideoIngestStage stage() {
+        return stage;
+    }
+
+    void moveTo(VideoIngestStage stage) {
+        this.stage = stage;
+    }
+
+    void addBytesTransferred(long bytes) {
+        bytesTransferred.addAndGet(bytes);
+    }
+
+    void complete(String videoUrl) {
+        this.videoUrl = videoUrl;
+        this.stage = VideoIngestStage.COMPLETED;
+    }
+
+    void fail(String failure) {
+        this.failure = failure;
+        this.stage = VideoIngestStage.FAILED;
+    }
+
+    VideoIngestStatus toStatus() {
+        return VideoIngestStatus.builder()
+                .jobId(id)
+                .stage(stage)
+                // retried requests are counted again
+                .bytesTransferred(Math.min(bytesTransferred.get(), totalBytes))
+                .totalBytes(totalBytes)
+                .videoUrl(videoUrl)
+                .failure(failure)
+                .build();
+    }
+}
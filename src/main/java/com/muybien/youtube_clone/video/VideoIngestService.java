@@ -0,0 +1,289 @@
+package com.muybien.youtube_clone.video;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muybien.youtube_clone.common.Futures;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.IngestJobNotFoundException;
+import com.muybien.youtube_clone.handler.IngestQueueFullException;
+import com.muybien.youtube_clone.storage.ContentHash;
+import com.muybien.youtube_clone.storage.ContentHashingInputStream;
+import com.muybien.youtube_clone.storage.ContentStore;
+import com.muybien.youtube_clone.user.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Asynchronous upload pipeline. The request only copies both files to a local
+// staging directory and returns a job id; the transfer to storage, saving the video
+// and notifying subscribers happen on a small bounded pool, so neither the
+// request thread nor a database connection waits on storage. When the pool and its
+// queue are full, new uploads are refused rather than staged without bound.
+// Jobs are kept in memory and don't survive a restart. Files are hashed while
+// they are staged, so content that is already stored isn't uploaded again.
+// MP4s with moov at the end are rewritten with moov in front on the pool, before
+// the transfer, so viewers don't wait for the tail of the file before playback
+// starts.
+// Thumbnail variants are made while both files transfer.
+@Slf4j
+@Service
+public class VideoIngestService {
+
+    private static final int MAX_TRACKED_JOBS = 10_000;
+
+    private final VideoService videoService;
+    private final ContentStore contentStore;
+    private final ThumbnailVariantService thumbnailVariantService;
+    private final Path stagingDir;
+    private final long maxMoovSize;
+    private final Cache<String, VideoIngestJob> jobs;
+    private final ThreadPoolExecutor executor;
+
+    public VideoIngestService(VideoService videoService,
+                              ContentStore contentStore,
+                              ThumbnailVariantService thumbnailVariantService,
+                              @Value("${video.ingest.staging-dir:${java.io.tmpdir}/video-ingest}") Path stagingDir,
+                              @Value("${video.ingest.concurrency:2}") int concurrency,
+                              @Value("${video.ingest.queue-capacity:16}") int queueCapacity,
+                              @Value("${video.ingest.job-ttl:1h}") Duration jobTtl,
+                              @Value("${video.ingest.max-moov-size:64MB}") DataSize maxMoovSize) {
+        this.videoService = videoService;
+        this.contentStore = contentStore;
+        this.thumbnailVariantService = thumbnailVariantService;
+        this.stagingDir = stagingDir;
+        this.maxMoovSize = Math.min(maxMoovSize.toBytes(), Integer.MAX_VALUE);
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobTtl)
+                .maximumSize(MAX_TRACKED_JOBS)
+                .build();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("video-ingest-", 0).daemon(true).factory());
+    }
+
+    // files left behind by a previous run belong to jobs that are gone
+    @PostConstruct
+    void prepareStagingDir() throws IOException {
+        Files.createDirectories(stagingDir);
+        try (Stream<Path> leftovers = Files.list(stagingDir)) {
+            long deleted = leftovers.filter(this::deleteQuietly).count();
+            if (deleted > 0) {
+                log.info("Deleted {} staged files left over from a previous run.", deleted);
+            }
+        }
+    }
+
+    public VideoIngestStatus submit(VideoUploadRequest request, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        StagedFile video = stage(request.video());
+        StagedFile thumbnail;
+        try {
+            thumbnail = stage(request.thumbnail());
+        } catch (RuntimeException e) {
+            deleteQuietly(video.path());
+            throw e;
+        }
+
+        var job = new VideoIngestJob(UUID.randomUUID().toString(), user.getId(), video.size() + thumbnail.size());
+        jobs.put(job.id(), job);
+        try {
+            executor.execute(() -> ingest(job, video, thumbnail, request.title(), request.description(), connectedUser));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id());
+            deleteQuietly(video.path());
+            deleteQuietly(thumbnail.path());
+            throw new IngestQueueFullException("Too many uploads in progress, please try again later.");
+        }
+        return job.toStatus();
+    }
+
+    public VideoIngestStatus getStatus(String jobId, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        VideoIngestJob job = jobs.getIfPresent(jobId);
+        // someone else's job is reported as missing rather than forbidden
+        if (job == null || !job.isOwnedBy(user.getId())) {
+            throw new IngestJobNotFoundException("Upload job with ID: " + jobId + " doesn't exist.");
+        }
+        return job.toStatus();
+    }
+
+    private void ingest(VideoIngestJob job,
+                        StagedFile stagedVideo,
+                        StagedFile thumbnail,
+                        String title,
+                        String description,
+                        Authentication connectedUser) {
+        CompletableFuture<String> thumbnailUpload = null;
+        CompletableFuture<String> videoUpload = null;
+        ThumbnailVariants thumbnailVariants = ThumbnailVariants.NONE;
+        StagedVideo video = null;
+        try {
+            job.moveTo(VideoIngestStage.PROCESSING);
+            video = inspect(stagedVideo);
+            job.moveTo(VideoIngestStage.UPLOADING);
+            // both files transfer at the same time on the non-blocking client
+            thumbnailUpload = upload(thumbnail, job);
+            videoUpload = upload(video.file(), job);
+            thumbnailVariants = thumbnailVariantService.generate(thumbnail.path());
+            Futures.join(CompletableFuture.allOf(thumbnailUpload, videoUpload));
+            String videoUrl = videoUpload.join();
+
+            job.moveTo(VideoIngestStage.SAVING);
+            videoService.publishVideo(videoUrl, thumbnailUpload.join(), title, description, video.metadata(),
+                    thumbnailVariants, connectedUser);
+            job.complete(videoUrl);
+        } catch (RuntimeException e) {
+            log.warn("Upload job {} failed in stage {}.", job.id(), job.stage(), e);
+            // once saving has started, publishVideo releases the files if the video doesn't commit
+            if (job.stage() == VideoIngestStage.UPLOADING) {
+                release(job, thumbnailUpload, videoUpload, thumbnailVariants);
+            }
+            // the exception's own text may come from the storage SDK or the database
+            job.fail(failureMessage(job.stage()));
+        } finally {
+            deleteQuietly(stagedVideo.path());
+            if (video != null) {
+                deleteQuietly(video.file().path());
+            }
+            deleteQuietly(thumbnail.path());
+            // finished jobs stay queryable for the full ttl
+            jobs.put(job.id(), job);
+        }
+    }
+
+    // uploads still in flight are released once they finish
+    private void release(VideoIngestJob job,
+                         CompletableFuture<String> thumbnailUpload,
+                         CompletableFuture<String> videoUpload,
+                         ThumbnailVariants thumbnailVariants) {
+        try {
+            Stream.of(thumbnailUpload, videoUpload)
+                    .filter(Objects::nonNull)
+                    .forEach(upload -> upload.thenAccept(contentStore::release));
+            contentStore.release(thumbnailVariants.fileUrls());
+        } catch (RuntimeException e) {
+            log.warn("Failed to release the files of upload job {}.", job.id(), e);
+        }
+    }
+
+    private static String failureMessage(VideoIngestStage stage) {
+        return switch (stage) {
+            case UPLOADING -> "Failed to transfer the files to storage.";
+            case SAVING -> "Failed to save the video.";
+            default -> "Failed to process the upload.";
+        };
+    }
+
+    private CompletableFuture<String> upload(StagedFile file, VideoIngestJob job) {
+        return contentStore.store(file.path(), file.contentType(), file.extension(), file.hash(), job::addBytesTransferred);
+    }
+
+    // the multipart temp file is deleted when the request ends, so the bytes
+    // are copied out, hashed on the way, and synced to disk before the upload
+    // is acknowledged
+    private StagedFile stage(MultipartFile file) {
+        Path path = null;
+        try {
+            path = Files.createTempFile(stagingDir, "upload-", ".part");
+            ContentHash hash = copy(file.getInputStream(), path);
+            return new StagedFile(path, file.getContentType(),
+                    StringUtils.getFilenameExtension(file.getOriginalFilename()), hash);
+        } catch (IOException e) {
+            if (path != null) {
+                deleteQuietly(path);
+            }
+            throw new FileUploadException("Failed to stage file " + file.getOriginalFilename(), e);
+        } catch (RuntimeException e) {
+            if (path != null) {
+                deleteQuietly(path);
+            }
+            throw e;
+        }
+    }
+
+    // Anything that isn't an MP4 the parser understands is uploaded as it
+    // came, without metadata. The rewritten copy is hashed as it's written and
+    // replaces the staged file; only moov is held in memory meanwhile.
+    private StagedVideo inspect(StagedFile staged) {
+        Path rewritten = null;
+        try (FileChannel channel = FileChannel.open(staged.path(), StandardOpenOption.READ)) {
+            Optional<Mp4File> mp4 = Mp4File.read(channel, maxMoovSize);
+            if (mp4.isEmpty()) {
+                return new StagedVideo(staged, VideoMetadata.UNKNOWN);
+            }
+            Optional<InputStream> fastStart = mp4.get().fastStart();
+            if (fastStart.isEmpty()) {
+                return new StagedVideo(staged, mp4.get().metadata());
+            }
+            rewritten = Files.createTempFile(stagingDir, "upload-", ".part");
+            ContentHash hash = copy(fastStart.get(), rewritten);
+            log.info("Moved moov of {} in front of the media data.", staged.path().getFileName());
+            deleteQuietly(staged.path());
+            return new StagedVideo(new StagedFile(rewritten, staged.contentType(), staged.extension(), hash),
+                    mp4.get().metadata());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to inspect {}, uploading it as it is.", staged.path().getFileName(), e);
+            if (rewritten != null) {
+                deleteQuietly(rewritten);
+            }
+            return new StagedVideo(staged, VideoMetadata.UNKNOWN);
+        }
+    }
+
+    private ContentHash copy(InputStream source, Path path) throws IOException {
+        try (var in = new ContentHashingInputStream(source);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            in.transferTo(Channels.newOutputStream(channel));
+            channel.force(true);
+            return in.hash();
+        }
+    }
+
+    private boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete staged file {}.", path, e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record StagedVideo(StagedFile file, VideoMetadata metadata) {
+    }
+
+    private record StagedFile(Path path, String contentType, String extension, ContentHash hash) {
+
+        long size() {
+            return hash.size();
+        }
+    }
+}
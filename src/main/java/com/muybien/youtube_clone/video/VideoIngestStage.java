@@ -0,0 +1,10 @@
+package com.muybien.youtube_clone.video;
+
+public enum VideoIngestStage {
+    QUEUED,
+    PROCESSING,
+    UPLOADING,
+    SAVING,
+    COMPLETED,
+    FAILED
+}
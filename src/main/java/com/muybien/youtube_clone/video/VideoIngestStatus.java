@@ -0,0 +1,14 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.Builder;
+
+@Builder(toBuilder = true)
+public record VideoIngestStatus(
+        String jobId,
+        VideoIngestStage stage,
+        long bytesTransferred,
+        long totalBytes,
+        String videoUrl,
+        String failure
+) {
+}
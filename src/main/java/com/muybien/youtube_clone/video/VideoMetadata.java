@@ -0,0 +1,17 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.Builder;
+
+// Read from the uploaded file; a field is null when the file didn't say.
+// codec is an RFC 6381 codec string where known (avc1.64001f), otherwise the
+// sample entry type (hvc1, av01).
+@Builder
+public record VideoMetadata(
+        Long durationMillis,
+        Integer width,
+        Integer height,
+        String codec
+) {
+
+    public static final VideoMetadata UNKNOWN = new VideoMetadata(null, null, null, null);
+}
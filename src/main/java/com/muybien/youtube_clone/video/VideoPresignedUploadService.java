@@ -0,0 +1,161 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
+import com.muybien.youtube_clone.handler.PresignedUploadNotFoundException;
+import com.muybien.youtube_clone.handler.UploadVerificationException;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.StoredObject;
+import com.muybien.youtube_clone.user.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Direct-to-bucket uploads: clients PUT both files to presigned URLs and then
+// call complete, so no video byte passes through the application. The
+// declared size and checksum are signed into each URL and checked again on
+// the stored objects before the video is created. Uploads that are never
+// completed are removed together with whatever was uploaded for them.
+@Slf4j
+@Service
+public class VideoPresignedUploadService {
+
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    private final VideoService videoService;
+    private final BlobStorage blobStorage;
+    private final PendingUploadRepository pendingUploadRepository;
+    private final Duration urlTtl;
+    private final Duration completionTtl;
+    private final long maxVideoSize;
+
+    public VideoPresignedUploadService(VideoService videoService,
+                                       BlobStorage blobStorage,
+                                       PendingUploadRepository pendingUploadRepository,
+                                       @Value("${video.presigned-upload.url-ttl:15m}") Duration urlTtl,
+                                       @Value("${video.presigned-upload.completion-ttl:1h}") Duration completionTtl,
+                                       @Value("${spring.servlet.multipart.max-file-size:2048MB}") DataSize maxVideoSize) {
+        this.videoService = videoService;
+        this.blobStorage = blobStorage;
+        this.pendingUploadRepository = pendingUploadRepository;
+        this.urlTtl = urlTtl;
+        this.completionTtl = completionTtl;
+        this.maxVideoSize = maxVideoSize.toBytes();
+    }
+
+    public PresignedUploadResponse issue(PresignedUploadRequest request, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        var video = request.video();
+        var thumbnail = request.thumbnail();
+        validate(video, "video", maxVideoSize);
+        validate(thumbnail, "image", VideoService.MAX_THUMBNAIL_SIZE);
+
+        var pendingUpload = PendingUpload.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(user.getId())
+                .title(request.title())
+                .description(request.description())
+                .videoKey(blobStorage.newFileKey(subtypeOf(video.contentType())))
+                .videoSize(video.size())
+                .videoChecksum(video.checksumSha256())
+                .thumbnailKey(blobStorage.newFileKey(subtypeOf(thumbnail.contentType())))
+                .thumbnailSize(thumbnail.size())
+                .thumbnailChecksum(thumbnail.checksumSha256())
+                .expiresAt(LocalDateTime.now().plus(completionTtl))
+                .createdDate(LocalDateTime.now())
+                .build();
+        // signed first, so nothing is recorded when the storage can't sign
+        var response = PresignedUploadResponse.builder()
+                .uploadId(pendingUpload.getId())
+                .video(blobStorage.presignPut(pendingUpload.getVideoKey(), video.contentType(),
+                        video.size(), video.checksumSha256(), urlTtl))
+                .thumbnail(blobStorage.presignPut(pendingUpload.getThumbnailKey(), thumbnail.contentType(),
+                        thumbnail.size(), thumbnail.checksumSha256(), urlTtl))
+                .completeBefore(pendingUpload.getExpiresAt())
+                .build();
+        pendingUploadRepository.save(pendingUpload);
+        return response;
+    }
+
+    // A missing object leaves the upload pending so the client can finish
+    // and retry. The URLs can't be signed again, so an object that doesn't
+    // match ends the upload: both files and the pending upload are deleted
+    // right away, without rolling back, and the client has to start over.
+    // A failed publish rolls the whole completion back and keeps the files,
+    // as publishVideo leaves them to the transaction it runs in.
+    @Transactional(noRollbackFor = UploadVerificationException.class)
+    public VideoUploadResponse complete(String uploadId, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        var pendingUpload = pendingUploadRepository.findForUpdateByIdAndUserId(uploadId, user.getId())
+                .filter(upload -> upload.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new PresignedUploadNotFoundException(
+                        "Upload with ID: " + uploadId + " doesn't exist or has expired."));
+
+        verify(pendingUpload, pendingUpload.getVideoKey(), pendingUpload.getVideoSize(),
+                pendingUpload.getVideoChecksum(), "Video");
+        verify(pendingUpload, pendingUpload.getThumbnailKey(), pendingUpload.getThumbnailSize(),
+                pendingUpload.getThumbnailChecksum(), "Thumbnail");
+
+        pendingUploadRepository.delete(pendingUpload);
+        return videoService.publishVideo(
+                blobStorage.fetchFileUrl(pendingUpload.getVideoKey()),
+                blobStorage.fetchFileUrl(pendingUpload.getThumbnailKey()),
+                pendingUpload.getTitle(),
+                pendingUpload.getDescription(),
+                connectedUser);
+    }
+
+    @Scheduled(fixedDelayString = "${video.presigned-upload.purge-interval:10m}")
+    public void purgeExpired() {
+        List<PendingUpload> expired;
+        do {
+            expired = pendingUploadRepository.findByExpiresAtBefore(LocalDateTime.now(), Limit.of(PURGE_BATCH_SIZE));
+            for (PendingUpload pendingUpload : expired) {
+                blobStorage.deleteFiles(pendingUpload.getVideoKey(), pendingUpload.getThumbnailKey());
+            }
+            pendingUploadRepository.deleteAll(expired);
+        } while (expired.size() == PURGE_BATCH_SIZE);
+    }
+
+    private void verify(PendingUpload pendingUpload, String fileKey, long size, String checksum, String label) {
+        StoredObject stored = blobStorage.findObject(fileKey)
+                .orElseThrow(() -> new UploadVerificationException(label + " hasn't been uploaded yet."));
+        if (stored.size() != size || !checksum.equals(stored.checksumSha256())) {
+            log.warn("Uploaded object {} doesn't match its declared size or checksum, discarding upload {}.",
+                    fileKey, pendingUpload.getId());
+            blobStorage.deleteFiles(pendingUpload.getVideoKey(), pendingUpload.getThumbnailKey());
+            pendingUploadRepository.delete(pendingUpload);
+            throw new UploadVerificationException(label
+                    + " doesn't match the declared size or checksum. The upload has been discarded, please start a new one.");
+        }
+    }
+
+    private void validate(PresignedUploadRequest.DeclaredFile file, String type, long maxSize) {
+        MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(file.contentType());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidVideoMetadataException("Invalid content type " + file.contentType() + ".");
+        }
+        if (!contentType.getType().equals(type)) {
+            throw new InvalidVideoMetadataException("Expected a " + type + " content type, got " + file.contentType() + ".");
+        }
+        if (file.size() > maxSize) {
+            throw new InvalidVideoMetadataException("File exceeds the maximum upload size of " + maxSize + " bytes.");
+        }
+    }
+
+    private String subtypeOf(String contentType) {
+        return MediaType.parseMediaType(contentType).getSubtype();
+    }
+}
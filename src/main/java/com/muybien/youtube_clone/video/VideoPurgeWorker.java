@@ -0,0 +1,70 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.comment.CommentRepository;
+import com.muybien.youtube_clone.reaction.VideoReactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Removes the rows of videos deleted through VideoService.deleteVideo.
+// Comments and reactions go in bulk deletes of at most chunk-size rows, each
+// in a transaction of its own, so a video with many comments neither loads
+// them nor holds locks for long; the video row goes last. The deleted row is
+// what keeps a video queued, one that fails is retried on the next run.
+@Slf4j
+@Component
+public class VideoPurgeWorker {
+
+    static final int PURGE_BATCH_SIZE = 100;
+
+    private final VideoRepository videoRepository;
+    private final CommentRepository commentRepository;
+    private final VideoReactionRepository videoReactionRepository;
+    private final int chunkSize;
+
+    public VideoPurgeWorker(VideoRepository videoRepository,
+                            CommentRepository commentRepository,
+                            VideoReactionRepository videoReactionRepository,
+                            @Value("${video.deletion.chunk-size:1000}") int chunkSize) {
+        this.videoRepository = videoRepository;
+        this.commentRepository = commentRepository;
+        this.videoReactionRepository = videoReactionRepository;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${video.deletion.purge-interval:1m}")
+    public void purgeDeleted() {
+        List<Integer> deleted;
+        boolean allPurged;
+        do {
+            deleted = videoRepository.findDeletedIds(PURGE_BATCH_SIZE);
+            allPurged = true;
+            for (Integer videoId : deleted) {
+                try {
+                    purge(videoId);
+                } catch (DataAccessException e) {
+                    log.warn("Failed to purge deleted video {}, retrying on the next run.", videoId, e);
+                    allPurged = false;
+                }
+            }
+        } while (deleted.size() == PURGE_BATCH_SIZE && allPurged);
+    }
+
+    private void purge(Integer videoId) {
+        int comments = 0;
+        int deletedChunk;
+        do {
+            deletedChunk = commentRepository.deleteChunkByVideoId(videoId, chunkSize);
+            comments += deletedChunk;
+        } while (deletedChunk == chunkSize);
+        do {
+            deletedChunk = videoReactionRepository.deleteChunkByVideoId(videoId, chunkSize);
+        } while (deletedChunk == chunkSize);
+        videoRepository.purgeDeleted(videoId);
+        log.debug("Purged deleted video {} with {} comments.", videoId, comments);
+    }
+}
@@ -1,6 +1,124 @@
 package com.muybien.youtube_clone.video;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public interface VideoRepository extends JpaRepository<Video, Integer> {
+
+    @EntityGraph(attributePaths = {"user", "comments"})
+    Optional<Video> findDetailsById(Integer id);
+
+    @EntityGraph(attributePaths = {"user"})
+    Optional<Video> findSummaryById(Integer id);
+
+    @Query("""
+            select new com.muybien.youtube_clone.video.VideoCardDTO(
+                v.id, concat(u.firstname, ' ', u.lastname), v.title, v.thumbnailUrl,
+                v.thumbnailVariants, v.thumbnailPlaceholder,
+                v.videoViewCounter, v.likes, v.disLikes, v.createdDate)
+            from Video v join v.user u
+            where v.createdDate < :createdDate
+               or (v.createdDate = :createdDate and v.id < :id)
+            order by v.createdDate desc, v.id desc
+            """)
+    List<VideoCardDTO> findNewestCards(@Param("createdDate") LocalDateTime createdDate,
+                                       @Param("id") Integer id,
+                                       Limit limit);
+
+    @Query("""
+            select new com.muybien.youtube_clone.video.VideoCardDTO(
+                v.id, concat(u.firstname, ' ', u.lastname), v.title, v.thumbnailUrl,
+                v.thumbnailVariants, v.thumbnailPlaceholder,
+                v.videoViewCounter, v.likes, v.disLikes, v.createdDate)
+            from Video v join v.user u
+            where v.videoViewCounter < :views
+               or (v.videoViewCounter = :views and v.id < :id)
+            order by v.videoViewCounter desc, v.id desc
+            """)
+    List<VideoCardDTO> findMostViewedCards(@Param("views") AtomicInteger views,
+                                           @Param("id") Integer id,
+                                           Limit limit);
+
+    @Query("""
+            select new com.muybien.youtube_clone.video.VideoCardDTO(
+                v.id, concat(u.firstname, ' ', u.lastname), v.title, v.thumbnailUrl,
+                v.thumbnailVariants, v.thumbnailPlaceholder,
+                v.videoViewCounter, v.likes, v.disLikes, v.createdDate)
+            from Video v join v.user u
+            where v.id in :ids
+            """)
+    List<VideoCardDTO> findCardsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // forward-only cursor: MySQL Connector/J streams rows one at a time when
+    // the fetch size is Integer.MIN_VALUE, and DTO projections never enter the
+    // persistence context, so memory stays flat regardless of the result size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.muybien.youtube_clone.video.VideoCardDTO(
+                v.id, concat(u.firstname, ' ', u.lastname), v.title, v.thumbnailUrl,
+                v.thumbnailVariants, v.thumbnailPlaceholder,
+                v.videoViewCounter, v.likes, v.disLikes, v.createdDate)
+            from Video v join v.user u
+            order by v.createdDate desc, v.id desc
+            """)
+    Stream<VideoCardDTO> streamAllCards();
+
+    @Query("""
+            select new com.muybien.youtube_clone.video.VideoCounters(v.videoViewCounter, v.likes, v.disLikes)
+            from Video v
+            where v.id = :id
+            """)
+    Optional<VideoCounters> findCountersById(@Param("id") Integer id);
+
+    // Serializes reaction toggles on a video, which update its row anyway.
+    // Locking the (user, video) reaction key instead isn't enough: when no
+    // row exists yet both toggles get a gap lock, which doesn't block the
+    // other, and their inserts then deadlock.
+    @Query(value = "SELECT id FROM video WHERE id = :id AND deleted_at IS NULL FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockLiveById(@Param("id") Integer id);
+
+    // relative update, applied by the database without loading the entity;
+    // returns 0 when the video doesn't exist or is deleted
+    @Modifying
+    @Query(value = """
+            UPDATE video
+            SET likes = likes + :likeDelta, dis_likes = dis_likes + :disLikeDelta
+            WHERE id = :id AND deleted_at IS NULL
+            """, nativeQuery = true)
+    int adjustReactionCounters(@Param("id") Integer id,
+                               @Param("likeDelta") int likeDelta,
+                               @Param("disLikeDelta") int disLikeDelta);
+
+    // returns 0 when the video doesn't exist or is already deleted, so only
+    // one of two concurrent deletes goes on to release the files
+    @Modifying
+    @Query(value = "UPDATE video SET deleted_at = :deletedAt WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    int markDeleted(@Param("id") Integer id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // native, deleted videos are hidden from entity queries
+    @Query(value = "SELECT id FROM video WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT :limit", nativeQuery = true)
+    List<Integer> findDeletedIds(@Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM video WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int purgeDeleted(@Param("id") Integer id);
 }
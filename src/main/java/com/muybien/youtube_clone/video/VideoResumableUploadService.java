@@ -0,0 +1,269 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.common.Futures;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
+import com.muybien.youtube_clone.handler.ResumableUploadNotFoundException;
+import com.muybien.youtube_clone.handler.UploadVerificationException;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.user.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+// Resumable uploads for creators on unreliable connections. The video is sent
+// in numbered chunks of a fixed size, in any order and as often as needed, and
+// each chunk goes to storage as it arrives (a part of an S3 multipart upload),
+// so after a dropped connection the client asks which ranges arrived and sends
+// only the rest. complete assembles the chunks and creates the video. Uploads
+// idle for longer than idle-ttl are aborted together with their chunks.
+@Slf4j
+@Service
+public class VideoResumableUploadService {
+
+    private static final int PURGE_BATCH_SIZE = 100;
+    // S3's limit on the parts of one upload
+    private static final int MAX_CHUNKS = 10_000;
+
+    private final VideoService videoService;
+    private final BlobStorage blobStorage;
+    private final ResumableUploadRepository resumableUploadRepository;
+    private final int chunkSize;
+    private final Duration idleTtl;
+    private final long maxVideoSize;
+
+    public VideoResumableUploadService(VideoService videoService,
+                                       BlobStorage blobStorage,
+                                       ResumableUploadRepository resumableUploadRepository,
+                                       @Value("${video.resumable-upload.chunk-size:8MB}") DataSize chunkSize,
+                                       @Value("${video.resumable-upload.idle-ttl:24h}") Duration idleTtl,
+                                       @Value("${spring.servlet.multipart.max-file-size:2048MB}") DataSize maxVideoSize) {
+        this.videoService = videoService;
+        this.blobStorage = blobStorage;
+        this.resumableUploadRepository = resumableUploadRepository;
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.idleTtl = idleTtl;
+        this.maxVideoSize = maxVideoSize.toBytes();
+    }
+
+    public ResumableUploadStatus start(ResumableUploadRequest request, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        validate(request);
+
+        String videoKey = blobStorage.newFileKey(BlobStorage.extensionOf(request.videoContentType()));
+        String thumbnailUrl = Futures.join(blobStorage.uploadBytesAsync(
+                readThumbnail(request), request.thumbnail().getContentType()));
+        String storageUploadId;
+        try {
+            storageUploadId = blobStorage.startChunkedUpload(videoKey, request.videoContentType());
+        } catch (RuntimeException e) {
+            blobStorage.deleteFile(thumbnailUrl);
+            throw e;
+        }
+
+        var upload = ResumableUpload.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(user.getId())
+                .title(request.title())
+                .description(request.description())
+                .videoKey(videoKey)
+                .videoContentType(request.videoContentType())
+                .videoSize(request.videoSize())
+                .chunkSize(chunkSize)
+                .storageUploadId(storageUploadId)
+                .thumbnailUrl(thumbnailUrl)
+                .expiresAt(LocalDateTime.now().plus(idleTtl))
+                .createdDate(LocalDateTime.now())
+                .build();
+        resumableUploadRepository.save(upload);
+        return toStatus(upload);
+    }
+
+    // Not transactional: no database connection is held while the chunk is
+    // transferred. The length must be exactly that of the chunk.
+    public void uploadChunk(String uploadId,
+                            int chunkNumber,
+                            InputStream body,
+                            long contentLength,
+                            Authentication connectedUser) {
+        var upload = findActive(uploadId, connectedUser);
+        if (chunkNumber < 1 || chunkNumber > upload.chunkCount()) {
+            throw new InvalidVideoMetadataException(
+                    "Chunk number must be between 1 and " + upload.chunkCount() + ".");
+        }
+        long expectedLength = upload.chunkLength(chunkNumber);
+        if (contentLength != expectedLength) {
+            throw new InvalidVideoMetadataException(
+                    "Chunk " + chunkNumber + " must be exactly " + expectedLength + " bytes long.");
+        }
+
+        String version = blobStorage.uploadChunk(upload.getVideoKey(), upload.getStorageUploadId(),
+                chunkNumber, body, expectedLength);
+        resumableUploadRepository.recordChunk(uploadId, chunkNumber, version);
+        resumableUploadRepository.extendExpiry(uploadId, LocalDateTime.now().plus(idleTtl));
+    }
+
+    @Transactional(readOnly = true)
+    public ResumableUploadStatus getStatus(String uploadId, Authentication connectedUser) {
+        return toStatus(findActive(uploadId, connectedUser));
+    }
+
+    // Locked, so a complete retried in parallel creates the video only once.
+    // With chunks missing the upload stays open for the client to send them.
+    // Assembling can't be rolled back with the row, so if publishing or the
+    // commit fails, a retry finds the video already assembled and uses it.
+    @Transactional
+    public VideoUploadResponse complete(String uploadId, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        var upload = resumableUploadRepository.findForUpdateByIdAndUserId(uploadId, user.getId())
+                .filter(this::isActive)
+                .orElseThrow(() -> notFound(uploadId));
+
+        List<Integer> missing = missingChunks(upload);
+        if (!missing.isEmpty()) {
+            throw new UploadVerificationException(
+                    missing.size() + " of " + upload.chunkCount() + " chunks haven't been received yet.");
+        }
+        List<String> versions = IntStream.rangeClosed(1, upload.chunkCount())
+                .mapToObj(upload.getChunks()::get)
+                .toList();
+        String videoUrl = assemble(upload, versions);
+
+        resumableUploadRepository.delete(upload);
+        return videoService.publishVideo(videoUrl, upload.getThumbnailUrl(), upload.getTitle(),
+                upload.getDescription(), connectedUser);
+    }
+
+    private String assemble(ResumableUpload upload, List<String> versions) {
+        try {
+            return blobStorage.completeChunkedUpload(upload.getVideoKey(), upload.getStorageUploadId(), versions);
+        } catch (RuntimeException e) {
+            if (blobStorage.findObject(upload.getVideoKey())
+                    .filter(assembled -> assembled.size() == upload.getVideoSize())
+                    .isEmpty()) {
+                throw e;
+            }
+            log.info("Upload {} was already assembled by an earlier attempt.", upload.getId());
+            return blobStorage.fetchFileUrl(upload.getVideoKey());
+        }
+    }
+
+    // the video may have been assembled by a complete that failed afterwards;
+    // an upload that was published has no row left to expire
+    @Scheduled(fixedDelayString = "${video.resumable-upload.purge-interval:10m}")
+    public void purgeIdle() {
+        List<ResumableUpload> idle;
+        do {
+            idle = resumableUploadRepository.findByExpiresAtBefore(LocalDateTime.now(), Limit.of(PURGE_BATCH_SIZE));
+            for (ResumableUpload upload : idle) {
+                blobStorage.abortChunkedUpload(upload.getVideoKey(), upload.getStorageUploadId());
+                blobStorage.deleteFile(upload.getVideoKey());
+                blobStorage.deleteFile(upload.getThumbnailUrl());
+            }
+            resumableUploadRepository.deleteAll(idle);
+        } while (idle.size() == PURGE_BATCH_SIZE);
+    }
+
+    private ResumableUpload findActive(String uploadId, Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        return resumableUploadRepository.findByIdAndUserId(uploadId, user.getId())
+                .filter(this::isActive)
+                .orElseThrow(() -> notFound(uploadId));
+    }
+
+    private boolean isActive(ResumableUpload upload) {
+        return upload.getExpiresAt().isAfter(LocalDateTime.now());
+    }
+
+    private ResumableUploadNotFoundException notFound(String uploadId) {
+        return new ResumableUploadNotFoundException("Upload with ID: " + uploadId + " doesn't exist or has expired.");
+    }
+
+    private ResumableUploadStatus toStatus(ResumableUpload upload) {
+        return ResumableUploadStatus.builder()
+                .uploadId(upload.getId())
+                .videoSize(upload.getVideoSize())
+                .chunkSize(upload.getChunkSize())
+                .chunkCount(upload.chunkCount())
+                .receivedRanges(receivedRanges(upload))
+                .missingChunks(missingChunks(upload))
+                .expiresAt(upload.getExpiresAt())
+                .build();
+    }
+
+    // adjacent chunks are merged into one range
+    private List<ResumableUploadStatus.ByteRange> receivedRanges(ResumableUpload upload) {
+        Map<Integer, String> chunks = upload.getChunks();
+        List<ResumableUploadStatus.ByteRange> ranges = new ArrayList<>();
+        for (int chunkNumber = 1; chunkNumber <= upload.chunkCount(); chunkNumber++) {
+            if (!chunks.containsKey(chunkNumber)) {
+                continue;
+            }
+            long start = (long) (chunkNumber - 1) * upload.getChunkSize();
+            long end = start + upload.chunkLength(chunkNumber) - 1;
+            if (!ranges.isEmpty() && ranges.getLast().end() + 1 == start) {
+                start = ranges.removeLast().start();
+            }
+            ranges.add(new ResumableUploadStatus.ByteRange(start, end));
+        }
+        return ranges;
+    }
+
+    private List<Integer> missingChunks(ResumableUpload upload) {
+        return IntStream.rangeClosed(1, upload.chunkCount())
+                .filter(chunkNumber -> !upload.getChunks().containsKey(chunkNumber))
+                .boxed()
+                .toList();
+    }
+
+    private void validate(ResumableUploadRequest request) {
+        requireType(request.videoContentType(), "video");
+        requireType(request.thumbnail().getContentType(), "image");
+        if (request.videoSize() > maxVideoSize) {
+            throw new InvalidVideoMetadataException("File exceeds the maximum upload size of " + maxVideoSize + " bytes.");
+        }
+        if (Math.ceilDiv(request.videoSize(), chunkSize) > MAX_CHUNKS) {
+            throw new InvalidVideoMetadataException("Video is too large for chunks of " + chunkSize + " bytes.");
+        }
+        if (request.thumbnail().isEmpty() || request.thumbnail().getSize() > VideoService.MAX_THUMBNAIL_SIZE) {
+            throw new InvalidVideoMetadataException(
+                    "Thumbnail must be between 1 and " + VideoService.MAX_THUMBNAIL_SIZE + " bytes.");
+        }
+    }
+
+    private void requireType(String contentType, String type) {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidVideoMetadataException("Invalid content type " + contentType + ".");
+        }
+        if (!mediaType.getType().equals(type)) {
+            throw new InvalidVideoMetadataException("Expected a " + type + " content type, got " + contentType + ".");
+        }
+    }
+
+    private byte[] readThumbnail(ResumableUploadRequest request) {
+        try {
+            return request.thumbnail().getBytes();
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to read thumbnail " + request.thumbnail().getOriginalFilename(), e);
+        }
+    }
+}
@@ -1,95 +1,116 @@
 package com.muybien.youtube_clone.video;
 
+import com.muybien.youtube_clone.common.Futures;
 import com.muybien.youtube_clone.handler.DatabaseException;
 import com.muybien.youtube_clone.handler.FileDeletionForbiddenException;
+import com.muybien.youtube_clone.handler.FileUploadException;
 import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.InvalidVideoIdsException;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
 import com.muybien.youtube_clone.handler.VideoNotFoundException;
-import com.muybien.youtube_clone.s3aws.S3Service;
+import com.muybien.youtube_clone.reaction.ReactionType;
+import com.muybien.youtube_clone.reaction.VideoReactionRepository;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.ContentStore;
 import com.muybien.youtube_clone.user.User;
 import com.muybien.youtube_clone.user.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
 public class VideoService {
 
+    static final int MAX_PAGE_SIZE = 50;
+    static final int MAX_THUMBNAIL_SIZE = 10 * 1024 * 1024;
+
     private final VideoRepository videoRepository;
-    private final VideoDTOMapper videoDTOMapper;
+    private final VideoDetailsCache videoDetailsCache;
+    private final VideoCardsCache videoCardsCache;
+    private final VideoReactionRepository videoReactionRepository;
     private final UserService userService;
-    private final S3Service s3Service;
+    private final BlobStorage blobStorage;
+    private final ContentStore contentStore;
+    private final TransactionTemplate transactionTemplate;
 
-    @Transactional
-    public VideoDTO getVideoDetails(Integer videoId, Authentication connectedUser) {
-        var video = findVideoById(videoId);
+    // side-effect free so it can be served from cache,
+    // views are recorded separately through VideoViewService
+    public VideoDTO getVideoDetails(Integer videoId, VideoFields fields) {
+        return fields.includesComments()
+                ? videoDetailsCache.get(videoId)
+                : videoDetailsCache.getSummary(videoId);
+    }
 
-        if (userService.isUserAuthenticated(connectedUser)) {
-            userService.addVideoToWatchedVideosHistory(videoId, connectedUser);
+    // side-effect free batch lookup, e.g. to render the watch history
+    public List<VideoCardDTO> findVideoCards(List<Integer> videoIds) {
+        if (videoIds.size() > MAX_PAGE_SIZE) {
+            throw new InvalidVideoIdsException("At most " + MAX_PAGE_SIZE + " video ids can be requested at once.");
         }
-        incrementVideoViewCounter(video);
-
-        return videoDTOMapper.toDTO(video);
+        return videoIds.isEmpty() ? List.of() : videoCardsCache.getAll(videoIds);
     }
 
-    private void incrementVideoViewCounter(Video video) {
-        video.incrementVideoViewCounter();
-        videoRepository.save(video);
+    @Transactional
+    public VideoDTO incrementVideoLike(Integer videoId, VideoFields fields, Authentication connectedUser) {
+        return toggleReaction(videoId, ReactionType.LIKE, fields, connectedUser);
     }
 
     @Transactional
-    public VideoDTO incrementVideoLike(Integer videoId, Authentication connectedUser) {
-        var video = findVideoById(videoId);
-
-        if (isVideoLikedByUser(videoId, connectedUser)) {
-            video.decrementVideoLikesCounter();
-            userService.removeVideoFromLikedVideos(videoId, connectedUser);
-        } else {
-            if (isVideoDisLikedByUser(videoId, connectedUser)) {
-                video.decrementVideoDisLikeCounter();
-                userService.removeVideoFromDisLikedVideos(videoId, connectedUser);
-            }
-            video.incrementVideoLikeCounter();
-            userService.addVideoToLikedVideos(videoId, connectedUser);
-        }
-        videoRepository.save(video);
-        return videoDTOMapper.toDTO(video);
+    public VideoDTO incrementVideoDisLike(Integer videoId, VideoFields fields, Authentication connectedUser) {
+        return toggleReaction(videoId, ReactionType.DISLIKE, fields, connectedUser);
     }
 
-    @Transactional
-    public VideoDTO incrementVideoDisLike(Integer videoId, Authentication connectedUser) {
-        var video = findVideoById(videoId);
+    // reacting with the current state removes it, anything else replaces it;
+    // counters are adjusted by the resulting difference in a single statement.
+    // The video row is locked first, so toggles on a video run one at a time
+    private VideoDTO toggleReaction(Integer videoId,
+                                    ReactionType reaction,
+                                    VideoFields fields,
+                                    Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
+        videoRepository.lockLiveById(videoId)
+                .orElseThrow(() -> new VideoNotFoundException(
+                        "Video with ID: " + videoId + " doesn't exist."));
+        ReactionType current = videoReactionRepository.findState(user.getId(), videoId).orElse(null);
+        ReactionType next = current == reaction ? null : reaction;
 
-        if (isVideoDisLikedByUser(videoId, connectedUser)) {
-            video.decrementVideoDisLikeCounter();
-            userService.removeVideoFromDisLikedVideos(videoId, connectedUser);
+        if (next == null) {
+            videoReactionRepository.deleteByUserIdAndVideoId(user.getId(), videoId);
         } else {
-            if (isVideoLikedByUser(videoId, connectedUser)) {
-                video.decrementVideoLikesCounter();
-                userService.removeVideoFromLikedVideos(videoId, connectedUser);
-            }
-            video.incrementVideoDisLikeCounter();
-            userService.addVideoToDisLikedVideos(videoId, connectedUser);
+            videoReactionRepository.upsertState(user.getId(), videoId, next.name());
         }
-        videoRepository.save(video);
-        return videoDTOMapper.toDTO(video);
-    }
 
+        int likeDelta = counterDelta(ReactionType.LIKE, current, next);
+        int disLikeDelta = counterDelta(ReactionType.DISLIKE, current, next);
+        videoRepository.adjustReactionCounters(videoId, likeDelta, disLikeDelta);
 
-    private boolean isVideoLikedByUser(Integer videoId, Authentication connectedUser) {
-        return userService.isVideoLikedByUser(videoId, connectedUser);
+        var counters = videoRepository.findCountersById(videoId)
+                .orElseThrow(() -> new VideoNotFoundException(
+                        "Video with ID: " + videoId + " doesn't exist."));
+        videoDetailsCache.evictAfterCommit(videoId);
+        videoCardsCache.evict(videoId);
+        return getVideoDetails(videoId, fields).withCounters(counters);
     }
 
-    private boolean isVideoDisLikedByUser(Integer videoId, Authentication connectedUser) {
-        return userService.isVideoDisLikedByUser(videoId, connectedUser);
+    private int counterDelta(ReactionType counter, ReactionType current, ReactionType next) {
+        return (next == counter ? 1 : 0) - (current == counter ? 1 : 0);
     }
 
     @Transactional(readOnly = true)
@@ -99,40 +120,152 @@ public class VideoService {
                         "Video with ID: " + videoId + " doesn't exist."));
     }
 
-    @Transactional
-    public VideoUploadResponse uploadVideo(MultipartFile videoFile,
-                                           MultipartFile thumbnailFile,
-                                           String title,
-                                           String description,
-                                           Authentication connectedUser) {
+    // The body is piped to storage as it is read, so memory stays bounded by
+    // the multipart part buffers whatever the video size. Only publishing at
+    // the end is transactional: no database connection is held while the
+    // upload is in progress.
+    public VideoUploadResponse uploadVideoStream(VideoStreamUploadRequest request,
+                                                 InputStream body,
+                                                 Authentication connectedUser) {
+        validateStreamUpload(request);
 
-        var user = (User) connectedUser.getPrincipal();
-        String videoUrl = s3Service.uploadFileAndFetchFileUrl(videoFile);
-        String thumbnailUrl = s3Service.uploadFileAndFetchFileUrl(thumbnailFile);
+        // the thumbnail goes up in the background while the video streams
+        CompletableFuture<String> thumbnailUpload = blobStorage.uploadBytesAsync(
+                readThumbnail(body, request.thumbnailLength()), request.thumbnailContentType());
+        String videoUrl;
+        try {
+            videoUrl = blobStorage.uploadStreamAndFetchFileUrl(body, request.videoContentType());
+        } catch (RuntimeException e) {
+            thumbnailUpload.thenAccept(this::deleteFile);
+            throw e;
+        }
+        String thumbnailUrl;
+        try {
+            thumbnailUrl = Futures.join(thumbnailUpload);
+        } catch (RuntimeException e) {
+            deleteFile(videoUrl);
+            throw e;
+        }
+        return publishVideo(videoUrl, thumbnailUrl, request.title(), request.description(), connectedUser);
+    }
+
+    private void validateStreamUpload(VideoStreamUploadRequest request) {
+        if (request.title() == null || request.title().isBlank()) {
+            throw new InvalidVideoMetadataException("Title is required.");
+        }
+        if (request.description() == null || request.description().isBlank()) {
+            throw new InvalidVideoMetadataException("Description is required.");
+        }
+        requireThumbnailType(request.thumbnailContentType());
+        if (request.thumbnailLength() <= 0 || request.thumbnailLength() > MAX_THUMBNAIL_SIZE) {
+            throw new InvalidVideoMetadataException(
+                    "Thumbnail length must be between 1 and " + MAX_THUMBNAIL_SIZE + " bytes.");
+        }
+    }
+
+    // The type becomes the stored file's extension, which decides the type the
+    // thumbnail is served with from this origin, so only raster images pass.
+    // SVG is an image that can carry scripts.
+    private void requireThumbnailType(String contentType) {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new InvalidVideoMetadataException("Invalid thumbnail content type " + contentType + ".");
+        }
+        if (!mediaType.getType().equals("image") || mediaType.getSubtype().contains("svg")) {
+            throw new InvalidVideoMetadataException("Expected an image content type, got " + contentType + ".");
+        }
+    }
+
+    private byte[] readThumbnail(InputStream body, long length) {
+        try {
+            byte[] thumbnail = body.readNBytes((int) length);
+            if (thumbnail.length < length) {
+                throw new InvalidVideoMetadataException("Request body ended before the end of the thumbnail.");
+            }
+            return thumbnail;
+        } catch (IOException e) {
+            throw new FileUploadException("Failed to read file input stream", e);
+        }
+    }
 
+    VideoUploadResponse publishVideo(String videoUrl,
+                                     String thumbnailUrl,
+                                     String title,
+                                     String description,
+                                     Authentication connectedUser) {
+        return publishVideo(videoUrl, thumbnailUrl, title, description, VideoMetadata.UNKNOWN, ThumbnailVariants.NONE,
+                connectedUser);
+    }
+
+    // Saves the video for files already in storage and notifies subscribers,
+    // in one transaction, so the notifications are flushed with the row.
+    // Called without a transaction (ingest, streamed uploads), the files are
+    // released if the row doesn't commit. Inside a caller's transaction
+    // (presigned and resumable complete) they're kept, so the caller's
+    // upload stays intact for a retry when its transaction rolls back.
+    VideoUploadResponse publishVideo(String videoUrl,
+                                     String thumbnailUrl,
+                                     String title,
+                                     String description,
+                                     VideoMetadata metadata,
+                                     ThumbnailVariants thumbnailVariants,
+                                     Authentication connectedUser) {
+        var user = (User) connectedUser.getPrincipal();
         var video = Video.builder()
                 .user(user)
                 .videoUrl(videoUrl)
                 .thumbnailUrl(thumbnailUrl)
+                .thumbnailVariants(thumbnailVariants.urls())
+                .thumbnailPlaceholder(thumbnailVariants.placeholder())
                 .title(title)
                 .description(description)
+                .durationMillis(metadata.durationMillis())
+                .width(metadata.width())
+                .height(metadata.height())
+                .codec(metadata.codec())
                 .likes(new AtomicInteger(0))
                 .disLikes(new AtomicInteger(0))
                 .videoViewCounter(new AtomicInteger(0))
                 .createdDate(LocalDateTime.now())
                 .build();
 
-        saveVideo(video, videoUrl, thumbnailUrl, connectedUser);
+        isVideoAndThumbnailUrlValid(videoUrl, thumbnailUrl);
+        boolean ownsFiles = !TransactionSynchronizationManager.isActualTransactionActive();
+        // a transaction that never started counts as rolled back
+        var outcome = new AtomicInteger(TransactionSynchronization.STATUS_ROLLED_BACK);
+        try {
+            transactionTemplate.execute(status -> {
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int completionStatus) {
+                            outcome.set(completionStatus);
+                        }
+                    });
+                }
+                saveVideo(video, connectedUser);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            if (ownsFiles && outcome.get() == TransactionSynchronization.STATUS_ROLLED_BACK) {
+                try {
+                    deleteVideoAndThumbnailFiles(videoUrl, thumbnailUrl, video.getThumbnailVariants());
+                } catch (RuntimeException releaseFailure) {
+                    e.addSuppressed(releaseFailure);
+                }
+            }
+            throw e;
+        }
         return new VideoUploadResponse(video.getVideoUrl());
     }
 
-    private void saveVideo(Video video, String videoUrl, String thumbnailUrl, Authentication connectedUser) {
+    private void saveVideo(Video video, Authentication connectedUser) {
         try {
-            isVideoAndThumbnailUrlValid(videoUrl, thumbnailUrl);
             videoRepository.save(video);
             userService.sendNotificationToSubscribers(connectedUser);
         } catch (DataAccessException e) {
-            deleteVideoAndThumbnailFromS3(videoUrl, thumbnailUrl);
             throw new DatabaseException("Failed to save video to database.", e);
         }
     }
@@ -147,6 +280,9 @@ public class VideoService {
         return !videoUrl.startsWith("http");
     }
 
+    // Only hides the video, which is all the request waits for: its files
+    // are released in the background once this commits, and its row, comments
+    // and reactions are removed later by VideoPurgeWorker.
     @Transactional
     public VideoDeletionResponse deleteVideo(Integer videoId, Authentication connectedUser) {
         var video = findVideoById(videoId);
@@ -154,36 +290,58 @@ public class VideoService {
         boolean isVideOwnedByUser = video.getUser().getEmail().equals(user.getEmail());
 
         if (isVideOwnedByUser) {
-            String videoUrl = video.getVideoUrl();
-            String thumbnailUrl = video.getThumbnailUrl();
-
-            deleteVideoAndThumbnailFromS3(videoUrl, thumbnailUrl);
-
             try {
-                videoRepository.delete(video);
-            } catch (DataIntegrityViolationException e) {
-                throw new DatabaseException("Filed to delete video from database due to integrity violation.", e);
-            } catch (DatabaseException e) {
+                if (videoRepository.markDeleted(videoId, LocalDateTime.now()) == 0) {
+                    throw new VideoNotFoundException("Video with ID: " + videoId + " doesn't exist.");
+                }
+            } catch (DataAccessException e) {
                 throw new DatabaseException("Failed to delete video from database.", e);
             }
+            contentStore.releaseLater(fileUrlsOf(video.getVideoUrl(), video.getThumbnailUrl(), video.getThumbnailVariants()));
+            videoDetailsCache.evict(videoId);
+            videoCardsCache.evict(videoId);
         } else {
             throw new FileDeletionForbiddenException("You are not allowed to delete this video.");
         }
         return new VideoDeletionResponse("Successfully deleted video.");
     }
 
-    void deleteVideoAndThumbnailFromS3(String videoUrl, String thumbnailUrl) {
-        deleteFileFromS3(videoUrl);
-        deleteFileFromS3(thumbnailUrl);
+    // files another video still refers to are kept
+    void deleteVideoAndThumbnailFiles(String videoUrl, String thumbnailUrl, Map<Integer, String> thumbnailVariants) {
+        contentStore.release(fileUrlsOf(videoUrl, thumbnailUrl, thumbnailVariants));
+    }
+
+    private String[] fileUrlsOf(String videoUrl, String thumbnailUrl, Map<Integer, String> thumbnailVariants) {
+        List<String> fileUrls = new ArrayList<>(List.of(videoUrl, thumbnailUrl));
+        if (thumbnailVariants != null) {
+            fileUrls.addAll(thumbnailVariants.values());
+        }
+        return fileUrls.toArray(String[]::new);
     }
 
-    private void deleteFileFromS3(String fileUrl) {
-        s3Service.deleteFileFromS3(fileUrl);
+    private void deleteFile(String fileUrl) {
+        blobStorage.deleteFile(fileUrl);
     }
 
+    // keyset pagination: one extra row is fetched to tell
+    // whether another page exists without a count query
     @Transactional(readOnly = true)
-    public List<VideoDTO> findAllVideos() {
-        return videoRepository.findAll().stream()
-                .map(videoDTOMapper::toDTO).toList();
+    public VideoCardPage findAllVideos(String cursor, int limit, VideoSort sort) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        var position = VideoCursor.decode(cursor, sort);
+        var fetchLimit = Limit.of(pageSize + 1);
+
+        List<VideoCardDTO> cards = switch (sort) {
+            case NEWEST -> videoRepository.findNewestCards(
+                    position.createdDate(), position.id(), fetchLimit);
+            case MOST_VIEWED -> videoRepository.findMostViewedCards(
+                    new AtomicInteger(position.views()), position.id(), fetchLimit);
+        };
+
+        if (cards.size() <= pageSize) {
+            return new VideoCardPage(cards, null);
+        }
+        List<VideoCardDTO> page = cards.subList(0, pageSize);
+        return new VideoCardPage(page, VideoCursor.after(sort, page.getLast()).encode());
     }
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package com.muybien.youtube_clone.video;
+
+public enum VideoSort {
+    NEWEST,
+    MOST_VIEWED
+}
@@ -0,0 +1,182 @@
+package com.muybien.youtube_clone.video;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muybien.youtube_clone.handler.MediaNotFoundException;
+import com.muybien.youtube_clone.storage.BlobInfo;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+// Plays a video through the application instead of the raw storage URL.
+// Range requests (RFC 9110, section 14) are answered with 206 and only the
+// requested bytes are read from storage, so seeking in a 2GB file costs no
+// more than the part that is played. If-Range falls back to the whole file
+// when the stored file has changed; a matching If-None-Match is answered with
+// 304 by Spring from the ETag and Last-Modified headers set here. Thumbnails
+// are served the same way, so both files go through the storage edge cache.
+@Service
+public class VideoStreamService {
+
+    private static final VideoFields VIDEO_URL = VideoFields.parse("videoUrl");
+    private static final VideoFields THUMBNAIL_URL = VideoFields.parse("thumbnailUrl");
+    private static final VideoFields THUMBNAIL_VARIANTS = VideoFields.parse("thumbnailVariants");
+    private static final int MAX_CACHED_BLOBS = 10_000;
+    // files are never rewritten in place, a new upload gets a new key
+    private static final Duration BLOB_INFO_TTL = Duration.ofMinutes(10);
+
+    private final VideoService videoService;
+    private final BlobStorage blobStorage;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, BlobInfo> blobInfos;
+
+    public VideoStreamService(VideoService videoService, BlobStorage blobStorage, MeterRegistry meterRegistry) {
+        this.videoService = videoService;
+        this.blobStorage = blobStorage;
+        this.meterRegistry = meterRegistry;
+        this.blobInfos = Caffeine.newBuilder()
+                .expireAfterWrite(BLOB_INFO_TTL)
+                .maximumSize(MAX_CACHED_BLOBS)
+                .build();
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(Integer videoId, HttpHeaders requestHeaders, boolean headOnly) {
+        String videoUrl = videoService.getVideoDetails(videoId, VIDEO_URL).videoUrl();
+        return serve(new Served("video", videoId, videoUrl), requestHeaders, headOnly);
+    }
+
+    public ResponseEntity<StreamingResponseBody> streamThumbnail(Integer videoId, HttpHeaders requestHeaders, boolean headOnly) {
+        String thumbnailUrl = videoService.getVideoDetails(videoId, THUMBNAIL_URL).thumbnailUrl();
+        return serve(new Served("thumbnail", videoId, thumbnailUrl), requestHeaders, headOnly);
+    }
+
+    public ResponseEntity<StreamingResponseBody> streamThumbnailVariant(Integer videoId,
+                                                                        int width,
+                                                                        HttpHeaders requestHeaders,
+                                                                        boolean headOnly) {
+        Map<Integer, String> variants = videoService.getVideoDetails(videoId, THUMBNAIL_VARIANTS).thumbnailVariants();
+        String variantUrl = variants == null ? null : variants.get(width);
+        if (variantUrl == null) {
+            throw new MediaNotFoundException("Video with ID: " + videoId + " has no " + width + "px wide thumbnail.");
+        }
+        return serve(new Served("thumbnail", videoId, variantUrl), requestHeaders, headOnly);
+    }
+
+    private ResponseEntity<StreamingResponseBody> serve(Served served, HttpHeaders requestHeaders, boolean headOnly) {
+        BlobInfo blob = blobInfos.get(served.fileUrl(), url -> blobStorage.describe(url).orElse(null));
+        if (blob == null) {
+            throw new MediaNotFoundException("The " + served.file() + " file of video with ID: " + served.videoId() + " doesn't exist.");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(blob.eTag());
+        headers.setLastModified(blob.lastModified());
+
+        HttpRange range = requestedRange(requestHeaders, blob);
+        if (range == null) {
+            return respond(HttpStatus.OK, headers, served, 0, blob.size(), headOnly);
+        }
+        if (!isSatisfiable(range, blob.size())) {
+            count(served, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .headers(headers)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + blob.size())
+                    .build();
+        }
+        long start = range.getRangeStart(blob.size());
+        long end = range.getRangeEnd(blob.size());
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + blob.size());
+        return respond(HttpStatus.PARTIAL_CONTENT, headers, served, start, end - start + 1, headOnly);
+    }
+
+    // null means the whole file is sent: no or a malformed Range, an If-Range
+    // for another version, or several ranges (multipart/byteranges isn't
+    // supported, players only ever ask for one)
+    private HttpRange requestedRange(HttpHeaders requestHeaders, BlobInfo blob) {
+        List<HttpRange> ranges;
+        try {
+            ranges = requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (ranges.size() != 1 || !ifRangeMatches(requestHeaders, blob)) {
+            return null;
+        }
+        return ranges.getFirst();
+    }
+
+    // an entity tag must match strongly, a date exactly
+    private boolean ifRangeMatches(HttpHeaders requestHeaders, BlobInfo blob) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(blob.eTag());
+        }
+        try {
+            return requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) == blob.lastModified().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return size > 0 && range.getRangeStart(size) < size;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> respond(HttpStatus status,
+                                                          HttpHeaders headers,
+                                                          Served served,
+                                                          long start,
+                                                          long length,
+                                                          boolean headOnly) {
+        count(served, status);
+        headers.setContentType(MediaTypeFactory.getMediaType(served.fileUrl()).orElse(MediaType.APPLICATION_OCTET_STREAM));
+        headers.setContentLength(length);
+        var response = ResponseEntity.status(status).headers(headers);
+        if (headOnly) {
+            return response.build();
+        }
+        return response.body(out -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                blobStorage.transferRange(served.fileUrl(), start, length, Channels.newChannel(out));
+                DistributionSummary.builder("video.stream.bytes")
+                        .description("Body size of video stream responses")
+                        .baseUnit("bytes")
+                        .tag("file", served.file())
+                        .register(meterRegistry)
+                        .record(length);
+            } finally {
+                sample.stop(Timer.builder("video.stream.transfer")
+                        .description("Time spent sending video stream bodies")
+                        .tag("file", served.file())
+                        .register(meterRegistry));
+            }
+        });
+    }
+
+    private void count(Served served, HttpStatus status) {
+        meterRegistry.counter("video.stream.requests", "file", served.file(), "status", String.valueOf(status.value())).increment();
+    }
+
+    // file is "video" or "thumbnail", and tags the stream metrics
+    private record Served(String file, Integer videoId, String fileUrl) {
+    }
+}
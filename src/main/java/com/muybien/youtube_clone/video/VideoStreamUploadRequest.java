@@ -0,0 +1,15 @@
+package com.muybien.youtube_clone.video;
+
+import lombok.Builder;
+
+// Metadata of a streamed upload, sent in headers since the body is the raw
+// video; the thumbnail, when present, is the first thumbnailLength bytes
+@Builder
+public record VideoStreamUploadRequest(
+        String title,
+        String description,
+        String videoContentType,
+        String thumbnailContentType,
+        long thumbnailLength
+) {
+}
@@ -1,33 +1,203 @@
 package com.muybien.youtube_clone.video;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.muybien.youtube_clone.comment.CommentRequest;
 import com.muybien.youtube_clone.comment.CommentService;
+import com.muybien.youtube_clone.common.SizeLimitedInputStream;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
+import com.muybien.youtube_clone.handler.UploadTooLargeException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.OK;
 
 @RestController
 @RequestMapping("/videos")
-@RequiredArgsConstructor
 public class VideoUserController {
 
     private final VideoService videoService;
     private final CommentService commentService;
+    private final VideoExportService videoExportService;
+    private final VideoIngestService videoIngestService;
+    private final VideoPresignedUploadService videoPresignedUploadService;
+    private final VideoResumableUploadService videoResumableUploadService;
+    private final PlaybackUrls playbackUrls;
+    private final ObjectMapper objectMapper;
+    private final long maxUploadSize;
+
+    // maxUploadSize is the same cap as multipart uploads
+    public VideoUserController(VideoService videoService,
+                               CommentService commentService,
+                               VideoExportService videoExportService,
+                               VideoIngestService videoIngestService,
+                               VideoPresignedUploadService videoPresignedUploadService,
+                               VideoResumableUploadService videoResumableUploadService,
+                               PlaybackUrls playbackUrls,
+                               ObjectMapper objectMapper,
+                               @Value("${spring.servlet.multipart.max-file-size:2048MB}") DataSize maxUploadSize) {
+        this.videoService = videoService;
+        this.commentService = commentService;
+        this.videoExportService = videoExportService;
+        this.videoIngestService = videoIngestService;
+        this.videoPresignedUploadService = videoPresignedUploadService;
+        this.videoResumableUploadService = videoResumableUploadService;
+        this.playbackUrls = playbackUrls;
+        this.objectMapper = objectMapper;
+        this.maxUploadSize = maxUploadSize.toBytes();
+    }
 
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportVideos() {
+        Runnable release = videoExportService.reserveExport();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try {
+                        videoExportService.exportVideoCards(out);
+                    } finally {
+                        release.run();
+                    }
+                });
+    }
+
+    // accepted once both files are staged, the rest runs in the background
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(CREATED)
-    public VideoUploadResponse uploadVideo(
+    public ResponseEntity<VideoIngestStatus> uploadVideo(
             @Valid VideoUploadRequest request,
             Authentication connectedUser
     ) {
-        return videoService.uploadVideo(request.video(), request.thumbnail(),
-                request.title(), request.description(), connectedUser);
+        VideoIngestStatus status = videoIngestService.submit(request, connectedUser);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/ingest/{jobId}")
+                        .buildAndExpand(status.jobId())
+                        .toUri())
+                .body(playbackUrls.forIngest(status));
+    }
+
+    // issues presigned PUT URLs; the client uploads both files to the bucket
+    // itself and then calls complete
+    @PostMapping(value = "presigned", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(CREATED)
+    public PresignedUploadResponse createPresignedUpload(
+            @RequestBody @Valid PresignedUploadRequest request,
+            Authentication connectedUser
+    ) {
+        return videoPresignedUploadService.issue(request, connectedUser);
+    }
+
+    @PostMapping(value = "presigned/{uploadId}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(CREATED)
+    public VideoUploadResponse completePresignedUpload(
+            @PathVariable String uploadId,
+            Authentication connectedUser
+    ) {
+        return playbackUrls.forUpload(videoPresignedUploadService.complete(uploadId, connectedUser));
+    }
+
+    // starts a chunked upload; the thumbnail is sent here, the video in chunks
+    @PostMapping(value = "resumable", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(CREATED)
+    public ResumableUploadStatus startResumableUpload(
+            @Valid ResumableUploadRequest request,
+            Authentication connectedUser
+    ) {
+        return videoResumableUploadService.start(request, connectedUser);
+    }
+
+    // the body is the chunk itself; a chunk may be sent again after a failure
+    @PutMapping("resumable/{uploadId}/chunks/{chunkNumber}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void uploadResumableChunk(
+            @PathVariable String uploadId,
+            @PathVariable int chunkNumber,
+            HttpServletRequest servletRequest,
+            Authentication connectedUser
+    ) throws IOException {
+        videoResumableUploadService.uploadChunk(uploadId, chunkNumber, servletRequest.getInputStream(),
+                servletRequest.getContentLengthLong(), connectedUser);
+    }
+
+    @GetMapping(value = "resumable/{uploadId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResumableUploadStatus getResumableUploadStatus(
+            @PathVariable String uploadId,
+            Authentication connectedUser
+    ) {
+        return videoResumableUploadService.getStatus(uploadId, connectedUser);
+    }
+
+    @PostMapping(value = "resumable/{uploadId}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(CREATED)
+    public VideoUploadResponse completeResumableUpload(
+            @PathVariable String uploadId,
+            Authentication connectedUser
+    ) {
+        return playbackUrls.forUpload(videoResumableUploadService.complete(uploadId, connectedUser));
+    }
+
+    @GetMapping("ingest/{jobId}")
+    public VideoIngestStatus getUploadStatus(
+            @PathVariable String jobId,
+            Authentication connectedUser
+    ) {
+        return playbackUrls.forIngest(videoIngestService.getStatus(jobId, connectedUser));
+    }
+
+    // Raw upload without multipart spooling: the body is the thumbnail
+    // (X-Thumbnail-Length bytes) followed by the video, and the text metadata
+    // comes percent-encoded in headers.
+    @PostMapping(value = "stream", consumes = "video/*", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(CREATED)
+    public VideoUploadResponse uploadVideoStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @RequestHeader("X-Video-Title") String title,
+            @RequestHeader("X-Video-Description") String description,
+            @RequestHeader("X-Thumbnail-Length") long thumbnailLength,
+            @RequestHeader("X-Thumbnail-Content-Type") String thumbnailContentType,
+            HttpServletRequest servletRequest,
+            Authentication connectedUser
+    ) throws IOException {
+        var request = VideoStreamUploadRequest.builder()
+                .title(decodeHeader(title))
+                .description(decodeHeader(description))
+                .videoContentType(contentType.getType() + "/" + contentType.getSubtype())
+                .thumbnailContentType(thumbnailContentType)
+                .thumbnailLength(thumbnailLength)
+                .build();
+        var body = new SizeLimitedInputStream(servletRequest.getInputStream(),
+                thumbnailLength + maxUploadSize);
+        try {
+            return playbackUrls.forUpload(videoService.uploadVideoStream(request, body, connectedUser));
+        } catch (RuntimeException e) {
+            // the storage client may have wrapped the failure from the body
+            if (body.limitExceeded() && !(e instanceof UploadTooLargeException)) {
+                throw new UploadTooLargeException("File exceeds the maximum upload size of " + maxUploadSize + " bytes.", e);
+            }
+            throw e;
+        }
+    }
+
+    private static String decodeHeader(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidVideoMetadataException("Title and description must be percent-encoded UTF-8.");
+        }
     }
 
     @DeleteMapping("{videoId}/delete")
@@ -41,20 +211,26 @@ public class VideoUserController {
 
     @PostMapping("{videoId}/like")
     @ResponseStatus(OK)
-    public VideoDTO likeVideo(
+    public Object likeVideo(
             @PathVariable Integer videoId,
+            @RequestParam(required = false) String fields,
             Authentication connectedUser
     ) {
-        return videoService.incrementVideoLike(videoId, connectedUser);
+        VideoFields selected = VideoFields.parse(fields);
+        VideoDTO video = videoService.incrementVideoLike(videoId, selected, connectedUser);
+        return selected.select(playbackUrls.forVideo(videoId, video), objectMapper);
     }
 
     @PostMapping("{videoId}/dislike")
     @ResponseStatus(OK)
-    public VideoDTO disLikeVideo(
+    public Object disLikeVideo(
             @PathVariable Integer videoId,
+            @RequestParam(required = false) String fields,
             Authentication connectedUser
     ) {
-        return videoService.incrementVideoDisLike(videoId, connectedUser);
+        VideoFields selected = VideoFields.parse(fields);
+        VideoDTO video = videoService.incrementVideoDisLike(videoId, selected, connectedUser);
+        return selected.select(playbackUrls.forVideo(videoId, video), objectMapper);
     }
 
     @PostMapping({"{videoId}/comment"})
@@ -0,0 +1,174 @@
+package com.muybien.youtube_clone.video;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muybien.youtube_clone.handler.VideoNotFoundException;
+import com.muybien.youtube_clone.user.User;
+import com.muybien.youtube_clone.user.UserService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Write-behind view counting. Views are accumulated in memory across several
+// independently locked stripes, so a viral video doesn't serialize all of its
+// viewers on a single lock or row, and are periodically flushed as batched
+// relative updates. Each flush runs in one transaction, so a failure leaves
+// no batch applied and every delta can safely be retried. Only views of
+// existing videos are accepted; known ids are cached so the check rarely
+// reaches the database.
+@Slf4j
+@Service
+public class VideoViewService {
+
+    static final String FLUSH_SQL = "UPDATE video SET video_view_counter = video_view_counter + ? WHERE id = ?";
+    static final String EXISTS_SQL = "SELECT COUNT(*) FROM video WHERE id = ? AND deleted_at IS NULL";
+    private static final int STRIPES = 16;
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserService userService;
+    private final Cache<String, Boolean> recentViews;
+    private final Cache<Integer, Boolean> knownVideos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public VideoViewService(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            UserService userService,
+                            @Value("${video.views.dedup-window:2m}") Duration dedupWindow,
+                            @Value("${video.views.dedup-max-entries:1000000}") long dedupMaxEntries,
+                            @Value("${video.views.known-videos-max-entries:100000}") long knownVideosMaxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userService = userService;
+        this.recentViews = Caffeine.newBuilder()
+                .expireAfterWrite(dedupWindow)
+                .maximumSize(dedupMaxEntries)
+                .build();
+        // a deleted video may keep collecting views until its entry expires;
+        // the flush then updates no row
+        this.knownVideos = Caffeine.newBuilder()
+                .expireAfterWrite(dedupWindow)
+                .maximumSize(knownVideosMaxEntries)
+                .build();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void recordView(Integer videoId, Authentication connectedUser, String clientAddress) {
+        if (knownVideos.get(videoId, this::videoExists) == null) {
+            throw new VideoNotFoundException("Video with ID: " + videoId + " doesn't exist.");
+        }
+        boolean isAuthenticated = userService.isUserAuthenticated(connectedUser);
+        String viewer = isAuthenticated
+                ? "user:" + ((User) connectedUser.getPrincipal()).getId()
+                : "guest:" + clientAddress;
+
+        if (recentViews.asMap().putIfAbsent(viewer + ":" + videoId, Boolean.TRUE) != null) {
+            return;
+        }
+        add(videoId, 1);
+
+        if (isAuthenticated) {
+            userService.addVideoToWatchedVideosHistory(videoId, connectedUser);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${video.views.flush-interval:5s}")
+    public void flush() {
+        Map<Integer, Long> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // ordered by id so concurrent flushes from several nodes lock rows in the same order
+        List<Map.Entry<Integer, Long>> batch = new ArrayList<>(deltas.entrySet());
+        batch.sort(Map.Entry.comparingByKey());
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(FLUSH_SQL, batch, FLUSH_BATCH_SIZE, (statement, delta) -> {
+                        statement.setLong(1, delta.getValue());
+                        statement.setInt(2, delta.getKey());
+                    }));
+        } catch (DataAccessException e) {
+            log.warn("Failed to flush view counters for {} videos, will retry.", batch.size(), e);
+            deltas.forEach(this::add);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    long pendingViews(Integer videoId) {
+        return Arrays.stream(stripes).mapToLong(stripe -> stripe.get(videoId)).sum();
+    }
+
+    // unknown ids aren't cached, so they can't fill the cache
+    private Boolean videoExists(Integer videoId) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_SQL, Integer.class, videoId);
+        return count != null && count > 0 ? Boolean.TRUE : null;
+    }
+
+    private void add(Integer videoId, long views) {
+        int probe = (int) Thread.currentThread().threadId();
+        stripes[probe & (STRIPES - 1)].add(videoId, views);
+    }
+
+    private Map<Integer, Long> drain() {
+        Map<Integer, Long> deltas = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            stripe.drainTo(deltas);
+        }
+        return deltas;
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<Integer, Long> counts = new HashMap<>();
+
+        void add(Integer videoId, long views) {
+            lock.lock();
+            try {
+                counts.merge(videoId, views, Long::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long get(Integer videoId) {
+            lock.lock();
+            try {
+                return counts.getOrDefault(videoId, 0L);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void drainTo(Map<Integer, Long> deltas) {
+            Map<Integer, Long> drained;
+            lock.lock();
+            try {
+                drained = counts;
+                counts = new HashMap<>();
+            } finally {
+                lock.unlock();
+            }
+            drained.forEach((videoId, views) -> deltas.merge(videoId, views, Long::sum));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.muybien.youtube_clone.comment;
 
 import com.muybien.youtube_clone.user.User;
 import com.muybien.youtube_clone.video.Video;
+import com.muybien.youtube_clone.video.VideoDetailsCache;
 import com.muybien.youtube_clone.video.VideoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +23,7 @@ public class CommentServiceTest {
     @Mock private CommentRepository commentRepository;
     @Mock private CommentDTOMapper commentDTOMapper;
     @Mock private VideoService videoService;
+    @Mock private VideoDetailsCache videoDetailsCache;
     @Mock private Authentication connectedUser;
     @InjectMocks private CommentService commentService;
 
@@ -44,6 +46,7 @@ public class CommentServiceTest {
 
         verify(videoService, times(1)).findVideoById(anyInt());
         verify(commentRepository, times(1)).save(any(Comment.class));
+        verify(videoDetailsCache, times(1)).evict(videoId);
     }
 
     @Test
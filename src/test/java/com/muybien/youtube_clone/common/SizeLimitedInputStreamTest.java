@@ -0,0 +1,26 @@
+package com.muybien.youtube_clone.common;
+
+import com.muybien.youtube_clone.handler.UploadTooLargeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SizeLimitedInputStreamTest {
+
+    @Test
+    public void testReadsUpToTheLimit() throws Exception {
+        var in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[10]), 10);
+
+        assertEquals(10, in.readAllBytes().length);
+    }
+
+    @Test
+    public void testFailsOnceTheLimitIsExceeded() {
+        var in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[11]), 10);
+
+        assertThrows(UploadTooLargeException.class, in::readAllBytes);
+        assertTrue(in.limitExceeded());
+    }
+}
@@ -0,0 +1,232 @@
+package com.muybien.youtube_clone.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnonymousResponseCacheFilterTest {
+
+    private static final String ETAG = "W/\"1-0\"";
+
+    private final AtomicInteger chainCalls = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> {
+        int call = chainCalls.incrementAndGet();
+        var httpResponse = (jakarta.servlet.http.HttpServletResponse) response;
+        httpResponse.setContentType("application/json");
+        httpResponse.setHeader("ETag", ETAG);
+        httpResponse.setHeader("Vary", "Accept");
+        httpResponse.getWriter().write("{\"call\":" + call + "}");
+    };
+
+    @Test
+    public void testFreshEntryIsServedFromCache() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+
+        MockHttpServletResponse first = perform(filter, get("/videos/1"), chain);
+        MockHttpServletResponse second = perform(filter, get("/videos/1"), chain);
+
+        assertEquals("MISS", first.getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", second.getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("{\"call\":1}", second.getContentAsString());
+        assertEquals("application/json", second.getContentType());
+        assertEquals(ETAG, second.getHeader("ETag"));
+        assertEquals("Accept", second.getHeader("Vary"));
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testCachedEntryAnswersConditionalRequest() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+        perform(filter, get("/videos/1"), chain);
+
+        MockHttpServletRequest conditional = get("/videos/1");
+        conditional.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse response = perform(filter, conditional, chain);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentLength());
+        assertEquals("Accept", response.getHeader("Vary"));
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testKeyIncludesQueryAndAcceptHeader() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+
+        perform(filter, get("/videos"), chain);
+        MockHttpServletRequest page = get("/videos");
+        page.setQueryString("cursor=abc");
+        perform(filter, page, chain);
+        MockHttpServletRequest cbor = get("/videos");
+        cbor.addHeader("Accept", "application/cbor");
+        perform(filter, cbor, chain);
+
+        assertEquals(3, chainCalls.get());
+    }
+
+    @Test
+    public void testAuthorizedAndNonCacheableRequestsBypassCache() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest authorized = get("/videos/1");
+            authorized.addHeader("Authorization", "Bearer token");
+            perform(filter, authorized, chain);
+            perform(filter, get("/users/history"), chain);
+            perform(filter, get("/videos/export"), chain);
+            var post = new MockHttpServletRequest("POST", "/videos/1/view");
+            perform(filter, post, chain);
+        }
+
+        assertEquals(8, chainCalls.get());
+    }
+
+    @Test
+    public void testErrorResponsesAreNotCached() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+        FilterChain notFound = (request, response) -> {
+            chainCalls.incrementAndGet();
+            ((jakarta.servlet.http.HttpServletResponse) response).setStatus(404);
+        };
+
+        perform(filter, get("/videos/1"), notFound);
+        perform(filter, get("/videos/1"), notFound);
+
+        assertEquals(2, chainCalls.get());
+    }
+
+    @Test
+    public void testStaleEntryIsServedWhileSingleRequestRefreshes() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ZERO, Duration.ofMinutes(1), 1024 * 1024);
+        perform(filter, get("/videos/1"), chain);
+
+        var refreshStarted = new CountDownLatch(1);
+        var releaseRefresh = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            refreshStarted.countDown();
+            try {
+                releaseRefresh.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            chain.doFilter(request, response);
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> refresh = executor.submit(() -> perform(filter, get("/videos/1"), slowChain));
+            assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+            MockHttpServletResponse stale = perform(filter, get("/videos/1"), slowChain);
+            assertEquals("STALE", stale.getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+            assertEquals("{\"call\":1}", stale.getContentAsString());
+
+            releaseRefresh.countDown();
+            MockHttpServletResponse refreshed = refresh.get(5, TimeUnit.SECONDS);
+            assertEquals("REFRESH", refreshed.getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+            assertEquals("{\"call\":2}", refreshed.getContentAsString());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, chainCalls.get());
+    }
+
+    @Test
+    public void testConcurrentMissesWaitForSingleRender() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+        var renderStarted = new CountDownLatch(1);
+        var releaseRender = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            renderStarted.countDown();
+            try {
+                releaseRender.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            chain.doFilter(request, response);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> perform(filter, get("/videos/1"), slowChain));
+            assertTrue(renderStarted.await(5, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> second = executor.submit(() -> perform(filter, get("/videos/1"), slowChain));
+            Future<MockHttpServletResponse> third = executor.submit(() -> perform(filter, get("/videos/1"), slowChain));
+
+            Thread.sleep(100);
+            assertFalse(second.isDone());
+            releaseRender.countDown();
+
+            assertEquals("MISS", first.get(5, TimeUnit.SECONDS).getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+            for (Future<MockHttpServletResponse> waiting : new Future[]{second, third}) {
+                MockHttpServletResponse response = waiting.get(5, TimeUnit.SECONDS);
+                assertEquals("HIT", response.getHeader(AnonymousResponseCacheFilter.CACHE_STATUS_HEADER));
+                assertEquals("{\"call\":1}", response.getContentAsString());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testMissesAfterUncacheableRenderGoThroughThemselves() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1024 * 1024);
+        var renderStarted = new CountDownLatch(1);
+        var releaseRender = new CountDownLatch(1);
+        FilterChain slowNotFound = (request, response) -> {
+            if (chainCalls.incrementAndGet() == 1) {
+                renderStarted.countDown();
+                try {
+                    releaseRender.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ((jakarta.servlet.http.HttpServletResponse) response).setStatus(404);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> perform(filter, get("/videos/1"), slowNotFound));
+            assertTrue(renderStarted.await(5, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> second = executor.submit(() -> perform(filter, get("/videos/1"), slowNotFound));
+            releaseRender.countDown();
+
+            assertEquals(404, first.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(404, second.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, chainCalls.get());
+    }
+
+    @Test
+    public void testEntriesOverMemoryBudgetAreNotKept() throws Exception {
+        var filter = new AnonymousResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 100);
+
+        perform(filter, get("/videos/1"), chain);
+        perform(filter, get("/videos/1"), chain);
+
+        assertEquals(2, chainCalls.get());
+    }
+
+    private MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private MockHttpServletResponse perform(AnonymousResponseCacheFilter filter,
+                                            MockHttpServletRequest request,
+                                            FilterChain filterChain) throws Exception {
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, filterChain);
+        return response;
+    }
+}
@@ -0,0 +1,113 @@
+package com.muybien.youtube_clone.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignedUrlFilterTest {
+
+    private final UrlSigner urlSigner = signer("secret", "");
+    private final SignedUrlFilter filter = new SignedUrlFilter(urlSigner);
+    private final AtomicInteger chainCalls = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> chainCalls.incrementAndGet();
+
+    @Test
+    public void testValidSignatureIsLetThroughAndCacheable() throws Exception {
+        MockHttpServletResponse response = perform(urlSigner.sign("/videos/1/stream"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1, chainCalls.get());
+        assertTrue(response.getHeader("Cache-Control").startsWith("max-age="));
+        assertTrue(response.getHeader("Cache-Control").endsWith(", public"));
+    }
+
+    @Test
+    public void testSignatureForAnotherPathOrTamperedExpiryIsRejected() throws Exception {
+        String signed = urlSigner.sign("/videos/1/stream");
+
+        assertEquals(403, perform(signed.replace("/videos/1/", "/videos/2/")).getStatus());
+        assertEquals(403, perform(signed.replace("expires=", "expires=1")).getStatus());
+        assertEquals(403, perform("http://localhost/api/v1/videos/1/thumbnail").getStatus());
+        assertEquals(403, perform(urlSigner.sign("/videos/1/thumbnail").replace("/thumbnail", "/thumbnail/320")).getStatus());
+        assertEquals(0, chainCalls.get());
+    }
+
+    @Test
+    public void testEncodedOrParameterizedPathIsChecked() throws Exception {
+        assertEquals(403, perform("http://localhost/api/v1/videos/1/%73tream").getStatus());
+        assertEquals(403, perform("http://localhost/api/v1/videos/1/%74humbnail").getStatus());
+        assertEquals(403, perform("http://localhost/api/v1/videos/1/stream;x=y").getStatus());
+        assertEquals(200, perform(urlSigner.sign("/videos/1/stream").replace("/stream", "/%73tream")).getStatus());
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testLocalMediaFilesNeedSignature() throws Exception {
+        assertEquals(403, perform("http://localhost/api/v1/media/video.mp4").getStatus());
+        assertEquals(403, perform("http://localhost/api/v1/media/%76ideo.mp4").getStatus());
+        assertEquals(200, perform(urlSigner.sign("/media/video.mp4")).getStatus());
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testExpiredSignatureIsRejected() throws Exception {
+        String expired = urlSigner.sign("/videos/1/stream", Instant.now().minus(Duration.ofHours(2)));
+
+        assertEquals(403, perform(expired).getStatus());
+    }
+
+    @Test
+    public void testPreviousKeyIsAcceptedWhileRotating() throws Exception {
+        String signedWithOldKey = urlSigner.sign("/videos/1/thumbnail");
+        var rotated = new SignedUrlFilter(signer("new-secret", "secret"));
+        var withoutOldKey = new SignedUrlFilter(signer("new-secret", ""));
+
+        assertEquals(200, perform(rotated, signedWithOldKey).getStatus());
+        assertEquals(403, perform(withoutOldKey, signedWithOldKey).getStatus());
+    }
+
+    @Test
+    public void testOtherPathsAreNotChecked() throws Exception {
+        assertEquals(200, perform("http://localhost/api/v1/videos/1").getStatus());
+        assertEquals(1, chainCalls.get());
+    }
+
+    @Test
+    public void testUrlsWithinOneBucketAreIdentical() {
+        Instant bucketStart = Instant.parse("2024-01-01T12:05:00Z");
+
+        String first = urlSigner.sign("/videos/1/stream", bucketStart.plusSeconds(1));
+        String last = urlSigner.sign("/videos/1/stream", bucketStart.plusSeconds(300));
+        String next = urlSigner.sign("/videos/1/stream", bucketStart.plusSeconds(301));
+
+        assertEquals(first, last);
+        assertNotEquals(last, next);
+        assertEquals(Instant.parse("2024-01-01T13:10:00Z").getEpochSecond(), urlSigner.expiryFor(bucketStart.plusSeconds(1)));
+    }
+
+    private MockHttpServletResponse perform(String url) throws Exception {
+        return perform(filter, url);
+    }
+
+    private MockHttpServletResponse perform(SignedUrlFilter filter, String url) throws Exception {
+        var uri = UriComponentsBuilder.fromUriString(url).build();
+        var request = new MockHttpServletRequest("GET", uri.getPath());
+        request.setContextPath("/api/v1");
+        uri.getQueryParams().forEach((name, values) -> request.addParameter(name, values.toArray(String[]::new)));
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static UrlSigner signer(String secretKey, String previousSecretKey) {
+        return new UrlSigner(secretKey, previousSecretKey, "http://localhost/api/v1/", Duration.ofHours(1), Duration.ofMinutes(5));
+    }
+}
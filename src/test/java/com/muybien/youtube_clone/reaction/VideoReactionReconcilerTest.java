@@ -0,0 +1,156 @@
+package com.muybien.youtube_clone.reaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoReactionReconcilerTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    private VideoReactionReconciler videoReactionReconciler;
+    // what the database holds: table names, and legacy tables recorded as copied
+    private final Set<String> tables = new HashSet<>();
+    private final Set<String> backfilled = new HashSet<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        videoReactionReconciler = new VideoReactionReconciler(jdbcTemplate, transactionTemplate);
+
+        when(jdbcTemplate.queryForObject(eq(VideoReactionReconciler.TABLE_EXISTS_SQL), eq(Integer.class), anyString()))
+                .thenAnswer(invocation -> tables.contains(invocation.<String>getArgument(2)) ? 1 : 0);
+        when(jdbcTemplate.queryForObject(eq(VideoReactionReconciler.BACKFILLED_SQL), eq(Integer.class), anyString()))
+                .thenAnswer(invocation -> backfilled.contains(invocation.<String>getArgument(2)) ? 1 : 0);
+        doAnswer(invocation -> {
+            String[] rename = invocation.<String>getArgument(0).split(" ");
+            assertTrue(tables.remove(rename[2]), "renamed a missing table");
+            tables.add(rename[4]);
+            return null;
+        }).when(jdbcTemplate).execute(startsWith("RENAME TABLE"));
+        when(jdbcTemplate.update(eq(VideoReactionReconciler.MARK_BACKFILLED_SQL), anyString()))
+                .thenAnswer(invocation -> {
+                    if (!backfilled.add(invocation.getArgument(1))) {
+                        throw new DuplicateKeyException("Duplicate entry");
+                    }
+                    return 1;
+                });
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    public void testBackfillRenamesCopiesAndRecordsLegacyTables() {
+        tables.addAll(Set.of("user_liked_videos", "user_dis_liked_videos"));
+
+        videoReactionReconciler.backfillLegacyReactions();
+
+        assertEquals(Set.of("user_liked_videos_backfilled", "user_dis_liked_videos_backfilled"), tables);
+        assertEquals(Set.of("user_liked_videos", "user_dis_liked_videos"), backfilled);
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute("RENAME TABLE user_liked_videos TO user_liked_videos_backfilling");
+        inOrder.verify(jdbcTemplate).update(VideoReactionReconciler.MARK_BACKFILLED_SQL, "user_liked_videos");
+        inOrder.verify(jdbcTemplate).update(VideoReactionReconciler.BACKFILL_SQL.formatted(
+                "liked_videos", ReactionType.LIKE, "user_liked_videos_backfilling"));
+        inOrder.verify(jdbcTemplate).execute("RENAME TABLE user_liked_videos_backfilling TO user_liked_videos_backfilled");
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    public void testBackfillResumesCopyInterruptedAfterRename() {
+        tables.add("user_liked_videos_backfilling");
+
+        videoReactionReconciler.backfillLegacyReactions();
+
+        verify(jdbcTemplate).update(VideoReactionReconciler.BACKFILL_SQL.formatted(
+                "liked_videos", ReactionType.LIKE, "user_liked_videos_backfilling"));
+        assertEquals(Set.of("user_liked_videos_backfilled"), tables);
+    }
+
+    @Test
+    public void testBackfillDoesNotRepeatRecordedCopy() {
+        tables.add("user_liked_videos_backfilling");
+        backfilled.add("user_liked_videos");
+
+        videoReactionReconciler.backfillLegacyReactions();
+
+        verify(jdbcTemplate, never()).update(contains("INSERT IGNORE"));
+        assertEquals(Set.of("user_liked_videos_backfilled"), tables);
+    }
+
+    @Test
+    public void testBackfillLeavesFinishedTablesAlone() {
+        tables.addAll(Set.of("user_liked_videos_backfilled", "user_dis_liked_videos_backfilled"));
+
+        videoReactionReconciler.backfillLegacyReactions();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    public void testBackfillCopiedByAnotherInstanceIsNotRepeated() {
+        tables.add("user_liked_videos_backfilling");
+        // recorded by another instance after this one checked
+        when(jdbcTemplate.queryForObject(eq(VideoReactionReconciler.BACKFILLED_SQL), eq(Integer.class), anyString()))
+                .thenReturn(0);
+        backfilled.add("user_liked_videos");
+
+        videoReactionReconciler.backfillLegacyReactions();
+
+        verify(jdbcTemplate, never()).update(contains("INSERT IGNORE"));
+        assertEquals(Set.of("user_liked_videos_backfilling"), tables);
+    }
+
+    @Test
+    public void testReconcileWaitsForBackfill() {
+        tables.add("user_dis_liked_videos_backfilling");
+
+        videoReactionReconciler.reconcile();
+
+        verify(jdbcTemplate, never()).queryForMap(anyString());
+        verify(jdbcTemplate, never()).update(eq(VideoReactionReconciler.RECONCILE_SQL), any(Object[].class));
+    }
+
+    @Test
+    public void testReconcileRecountsInIdRanges() {
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("min_id", 1L);
+        bounds.put("max_id", 2500L);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(bounds);
+
+        videoReactionReconciler.reconcile();
+
+        verify(jdbcTemplate).update(VideoReactionReconciler.RECONCILE_SQL, 1L, 1000L);
+        verify(jdbcTemplate).update(VideoReactionReconciler.RECONCILE_SQL, 1001L, 2000L);
+        verify(jdbcTemplate).update(VideoReactionReconciler.RECONCILE_SQL, 2001L, 2500L);
+    }
+
+    @Test
+    public void testReconcileWithoutVideos() {
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("min_id", null);
+        bounds.put("max_id", null);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(bounds);
+
+        videoReactionReconciler.reconcile();
+
+        verify(jdbcTemplate, never()).update(eq(VideoReactionReconciler.RECONCILE_SQL), any(Object[].class));
+    }
+}
@@ -0,0 +1,137 @@
+package com.muybien.youtube_clone.s3aws;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Minimal S3 stand-in for tests: keeps objects and multipart uploads in
+// memory, and can be told to fail specific part uploads.
+class InMemoryS3Client implements S3Client {
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final Set<String> abortedUploads = ConcurrentHashMap.newKeySet();
+    final AtomicInteger partAttempts = new AtomicInteger();
+    final AtomicInteger maxConcurrentParts = new AtomicInteger();
+    private final AtomicInteger concurrentParts = new AtomicInteger();
+    private final Map<Integer, Integer> partFailures = new ConcurrentHashMap<>();
+    private volatile int failureStatus = 500;
+
+    // the given part fails `times` times before succeeding
+    void failPart(int partNumber, int times, int statusCode) {
+        partFailures.put(partNumber, times);
+        failureStatus = statusCode;
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        objects.put(request.key(), read(body));
+        return PutObjectResponse.builder().eTag(UUID.randomUUID().toString()).build();
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+        partAttempts.incrementAndGet();
+        int concurrent = concurrentParts.incrementAndGet();
+        maxConcurrentParts.accumulateAndGet(concurrent, Math::max);
+        try {
+            Thread.sleep(5);
+            Integer remainingFailures = partFailures.computeIfPresent(request.partNumber(), (part, left) -> left - 1);
+            if (remainingFailures != null && remainingFailures >= 0) {
+                throw (S3Exception) S3Exception.builder()
+                        .statusCode(failureStatus)
+                        .message("Injected failure of part " + request.partNumber())
+                        .build();
+            }
+            Map<Integer, byte[]> parts = uploads.get(request.uploadId());
+            if (parts == null) {
+                throw (S3Exception) S3Exception.builder().statusCode(404).message("NoSuchUpload").build();
+            }
+            parts.put(request.partNumber(), read(body));
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            concurrentParts.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        Map<Integer, byte[]> parts = uploads.remove(request.uploadId());
+        var object = new ByteArrayOutputStream();
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            object.writeBytes(parts.get(part.partNumber()));
+        }
+        objects.put(request.key(), object.toByteArray());
+        return CompleteMultipartUploadResponse.builder().key(request.key()).build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.uploadId());
+        abortedUploads.add(request.uploadId());
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        byte[] object = objects.get(request.key());
+        if (object == null) {
+            throw NoSuchKeyException.builder().statusCode(404).message("Not Found").build();
+        }
+        return HeadObjectResponse.builder()
+                .contentLength((long) object.length)
+                .checksumSHA256(sha256(object))
+                .build();
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        objects.remove(request.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String serviceName() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte[] read(RequestBody body) {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
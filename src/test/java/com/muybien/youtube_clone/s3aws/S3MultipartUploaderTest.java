@@ -0,0 +1,107 @@
+package com.muybien.youtube_clone.s3aws;
+
+import com.muybien.youtube_clone.handler.FileUploadException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class S3MultipartUploaderTest {
+
+    private static final int PART_SIZE = 1024;
+    private static final int CONCURRENCY = 3;
+
+    private InMemoryS3Client s3Client;
+    private S3MultipartUploader uploader;
+    private byte[] content;
+
+    @BeforeEach
+    public void setUp() {
+        s3Client = new InMemoryS3Client();
+        uploader = new S3MultipartUploader(s3Client, DataSize.ofBytes(PART_SIZE), CONCURRENCY, 3);
+        content = new byte[10 * PART_SIZE + 100];
+        new Random(42).nextBytes(content);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploader.shutdown();
+    }
+
+    @Test
+    public void testUploadSplitsIntoPartsAndReassemblesInOrder() {
+        uploader.upload("bucket", "video.mp4", new ByteArrayInputStream(content), "video/mp4", Map.of());
+
+        assertArrayEquals(content, s3Client.objects.get("video.mp4"));
+        assertEquals(11, s3Client.partAttempts.get());
+        assertTrue(s3Client.uploads.isEmpty());
+    }
+
+    @Test
+    public void testUploadNeverExceedsConfiguredConcurrency() {
+        uploader.upload("bucket", "video.mp4", new ByteArrayInputStream(content), "video/mp4", Map.of());
+
+        assertTrue(s3Client.maxConcurrentParts.get() <= CONCURRENCY);
+    }
+
+    @Test
+    public void testFailedPartIsRetriedIndividually() {
+        s3Client.failPart(4, 2, 503);
+
+        uploader.upload("bucket", "video.mp4", new ByteArrayInputStream(content), "video/mp4", Map.of());
+
+        assertArrayEquals(content, s3Client.objects.get("video.mp4"));
+        assertEquals(13, s3Client.partAttempts.get());
+    }
+
+    @Test
+    public void testUploadIsAbortedWhenPartKeepsFailing() {
+        s3Client.failPart(2, 3, 500);
+
+        assertThrows(FileUploadException.class, () ->
+                uploader.upload("bucket", "video.mp4", new ByteArrayInputStream(content), "video/mp4", Map.of()));
+
+        assertFalse(s3Client.objects.containsKey("video.mp4"));
+        assertEquals(1, s3Client.abortedUploads.size());
+        assertTrue(s3Client.uploads.isEmpty());
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried() {
+        s3Client.failPart(1, 1, 403);
+
+        assertThrows(FileUploadException.class, () ->
+                uploader.upload("bucket", "video.mp4", new ByteArrayInputStream(content), "video/mp4", Map.of()));
+
+        assertEquals(1, s3Client.abortedUploads.size());
+    }
+
+    @Test
+    public void testUploadIsAbortedWhenStreamFails() {
+        InputStream failing = new InputStream() {
+            private int read;
+
+            @Override
+            public int read() throws IOException {
+                if (++read > 3 * PART_SIZE) {
+                    throw new IOException("Connection reset");
+                }
+                return 0;
+            }
+        };
+
+        Exception e = assertThrows(FileUploadException.class, () ->
+                uploader.upload("bucket", "video.mp4", failing, "video/mp4", Map.of()));
+
+        assertEquals("Failed to read file input stream", e.getMessage());
+        assertEquals(1, s3Client.abortedUploads.size());
+    }
+}
@@ -0,0 +1,114 @@
+package com.muybien.youtube_clone.s3aws;
+
+import com.muybien.youtube_clone.storage.PresignedPut;
+import com.muybien.youtube_clone.storage.StoredObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// Presigned URLs are signed by the real presigner against a local
+// S3-compatible stand-in: a tiny HTTP endpoint that, like S3, rejects a body
+// whose SHA-256 doesn't match the signed checksum header.
+public class S3ServicePresignedUploadTest {
+
+    private final InMemoryS3Client s3Client = new InMemoryS3Client();
+    private HttpServer standIn;
+    private S3Presigner s3Presigner;
+    private S3Service s3Service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        standIn = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        standIn.createContext("/test-bucket/", this::handlePut);
+        standIn.start();
+
+        s3Presigner = S3Presigner.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .region(Region.EU_CENTRAL_1)
+                .endpointOverride(URI.create("http://localhost:" + standIn.getAddress().getPort()))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        s3Service = new S3Service(s3Client, mock(S3AsyncClient.class), mock(S3MultipartUploader.class), s3Presigner);
+
+        Field field = S3Service.class.getDeclaredField("bucketName");
+        field.setAccessible(true);
+        field.set(s3Service, "test-bucket");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        standIn.stop(0);
+        s3Presigner.close();
+    }
+
+    @Test
+    public void testPresignedPutUploadsDeclaredContent() throws Exception {
+        byte[] content = "video content".getBytes();
+        String checksum = InMemoryS3Client.sha256(content);
+
+        PresignedPut presigned = s3Service.presignPut("video.mp4", "video/mp4", content.length, checksum, Duration.ofMinutes(5));
+
+        assertTrue(presigned.url().contains("/test-bucket/video.mp4?"));
+        assertTrue(presigned.url().contains("X-Amz-Signature="));
+        assertEquals(Map.of("content-type", "video/mp4", "x-amz-checksum-sha256", checksum), presigned.headers());
+
+        assertEquals(200, put(presigned, content));
+        assertEquals(Optional.of(new StoredObject(content.length, checksum)), s3Service.findObject("video.mp4"));
+    }
+
+    @Test
+    public void testPresignedPutRejectsOtherContent() throws Exception {
+        byte[] content = "video content".getBytes();
+        PresignedPut presigned = s3Service.presignPut("video.mp4", "video/mp4", content.length,
+                InMemoryS3Client.sha256(content), Duration.ofMinutes(5));
+
+        assertEquals(400, put(presigned, "other content".getBytes()));
+        assertEquals(Optional.empty(), s3Service.findObject("video.mp4"));
+    }
+
+    private int put(PresignedPut presigned, byte[] content) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(presigned.url()))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(content));
+        presigned.headers().forEach(request::header);
+        try (var client = HttpClient.newHttpClient()) {
+            return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+    }
+
+    private void handlePut(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String key = exchange.getRequestURI().getPath().substring("/test-bucket/".length());
+        boolean signed = exchange.getRequestURI().getQuery().contains("X-Amz-Signature=");
+        String checksum = exchange.getRequestHeaders().getFirst("x-amz-checksum-sha256");
+
+        int status = 400;
+        if ("PUT".equals(exchange.getRequestMethod()) && signed && InMemoryS3Client.sha256(body).equals(checksum)) {
+            s3Client.objects.put(key, body);
+            status = 200;
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+}
@@ -2,33 +2,48 @@ package com.muybien.youtube_clone.s3aws;
 
 import com.muybien.youtube_clone.handler.FileDeletionException;
 import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.storage.ContentHash;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Utilities;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetUrlRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Field;
 import java.net.URI;
-import java.util.UUID;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 public class S3ServiceTest {
 
+    // SHA-256 and CRC32C of "video content"
+    private static final ContentHash HASH = new ContentHash(
+            "8b1026fe0fc95510d130d6ececa4462adb0995c7d77c5791703c45168ad43084", "OEFHOQ==", 13);
+
     @Mock private S3Client s3Client;
+    @Mock private S3AsyncClient s3AsyncClient;
     @Mock private S3Utilities s3Utilities;
-    @Mock private MultipartFile file;
+    @Mock private S3MultipartUploader multipartUploader;
     @InjectMocks private S3Service s3Service;
 
     @BeforeEach
@@ -43,61 +58,132 @@ public class S3ServiceTest {
     }
 
     @Test
-    public void testUploadFileAndFetchFileUrl() throws Exception {
-        String originalFilename = "original-filename.txt";
-        String contentType = "text/plain";
-        String filenameExtension = ".txt";
-        UUID mockUUID = UUID.randomUUID();
-        String fileKey = mockUUID + filenameExtension;
-
-        URI expectedUrl = new URI("https://example.com/" + "test-bucket" + "/" + fileKey);
-
-        when(s3Client.utilities().getUrl(any(GetUrlRequest.class))).thenReturn(expectedUrl.toURL());
-        when(file.getOriginalFilename()).thenReturn(originalFilename);
-        when(file.getContentType()).thenReturn(contentType);
-        when(file.getInputStream()).thenReturn(new ByteArrayInputStream("text-content".getBytes()));
-        when(file.getSize()).thenReturn((long) "test-content".getBytes().length);
-
-        String fileUrl = s3Service.uploadFileAndFetchFileUrl(file);
-
-        assertNotNull(fileUrl);
-        assertTrue(fileUrl.contains("test-bucket"));
-        assertTrue(fileUrl.contains(fileKey));
+    public void testUploadFileAsync(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("video.mp4"), "video content".getBytes());
+        when(s3Client.utilities().getUrl(any(GetUrlRequest.class)))
+                .thenReturn(new URI("https://example.com/test-bucket/video.mp4").toURL());
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().checksumCRC32C(HASH.crc32c()).build()));
+
+        String fileUrl = s3Service.uploadFileAsync(file, "video/mp4", "mp4", HASH, transferred -> {}).join();
+
+        assertEquals("https://example.com/test-bucket/video.mp4", fileUrl);
+        verify(s3AsyncClient, times(1)).putObject(argThat((PutObjectRequest request) ->
+                request.bucket().equals("test-bucket")
+                        && request.key().equals(HASH.sha256() + ".mp4")
+                        && request.contentType().equals("video/mp4")
+                        && request.checksumAlgorithm() == ChecksumAlgorithm.CRC32_C), any(AsyncRequestBody.class));
+        verifyNoInteractions(multipartUploader);
     }
 
     @Test
-    public void testUploadFileAndFetchFileUrlWhenThrowsException() throws Exception {
-        String originalFilename = "original-filename.txt";
-        when(file.getOriginalFilename()).thenReturn(originalFilename);
-        when(file.getInputStream()).thenThrow(new IOException("Mocked exception"));
+    public void testUploadFileAsyncWhenStoredChecksumDiffers(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("video.mp4"), "video content".getBytes());
+        when(s3Client.utilities().getUrl(any(GetUrlRequest.class)))
+                .thenReturn(new URI("https://example.com/test-bucket/video.mp4").toURL());
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().checksumCRC32C("AAAAAA==").build()));
+
+        var upload = s3Service.uploadFileAsync(file, "video/mp4", "mp4", HASH, transferred -> {});
+
+        var thrown = assertThrows(CompletionException.class, upload::join);
+        assertInstanceOf(FileUploadException.class, thrown.getCause());
+        verify(s3Client).deleteObject(argThat((DeleteObjectRequest request) -> request.key().equals(HASH.sha256() + ".mp4")));
+    }
 
-        Exception e = assertThrows(FileUploadException.class, () -> s3Service.uploadFileAndFetchFileUrl(file));
-        assertEquals("Failed to read file input stream", e.getMessage());
+    @Test
+    public void testCompleteChunkedUploadNumbersPartsInOrder() throws Exception {
+        when(s3Client.utilities().getUrl(any(GetUrlRequest.class)))
+                .thenReturn(new URI("https://example.com/test-bucket/video.mp4").toURL());
+
+        String fileUrl = s3Service.completeChunkedUpload("video.mp4", "upload-1", List.of("etag-1", "etag-2"));
+
+        assertEquals("https://example.com/test-bucket/video.mp4", fileUrl);
+        verify(s3Client).completeMultipartUpload(argThat((CompleteMultipartUploadRequest request) ->
+                request.uploadId().equals("upload-1")
+                        && request.multipartUpload().parts().equals(List.of(
+                                CompletedPart.builder().partNumber(1).eTag("etag-1").build(),
+                                CompletedPart.builder().partNumber(2).eTag("etag-2").build()))));
     }
 
     @Test
-    public void testDeleteFileFromS3() {
-        String fileUrl = "https://example.com/";
+    public void testUploadBytesAsyncWhenThrowsException() {
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().message("Mocked exception").build()));
 
-        s3Service.deleteFileFromS3(fileUrl);
+        var upload = s3Service.uploadBytesAsync(new byte[1], "image/jpeg");
 
-        verify(s3Client).deleteObject(DeleteObjectRequest.builder()
+        var thrown = assertThrows(CompletionException.class, upload::join);
+        assertInstanceOf(FileUploadException.class, thrown.getCause());
+        assertInstanceOf(S3Exception.class, thrown.getCause().getCause());
+    }
+
+    @Test
+    public void testTransferRangeReadsOnlyRequestedBytes() throws Exception {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().build(),
+                AbortableInputStream.create(new ByteArrayInputStream("2345".getBytes()))));
+        var out = new ByteArrayOutputStream();
+
+        s3Service.transferRange("https://example.com/test-bucket/video.mp4", 2, 4, Channels.newChannel(out));
+
+        assertEquals("2345", out.toString());
+        verify(s3Client).getObject(GetObjectRequest.builder()
                 .bucket("test-bucket")
-                .key(fileUrl)
+                .key("video.mp4")
+                .range("bytes=2-5")
                 .build());
     }
 
     @Test
-    public void testDeleteFileFromS3WhenThrowsException() {
-        String fileUrl = "https://example.com/";
+    public void testDeleteFile() {
+        s3Service.deleteFile("https://example.com/test-bucket/video.mp4");
 
+        verify(s3Client).deleteObject(DeleteObjectRequest.builder()
+                .bucket("test-bucket")
+                .key("video.mp4")
+                .build());
+    }
+
+    @Test
+    public void testDeleteFileWhenThrowsException() {
         doThrow(S3Exception.builder().message("S3 Error").build())
                 .when(s3Client)
                 .deleteObject(DeleteObjectRequest.builder()
                         .bucket("test-bucket")
-                        .key(fileUrl)
+                        .key("video.mp4")
                         .build());
 
-        assertThrows(FileDeletionException.class, () -> s3Service.deleteFileFromS3(fileUrl));
+        assertThrows(FileDeletionException.class, () -> s3Service.deleteFile("https://example.com/test-bucket/video.mp4"));
+    }
+
+    @Test
+    public void testDeleteFilesSendsBulkDeletesOfAtMostThousandKeys() {
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+        String[] fileUrls = IntStream.range(0, 1001)
+                .mapToObj(i -> "https://example.com/test-bucket/video-" + i + ".mp4")
+                .toArray(String[]::new);
+
+        s3Service.deleteFiles(fileUrls);
+
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3AsyncClient, times(2)).deleteObjects(requests.capture());
+        assertEquals(List.of(1000, 1), requests.getAllValues().stream()
+                .map(request -> request.delete().objects().size())
+                .toList());
+        assertEquals("video-0.mp4", requests.getAllValues().getFirst().delete().objects().getFirst().key());
+        assertEquals("test-bucket", requests.getAllValues().getFirst().bucket());
+    }
+
+    @Test
+    public void testDeleteFilesFailsWhenKeyIsNotDeleted() {
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("thumbnail.jpeg").code("AccessDenied").build())
+                        .build()));
+
+        var e = assertThrows(FileDeletionException.class, () -> s3Service.deleteFiles("video.mp4", "thumbnail.jpeg"));
+        assertTrue(e.getMessage().contains("thumbnail.jpeg (AccessDenied)"));
     }
 }
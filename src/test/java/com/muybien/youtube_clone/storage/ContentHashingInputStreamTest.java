@@ -0,0 +1,44 @@
+package com.muybien.youtube_clone.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentHashingInputStreamTest {
+
+    // SHA-256 and CRC32C of "video content"
+    private static final ContentHash HASH = new ContentHash(
+            "8b1026fe0fc95510d130d6ececa4462adb0995c7d77c5791703c45168ad43084", "OEFHOQ==", 13);
+
+    @Test
+    public void testHashesWhatIsCopied() throws Exception {
+        var in = new ContentHashingInputStream(new ByteArrayInputStream("video content".getBytes()));
+        var out = new ByteArrayOutputStream();
+
+        in.transferTo(out);
+
+        assertEquals("video content", out.toString());
+        assertEquals(HASH, in.hash());
+        assertEquals(HASH, in.hash());
+    }
+
+    @Test
+    public void testHashesSkippedAndSingleBytes() throws Exception {
+        var in = new ContentHashingInputStream(new ByteArrayInputStream("video content".getBytes()));
+
+        assertEquals('v', in.read());
+        assertEquals(5, in.skip(5));
+        in.readAllBytes();
+
+        assertEquals(HASH, in.hash());
+    }
+
+    @Test
+    public void testFileKey() {
+        assertEquals(HASH.sha256() + ".mp4", HASH.fileKey("mp4"));
+        assertEquals(HASH.sha256(), HASH.fileKey(null));
+    }
+}
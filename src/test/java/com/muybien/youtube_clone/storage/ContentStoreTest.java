@@ -0,0 +1,147 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileDeletionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ContentStoreTest {
+
+    private static final ContentHash HASH = new ContentHash("0f1e", "AAAAAA==", 13);
+    private static final String FILE_URL = "http://media/0f1e.mp4";
+
+    @Mock private BlobStorage blobStorage;
+    @Mock private ContentBlobRepository contentBlobRepository;
+    @Mock private PendingReleaseRepository pendingReleaseRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ContentStore contentStore;
+    private final Path file = Path.of("video.mp4");
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        contentStore = new ContentStore(blobStorage, contentBlobRepository, pendingReleaseRepository, meterRegistry);
+    }
+
+    @Test
+    public void testStoreUploadsNewContent() {
+        when(contentBlobRepository.addReference("0f1e")).thenReturn(0);
+        when(blobStorage.uploadFileAsync(eq(file), eq("video/mp4"), eq("mp4"), eq(HASH), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.completedFuture(FILE_URL));
+        when(contentBlobRepository.findById("0f1e")).thenReturn(Optional.of(blob(FILE_URL, 1)));
+
+        assertEquals(FILE_URL, contentStore.store(file, "video/mp4", "mp4", HASH, transferred -> {}).join());
+
+        verify(contentBlobRepository).insertOrAddReference("0f1e", FILE_URL, 13, "AAAAAA==");
+        verify(blobStorage, never()).deleteFile(anyString());
+    }
+
+    @Test
+    public void testStoreReusesStoredContent() {
+        when(contentBlobRepository.addReference("0f1e")).thenReturn(1);
+        when(contentBlobRepository.findById("0f1e")).thenReturn(Optional.of(blob(FILE_URL, 2)));
+        var transferred = new AtomicLong();
+
+        assertEquals(FILE_URL, contentStore.store(file, "video/mp4", "mp4", HASH, transferred::addAndGet).join());
+
+        assertEquals(13, transferred.get());
+        assertEquals(13, meterRegistry.counter("storage.dedup.bytes.saved").count());
+        verify(blobStorage, never()).uploadFileAsync(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testStoreKeepsContentStoredMeanwhileUnderAnotherExtension() {
+        when(contentBlobRepository.addReference("0f1e")).thenReturn(0);
+        when(blobStorage.uploadFileAsync(eq(file), eq("video/mp4"), eq("m4v"), eq(HASH), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://media/0f1e.m4v"));
+        when(contentBlobRepository.findById("0f1e")).thenReturn(Optional.of(blob(FILE_URL, 2)));
+
+        assertEquals(FILE_URL, contentStore.store(file, "video/mp4", "m4v", HASH, transferred -> {}).join());
+
+        verify(blobStorage).deleteFile("http://media/0f1e.m4v");
+    }
+
+    @Test
+    public void testReleaseDeletesOnlyUnreferencedFiles() {
+        ContentBlob shared = blob(FILE_URL, 2);
+        ContentBlob thumbnail = blob("http://media/1a2b.jpg", 1);
+        when(contentBlobRepository.findForUpdateByFileUrlIn(anyCollection())).thenReturn(List.of(shared, thumbnail));
+
+        contentStore.release(FILE_URL, "http://media/1a2b.jpg", "http://media/streamed.mp4");
+
+        assertEquals(1, shared.getRefCount());
+        verify(contentBlobRepository).delete(thumbnail);
+        verify(blobStorage).deleteFiles("http://media/1a2b.jpg", "http://media/streamed.mp4");
+    }
+
+    @Test
+    public void testReleaseCountsFileListedTwice() {
+        ContentBlob shared = blob(FILE_URL, 3);
+        when(contentBlobRepository.findForUpdateByFileUrlIn(Set.of(FILE_URL))).thenReturn(List.of(shared));
+
+        contentStore.release(FILE_URL, FILE_URL);
+
+        assertEquals(1, shared.getRefCount());
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testReleaseLaterOnlyQueues() {
+        contentStore.releaseLater(FILE_URL, "http://media/1a2b.jpg");
+
+        verify(pendingReleaseRepository).saveAll(argThat((List<PendingRelease> pending) ->
+                pending.stream().map(PendingRelease::getFileUrl).toList().equals(List.of(FILE_URL, "http://media/1a2b.jpg"))
+                        && pending.stream().allMatch(release -> release.getNextAttemptAt() != null)));
+        verifyNoInteractions(contentBlobRepository, blobStorage);
+    }
+
+    @Test
+    public void testReleasePendingReleasesAndRemovesLockedEntries() {
+        List<PendingRelease> pending = List.of(
+                PendingRelease.builder().id(1L).fileUrl(FILE_URL).build(),
+                PendingRelease.builder().id(2L).fileUrl("http://media/streamed.mp4").build());
+        when(pendingReleaseRepository.findForUpdateByIdIn(List.of(1L, 2L, 3L))).thenReturn(pending);
+        when(contentBlobRepository.findForUpdateByFileUrlIn(anyCollection())).thenReturn(List.of());
+
+        contentStore.releasePending(List.of(1L, 2L, 3L));
+
+        verify(blobStorage).deleteFiles(FILE_URL, "http://media/streamed.mp4");
+        verify(pendingReleaseRepository).deleteAllInBatch(pending);
+    }
+
+    @Test
+    public void testReleasePendingKeepsEntriesWhenDeleteFails() {
+        List<PendingRelease> pending = List.of(PendingRelease.builder().id(1L).fileUrl(FILE_URL).build());
+        when(pendingReleaseRepository.findForUpdateByIdIn(List.of(1L))).thenReturn(pending);
+        doThrow(new FileDeletionException("Failed to delete files", null)).when(blobStorage).deleteFiles(FILE_URL);
+
+        assertThrows(FileDeletionException.class, () -> contentStore.releasePending(List.of(1L)));
+        verify(pendingReleaseRepository, never()).deleteAllInBatch(any());
+    }
+
+    private static ContentBlob blob(String fileUrl, int refCount) {
+        return ContentBlob.builder()
+                .id("0f1e")
+                .fileUrl(fileUrl)
+                .size(13)
+                .crc32c("AAAAAA==")
+                .refCount(refCount)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.muybien.youtube_clone.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EdgeCachedBlobStorageTest {
+
+    private static final String VIDEO_URL = "http://bucket/video.mp4";
+    private static final String THUMBNAIL_URL = "http://bucket/thumbnail.png";
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @Mock private BlobStorage delegate;
+    @TempDir private Path cacheDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EdgeCachedBlobStorage storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        storage = new EdgeCachedBlobStorage(delegate, meterRegistry, cacheDir.resolve("edge"),
+                DataSize.ofBytes(4), DataSize.ofKilobytes(1), DataSize.ofKilobytes(1), 2);
+        storage.prepareCacheDir();
+
+        when(delegate.describe(anyString()))
+                .thenReturn(Optional.of(new BlobInfo(CONTENT.length, "\"v1\"", Instant.now())));
+        doAnswer(writeContent()).when(delegate).transferRange(anyString(), anyLong(), anyLong(), any(WritableByteChannel.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.shutdown();
+    }
+
+    @Test
+    public void testStartupRemovesOnlyLeftoverSegments() throws Exception {
+        Path configured = cacheDir.resolve("shared");
+        Path unrelated = Files.writeString(Files.createDirectories(configured).resolve("notes.txt"), "keep");
+        Path segments = Files.createDirectories(configured.resolve("segments"));
+        Path leftover = Files.writeString(segments.resolve("old.segment"), "0123");
+        Path foreign = Files.writeString(segments.resolve("other.txt"), "keep");
+
+        var restarted = new EdgeCachedBlobStorage(delegate, new SimpleMeterRegistry(), configured,
+                DataSize.ofBytes(4), DataSize.ofKilobytes(1), DataSize.ofKilobytes(1), 2);
+        try {
+            restarted.prepareCacheDir();
+        } finally {
+            restarted.shutdown();
+        }
+
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(unrelated));
+        assertTrue(Files.exists(foreign));
+    }
+
+    @Test
+    public void testVideoSegmentsAreFetchedOnceAndServedFromDisk() throws Exception {
+        assertEquals("234567", read(VIDEO_URL, 2, 6));
+        // the first read may already hit the segment filled ahead of it
+        double savedBefore = meterRegistry.counter("media.edge.bytes.saved", "tier", "disk").count();
+        assertEquals("234567", read(VIDEO_URL, 2, 6));
+        assertEquals("56", read(VIDEO_URL, 5, 2));
+
+        verify(delegate, times(1)).transferRange(eq(VIDEO_URL), eq(0L), eq(4L), any(WritableByteChannel.class));
+        verify(delegate, times(1)).transferRange(eq(VIDEO_URL), eq(4L), eq(4L), any(WritableByteChannel.class));
+        verify(delegate, times(1)).describe(VIDEO_URL);
+        assertEquals(savedBefore + 8, meterRegistry.counter("media.edge.bytes.saved", "tier", "disk").count());
+    }
+
+    @Test
+    public void testLastSegmentIsShorterThanSegmentSize() throws Exception {
+        assertEquals("89", read(VIDEO_URL, 8, 2));
+
+        verify(delegate).transferRange(eq(VIDEO_URL), eq(8L), eq(2L), any(WritableByteChannel.class));
+    }
+
+    @Test
+    public void testFailedFillFallsBackToStorage() throws Exception {
+        doThrow(new IOException("Connection reset"))
+                .doAnswer(writeContent())
+                .when(delegate).transferRange(eq(VIDEO_URL), eq(8L), eq(2L), any(WritableByteChannel.class));
+
+        assertEquals("89", read(VIDEO_URL, 8, 2));
+        verify(delegate, times(2)).transferRange(eq(VIDEO_URL), eq(8L), eq(2L), any(WritableByteChannel.class));
+    }
+
+    @Test
+    public void testImagesAreKeptWholeInMemory() throws Exception {
+        assertEquals("0123456789", read(THUMBNAIL_URL, 0, 10));
+        assertEquals("0123", read(THUMBNAIL_URL, 0, 4));
+
+        verify(delegate, times(1)).transferRange(eq(THUMBNAIL_URL), eq(0L), eq(10L), any(WritableByteChannel.class));
+        assertEquals(4, meterRegistry.counter("media.edge.bytes.saved", "tier", "memory").count());
+        assertEquals(10, meterRegistry.counter("media.edge.bytes.fetched", "tier", "memory").count());
+    }
+
+    @Test
+    public void testDeleteFileDropsCachedEntries() throws Exception {
+        read(VIDEO_URL, 0, 4);
+        read(THUMBNAIL_URL, 0, 10);
+
+        storage.deleteFiles(VIDEO_URL, THUMBNAIL_URL);
+        read(VIDEO_URL, 0, 4);
+        read(THUMBNAIL_URL, 0, 10);
+
+        verify(delegate).deleteFiles(VIDEO_URL, THUMBNAIL_URL);
+        verify(delegate, times(2)).transferRange(eq(VIDEO_URL), eq(0L), eq(4L), any(WritableByteChannel.class));
+        verify(delegate, times(2)).transferRange(eq(THUMBNAIL_URL), eq(0L), eq(10L), any(WritableByteChannel.class));
+    }
+
+    private String read(String fileUrl, long start, long length) throws IOException {
+        var out = new ByteArrayOutputStream();
+        storage.transferRange(fileUrl, start, length, Channels.newChannel(out));
+        return out.toString();
+    }
+
+    private static Answer<Void> writeContent() {
+        return invocation -> {
+            int start = Math.toIntExact(invocation.<Long>getArgument(1));
+            int length = Math.toIntExact(invocation.<Long>getArgument(2));
+            invocation.<WritableByteChannel>getArgument(3).write(ByteBuffer.wrap(CONTENT, start, length));
+            return null;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileFetchUrlException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+// Local storage stand-in that misbehaves on demand, for testing how callers
+// cope with a slow or failing backend. Every call first waits for latency,
+// then fails while failNext is positive or with probability failureRate, and
+// otherwise does the real work on a LocalFileSystemStorage.
+class FaultInjectingBlobStorage implements BlobStorage {
+
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger failNext = new AtomicInteger();
+    volatile Duration latency = Duration.ZERO;
+    volatile double failureRate;
+
+    private final LocalFileSystemStorage delegate;
+
+    FaultInjectingBlobStorage(LocalFileSystemStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFileAsync(Path file,
+                                                     String contentType,
+                                                     String extension,
+                                                     ContentHash hash,
+                                                     LongConsumer onTransferred) {
+        return delayed().thenCompose(ignored -> delegate.uploadFileAsync(file, contentType, extension, hash, onTransferred));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String contentType) {
+        return delayed().thenCompose(ignored -> delegate.uploadBytesAsync(bytes, contentType));
+    }
+
+    @Override
+    public String uploadStreamAndFetchFileUrl(InputStream in, String contentType) {
+        inject();
+        return delegate.uploadStreamAndFetchFileUrl(in, contentType);
+    }
+
+    @Override
+    public PresignedPut presignPut(String fileKey, String contentType, long size, String checksumSha256, Duration ttl) {
+        inject();
+        return delegate.presignPut(fileKey, contentType, size, checksumSha256, ttl);
+    }
+
+    @Override
+    public String startChunkedUpload(String fileKey, String contentType) {
+        inject();
+        return delegate.startChunkedUpload(fileKey, contentType);
+    }
+
+    @Override
+    public String uploadChunk(String fileKey, String uploadId, int chunkNumber, InputStream in, long length) {
+        inject();
+        return delegate.uploadChunk(fileKey, uploadId, chunkNumber, in, length);
+    }
+
+    @Override
+    public String completeChunkedUpload(String fileKey, String uploadId, List<String> chunkVersions) {
+        inject();
+        return delegate.completeChunkedUpload(fileKey, uploadId, chunkVersions);
+    }
+
+    @Override
+    public void abortChunkedUpload(String fileKey, String uploadId) {
+        inject();
+        delegate.abortChunkedUpload(fileKey, uploadId);
+    }
+
+    @Override
+    public Optional<StoredObject> findObject(String fileKey) {
+        inject();
+        return delegate.findObject(fileKey);
+    }
+
+    @Override
+    public Optional<BlobInfo> describe(String fileUrl) {
+        inject();
+        return delegate.describe(fileUrl);
+    }
+
+    @Override
+    public void transferRange(String fileUrl, long start, long length, WritableByteChannel target) throws IOException {
+        inject();
+        delegate.transferRange(fileUrl, start, length, target);
+    }
+
+    @Override
+    public String fetchFileUrl(String fileKey) {
+        return delegate.fetchFileUrl(fileKey);
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
+        inject();
+        delegate.deleteFile(fileUrl);
+    }
+
+    @Override
+    public void deleteFiles(String... fileUrls) {
+        inject();
+        delegate.deleteFiles(fileUrls);
+    }
+
+    private void inject() {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileFetchUrlException("Interrupted", e);
+        }
+        failIfDue();
+    }
+
+    private CompletableFuture<Void> delayed() {
+        calls.incrementAndGet();
+        return CompletableFuture.runAsync(this::failIfDue,
+                CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private void failIfDue() {
+        if (failNext.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0
+                || ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new FileFetchUrlException("Injected failure", new IOException("Connection reset"));
+        }
+    }
+}
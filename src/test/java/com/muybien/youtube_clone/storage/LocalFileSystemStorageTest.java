@@ -0,0 +1,153 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.StorageOperationNotSupportedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalFileSystemStorageTest {
+
+    private static final String PUBLIC_URL = "http://localhost:8080/api/v1/media";
+
+    @TempDir private Path rootDir;
+    @TempDir private Path sourceDir;
+
+    private LocalFileSystemStorage storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        storage = new LocalFileSystemStorage(rootDir, PUBLIC_URL + "/", 2);
+        storage.prepareRootDir();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.shutdown();
+    }
+
+    @Test
+    public void testUploadFileAsyncCopiesFileAndReportsProgress() throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024];
+        content[content.length - 1] = 42;
+        Path source = Files.write(sourceDir.resolve("video.mp4"), content);
+        var transferred = new AtomicLong();
+
+        var hash = new ContentHash("0f1e", "AAAAAA==", content.length);
+
+        String fileUrl = storage.uploadFileAsync(source, "video/mp4", "mp4", hash, transferred::addAndGet).join();
+
+        assertEquals(PUBLIC_URL + "/0f1e.mp4", fileUrl);
+        assertArrayEquals(content, Files.readAllBytes(rootDir.resolve(keyOf(fileUrl))));
+        assertEquals(content.length, transferred.get());
+        assertOnlyStoredFile(keyOf(fileUrl));
+    }
+
+    @Test
+    public void testUploadStreamAndFindObject() throws Exception {
+        byte[] content = "video content".getBytes();
+
+        String fileUrl = storage.uploadStreamAndFetchFileUrl(new ByteArrayInputStream(content), "video/mp4");
+
+        String checksum = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(Optional.of(new StoredObject(content.length, checksum)), storage.findObject(keyOf(fileUrl)));
+        assertEquals(Optional.empty(), storage.findObject("missing.mp4"));
+    }
+
+    @Test
+    public void testDescribeAndTransferRange() throws Exception {
+        String fileUrl = storage.uploadBytesAsync("0123456789".getBytes(), "video/mp4").join();
+        var out = new ByteArrayOutputStream();
+
+        storage.transferRange(fileUrl, 2, 4, Channels.newChannel(out));
+
+        assertEquals("2345", out.toString());
+        BlobInfo blob = storage.describe(fileUrl).orElseThrow();
+        assertEquals(10, blob.size());
+        assertEquals(Files.getLastModifiedTime(rootDir.resolve(keyOf(fileUrl))).toInstant(), blob.lastModified());
+        assertTrue(blob.eTag().startsWith("\"a-"));
+        assertEquals(Optional.empty(), storage.describe(PUBLIC_URL + "/missing.mp4"));
+    }
+
+    @Test
+    public void testDeleteFilesByUrlOrKey() throws Exception {
+        String videoUrl = storage.uploadBytesAsync("video".getBytes(), "video/mp4").join();
+        String thumbnailUrl = storage.uploadBytesAsync("thumbnail".getBytes(), "image/jpeg").join();
+
+        storage.deleteFiles(videoUrl, keyOf(thumbnailUrl), "already-gone.jpeg");
+
+        try (var stored = Files.list(rootDir)) {
+            assertEquals(0, stored.count());
+        }
+    }
+
+    @Test
+    public void testRejectsKeysOutsideRootDir() {
+        assertThrows(InvalidFileUrlException.class, () -> storage.findObject("../secret.txt"));
+        assertThrows(InvalidFileUrlException.class, () -> storage.deleteFile(PUBLIC_URL + "/nested/file.mp4"));
+        assertThrows(InvalidFileUrlException.class, () -> storage.resolve(".upload-123.part"));
+    }
+
+    @Test
+    public void testPresignPutIsNotSupported() {
+        assertThrows(StorageOperationNotSupportedException.class, () ->
+                storage.presignPut("video.mp4", "video/mp4", 1, "checksum", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    public void testChunkedUploadConcatenatesChunksInOrder() throws Exception {
+        String uploadId = storage.startChunkedUpload("video.mp4", "video/mp4");
+
+        String second = storage.uploadChunk("video.mp4", uploadId, 2, new ByteArrayInputStream("6789".getBytes()), 4);
+        storage.uploadChunk("video.mp4", uploadId, 1, new ByteArrayInputStream("xxxxxx".getBytes()), 6);
+        // a chunk sent again replaces the earlier one
+        String first = storage.uploadChunk("video.mp4", uploadId, 1, new ByteArrayInputStream("012345".getBytes()), 6);
+        String fileUrl = storage.completeChunkedUpload("video.mp4", uploadId, List.of(first, second));
+
+        assertEquals(PUBLIC_URL + "/video.mp4", fileUrl);
+        assertEquals("0123456789", Files.readString(rootDir.resolve("video.mp4")));
+        assertOnlyStoredFile("video.mp4");
+    }
+
+    @Test
+    public void testShortChunkIsRejectedAndAbortRemovesChunks() throws Exception {
+        String uploadId = storage.startChunkedUpload("video.mp4", "video/mp4");
+        storage.uploadChunk("video.mp4", uploadId, 1, new ByteArrayInputStream("0123".getBytes()), 4);
+
+        assertThrows(FileUploadException.class, () ->
+                storage.uploadChunk("video.mp4", uploadId, 2, new ByteArrayInputStream("45".getBytes()), 4));
+        storage.abortChunkedUpload("video.mp4", uploadId);
+
+        try (var stored = Files.list(rootDir)) {
+            assertEquals(List.of(), stored.toList());
+        }
+        assertThrows(InvalidFileUrlException.class, () -> storage.abortChunkedUpload("video.mp4", "../x"));
+    }
+
+    private String keyOf(String fileUrl) {
+        return fileUrl.substring(PUBLIC_URL.length() + 1);
+    }
+
+    // no temporary file is left next to the stored one
+    private void assertOnlyStoredFile(String fileKey) throws Exception {
+        try (var stored = Files.list(rootDir)) {
+            assertEquals(List.of(rootDir.resolve(fileKey)), stored.toList());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.config.JwtService;
+import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.token.TokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(MediaController.class)
+@TestPropertySource(properties = "storage.backend=local")
+public class MediaControllerTest {
+
+    @MockBean private LocalFileSystemStorage localFileSystemStorage;
+    @MockBean private JwtService jwtService;
+    @MockBean private TokenRepository tokenRepository;
+    @Autowired private MockMvc mockMvc;
+
+    @TempDir private Path rootDir;
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testDownload() throws Exception {
+        Path file = Files.write(rootDir.resolve("thumbnail.jpeg"), "thumbnail".getBytes());
+        when(localFileSystemStorage.resolve("thumbnail.jpeg")).thenReturn(file);
+
+        mockMvc.perform(get("/media/thumbnail.jpeg"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(header().longValue("Content-Length", 9))
+                .andExpect(content().string("thumbnail"));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testDownloadMissingOrInvalidFile() throws Exception {
+        when(localFileSystemStorage.resolve("missing.mp4")).thenReturn(rootDir.resolve("missing.mp4"));
+        when(localFileSystemStorage.resolve(".upload-1.part")).thenThrow(new InvalidFileUrlException("Invalid file key"));
+
+        mockMvc.perform(get("/media/missing.mp4"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/media/.upload-1.part"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+}
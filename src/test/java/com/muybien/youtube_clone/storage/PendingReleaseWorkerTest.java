@@ -0,0 +1,78 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileDeletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PendingReleaseWorkerTest {
+
+    @Mock private ContentStore contentStore;
+    @Mock private PendingReleaseRepository pendingReleaseRepository;
+
+    private PendingReleaseWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        worker = new PendingReleaseWorker(contentStore, pendingReleaseRepository, 2,
+                Duration.ofMinutes(1), Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void testReleasesDueEntriesInBatches() {
+        when(pendingReleaseRepository.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(LocalDateTime.class), eq(Limit.of(2))))
+                .thenReturn(List.of(pending(1L, 0), pending(2L, 0)))
+                .thenReturn(List.of(pending(3L, 0)));
+
+        worker.releasePending();
+
+        verify(contentStore).releasePending(List.of(1L, 2L));
+        verify(contentStore).releasePending(List.of(3L));
+        verify(pendingReleaseRepository, never()).postpone(anyLong(), anyInt(), any());
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedOneByOneAndOnlyFailuresPostponed() {
+        when(pendingReleaseRepository.findByNextAttemptAtBeforeOrderByNextAttemptAt(any(LocalDateTime.class), eq(Limit.of(2))))
+                .thenReturn(List.of(pending(1L, 0), pending(2L, 2)))
+                .thenReturn(List.of());
+        var failure = new FileDeletionException("Failed to delete files", null);
+        doThrow(failure).when(contentStore).releasePending(List.of(1L, 2L));
+        doThrow(failure).when(contentStore).releasePending(List.of(2L));
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.releasePending();
+
+        verify(contentStore).releasePending(List.of(1L));
+        verify(pendingReleaseRepository, never()).postpone(eq(1L), anyInt(), any());
+        verify(pendingReleaseRepository).postpone(eq(2L), eq(3), argThat(next -> !next.isBefore(before.plusMinutes(4))));
+    }
+
+    @Test
+    public void testBackoffDoublesUpToMaximum() {
+        assertEquals(Duration.ofMinutes(1), worker.backoffAfter(1));
+        assertEquals(Duration.ofMinutes(4), worker.backoffAfter(3));
+        assertEquals(Duration.ofMinutes(5), worker.backoffAfter(4));
+        assertEquals(Duration.ofMinutes(5), worker.backoffAfter(100));
+    }
+
+    private static PendingRelease pending(Long id, int attempts) {
+        return PendingRelease.builder()
+                .id(id)
+                .fileUrl("http://media/" + id + ".mp4")
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package com.muybien.youtube_clone.storage;
+
+import com.muybien.youtube_clone.handler.FileFetchUrlException;
+import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.StorageUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResilientBlobStorageTest {
+
+    private static final String PUBLIC_URL = "http://localhost:8080/api/v1/media";
+    private static final Duration METADATA_TIMEOUT = Duration.ofMillis(200);
+
+    @TempDir private Path rootDir;
+
+    private LocalFileSystemStorage local;
+    private FaultInjectingBlobStorage faulty;
+    private SimpleMeterRegistry meterRegistry;
+    private ResilientBlobStorage storage;
+    private String fileUrl;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        local = new LocalFileSystemStorage(rootDir, PUBLIC_URL, 2);
+        local.prepareRootDir();
+        fileUrl = local.uploadBytesAsync("0123456789".getBytes(), "video/mp4").join();
+        faulty = new FaultInjectingBlobStorage(local);
+        meterRegistry = new SimpleMeterRegistry();
+        storage = resilient(4, new CircuitBreaker(4, 50, Duration.ofMillis(300)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        local.shutdown();
+    }
+
+    @Test
+    public void testSlowCallTimesOutWithoutWaitingForBackend() {
+        faulty.latency = Duration.ofSeconds(5);
+
+        long started = System.nanoTime();
+        assertThrows(StorageUnavailableException.class, () -> storage.findObject(keyOf(fileUrl)));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(3, meterRegistry.counter("storage.calls", "operation", "findObject", "outcome", "timeout").count());
+    }
+
+    @Test
+    public void testTransientFailureIsRetried() {
+        faulty.failNext.set(2);
+
+        assertEquals(10, storage.describe(fileUrl).orElseThrow().size());
+        assertEquals(3, faulty.calls.get());
+    }
+
+    @Test
+    public void testBreakerOpensAndFailsFastThenRecovers() throws Exception {
+        faulty.failureRate = 1;
+        assertThrows(FileFetchUrlException.class, () -> storage.deleteFile(fileUrl));
+        // the fourth failure fills the window and opens the breaker, the retry after it is refused
+        assertThrows(StorageUnavailableException.class, () -> storage.deleteFile(fileUrl));
+        assertEquals(4, faulty.calls.get());
+
+        var e = assertThrows(StorageUnavailableException.class, () -> storage.describe(fileUrl));
+        assertEquals("Storage is unavailable, try again later.", e.getMessage());
+        assertEquals(4, faulty.calls.get());
+
+        faulty.failureRate = 0;
+        Thread.sleep(350);
+        assertTrue(storage.describe(fileUrl).isPresent());
+        assertTrue(storage.describe(fileUrl).isPresent());
+    }
+
+    @Test
+    public void testBulkheadRejectsCallsBeyondLimit() {
+        storage = resilient(1, new CircuitBreaker(20, 50, Duration.ofSeconds(30)));
+        faulty.latency = Duration.ofMillis(150);
+        CompletableFuture<Void> busy = CompletableFuture.runAsync(() -> storage.describe(fileUrl));
+        sleepUntil(() -> faulty.calls.get() == 1);
+
+        var e = assertThrows(StorageUnavailableException.class, () -> storage.describe(fileUrl));
+
+        assertEquals("Storage is busy, try again later.", e.getMessage());
+        busy.join();
+        assertEquals(1, faulty.calls.get());
+    }
+
+    @Test
+    public void testCallerErrorsDontOpenBreaker() {
+        for (int i = 0; i < 6; i++) {
+            assertThrows(InvalidFileUrlException.class, () -> storage.deleteFile(PUBLIC_URL + "/../outside"));
+        }
+
+        assertTrue(storage.describe(fileUrl).isPresent());
+        assertEquals(7, faulty.calls.get());
+    }
+
+    @Test
+    public void testViewerHangupsDontOpenBreakerOrHoldPermits() throws Exception {
+        storage = resilient(1, new CircuitBreaker(4, 50, Duration.ofSeconds(30)));
+        WritableByteChannel hungUp = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        for (int i = 0; i < 6; i++) {
+            assertThrows(IOException.class, () -> storage.transferRange(fileUrl, 0, 10, hungUp));
+        }
+
+        assertTrue(storage.describe(fileUrl).isPresent());
+        var received = new ByteArrayOutputStream();
+        storage.transferRange(fileUrl, 2, 5, Channels.newChannel(received));
+        assertEquals("23456", received.toString());
+    }
+
+    @Test
+    public void testRangeIsReadWithOneBackendCall() throws Exception {
+        byte[] video = new byte[3 * 1024 * 1024 + 5];
+        video[video.length - 1] = 7;
+        String videoUrl = local.uploadBytesAsync(video, "video/mp4").join();
+        var received = new ByteArrayOutputStream();
+
+        storage.transferRange(videoUrl, 0, video.length, Channels.newChannel(received));
+
+        assertArrayEquals(video, received.toByteArray());
+        assertEquals(1, faulty.calls.get());
+    }
+
+    @Test
+    public void testStalledViewerTimesOutWithoutOpeningBreaker() throws Exception {
+        storage = new ResilientBlobStorage(faulty, meterRegistry, METADATA_TIMEOUT, Duration.ofMillis(100), 1,
+                Duration.ofMillis(50), 3, Duration.ofMillis(1), Duration.ofMillis(10),
+                new CircuitBreaker(4, 50, Duration.ofSeconds(30)));
+        WritableByteChannel stalled = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                try {
+                    Thread.sleep(Duration.ofSeconds(5));
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted", e);
+                }
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        for (int i = 0; i < 6; i++) {
+            assertThrows(StorageUnavailableException.class, () -> storage.transferRange(fileUrl, 0, 10, stalled));
+        }
+
+        assertTrue(storage.describe(fileUrl).isPresent());
+        assertEquals(0, meterRegistry.counter("storage.calls", "operation", "transferRange", "outcome", "timeout").count());
+    }
+
+    @Test
+    public void testSlowAsyncUploadTimesOut() {
+        faulty.latency = Duration.ofSeconds(5);
+        storage = new ResilientBlobStorage(faulty, meterRegistry, METADATA_TIMEOUT, Duration.ofMillis(200), 4,
+                Duration.ofMillis(50), 3, Duration.ofMillis(1), Duration.ofMillis(10), new CircuitBreaker(4, 50, Duration.ofSeconds(30)));
+
+        var e = assertThrows(CompletionException.class, () -> storage.uploadBytesAsync(new byte[10], "image/png").join());
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    private ResilientBlobStorage resilient(int maxConcurrentCalls, CircuitBreaker circuitBreaker) {
+        return new ResilientBlobStorage(faulty, meterRegistry, METADATA_TIMEOUT, Duration.ofSeconds(10), maxConcurrentCalls,
+                Duration.ofMillis(50), 3, Duration.ofMillis(1), Duration.ofMillis(10), circuitBreaker);
+    }
+
+    private static String keyOf(String fileUrl) {
+        return fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
+    }
+
+    private static void sleepUntil(java.util.function.BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
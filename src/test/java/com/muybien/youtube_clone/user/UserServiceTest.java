@@ -55,73 +55,6 @@ class UserServiceTest {
         verify(userRepository, times(1)).save(any(User.class));
     }
 
-    @Test
-    public void testAddVideoToLikedVideos() {
-        int videoId = 1;
-
-        userService.addVideoToLikedVideos(videoId, connectedUser);
-
-        verify(user, times(1)).addVideoToLikedVideos(videoId);
-        verify(user, never()).removeVideoFromLikedVideos(videoId);
-        verify(userRepository, times(1)).save(user);
-
-    }
-
-    @Test
-    public void testRemoveVideoFromLikedVideos() {
-        int videoId = 1;
-
-        userService.removeVideoFromLikedVideos(videoId, connectedUser);
-
-        verify(user, times(1)).removeVideoFromLikedVideos(videoId);
-        verify(user, never()).addVideoToLikedVideos(videoId);
-        verify(userRepository, times(1)).save(user);
-    }
-
-    @Test
-    public void testAddVideoToDisLikedVideos() {
-        int videoId = 1;
-
-        userService.addVideoToDisLikedVideos(videoId, connectedUser);
-
-        verify(user, times(1)).addVideoToDisLikedVideos(videoId);
-        verify(user, never()).removeVideoFromDisLikedVideos(videoId);
-        verify(userRepository, times(1)).save(user);
-    }
-
-    @Test
-    public void testRemoveVideoFromDisLikedVideos() {
-        int videoId = 1;
-
-        userService.removeVideoFromDisLikedVideos(videoId, connectedUser);
-
-        verify(user, times(1)).removeVideoFromDisLikedVideos(videoId);
-        verify(user, never()).addVideoToDisLikedVideos(videoId);
-        verify(userRepository, times(1)).save(user);
-    }
-
-    @Test
-    public void testIsVideoLikedByUser() {
-        int videoId = 1;
-
-        when(user.getLikedVideos()).thenReturn(Set.of(videoId));
-
-        boolean result = userService.isVideoLikedByUser(videoId, connectedUser);
-
-        assertTrue(result);
-    }
-
-    @Test
-    public void testIsVideoDisLikedByUser() {
-        int videoId = 1;
-
-        when(user.getDisLikedVideos()).thenReturn(Set.of(videoId));
-
-        boolean result = userService.isVideoDisLikedByUser(videoId, connectedUser);
-
-        assertTrue(result);
-    }
-
     @Test
     public void testGetUserVideosHistory() {
         // method returns reversed LinkedList to obtain
@@ -0,0 +1,203 @@
+package com.muybien.youtube_clone.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp4FileTest {
+
+    private static final long MAX_MOOV_SIZE = 1024 * 1024;
+    // chunks start at "0" and "5" of the media data
+    private static final byte[] MEDIA = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final int IDENTITY = 0x00010000;
+
+    @TempDir private Path dir;
+
+    @Test
+    public void testReadsMetadataFromVideoTrack() throws Exception {
+        try (FileChannel channel = open(movie(true, false, IDENTITY, 0))) {
+            Mp4File mp4 = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow();
+
+            assertEquals(new VideoMetadata(12_345L, 1920, 1080, "avc1.64001f"), mp4.metadata());
+        }
+    }
+
+    @Test
+    public void testSwapsDisplaySizeOfQuarterTurnedTrack() throws Exception {
+        try (FileChannel channel = open(movie(true, false, 0, IDENTITY))) {
+            VideoMetadata metadata = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow().metadata();
+
+            assertEquals(1080, metadata.width());
+            assertEquals(1920, metadata.height());
+        }
+    }
+
+    @Test
+    public void testFastStartMovesMoovInFrontAndShiftsChunkOffsets() throws Exception {
+        for (boolean wide : new boolean[]{false, true}) {
+            Path rewritten;
+            try (FileChannel channel = open(movie(true, wide, IDENTITY, 0))) {
+                Mp4File mp4 = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow();
+                assertFalse(mp4.isFastStart());
+                try (InputStream in = mp4.fastStart().orElseThrow()) {
+                    rewritten = Files.write(dir.resolve("rewritten-" + wide + ".mp4"), in.readAllBytes());
+                }
+            }
+
+            byte[] bytes = Files.readAllBytes(rewritten);
+            assertEquals(Files.size(dir.resolve("movie.mp4")), bytes.length);
+            assertEquals("moov", new String(bytes, 28, 4, StandardCharsets.US_ASCII));
+            long[] offsets = chunkOffsets(bytes, wide);
+            assertEquals('0', bytes[(int) offsets[0]]);
+            assertEquals('5', bytes[(int) offsets[1]]);
+            try (FileChannel channel = FileChannel.open(rewritten)) {
+                Mp4File mp4 = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow();
+                assertTrue(mp4.isFastStart());
+                assertEquals(Optional.empty(), mp4.fastStart());
+            }
+        }
+    }
+
+    @Test
+    public void testLeavesFastStartFileAlone() throws Exception {
+        try (FileChannel channel = open(movie(false, false, IDENTITY, 0))) {
+            Mp4File mp4 = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow();
+
+            assertTrue(mp4.isFastStart());
+            assertEquals(Optional.empty(), mp4.fastStart());
+            assertEquals(12_345L, mp4.metadata().durationMillis());
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFilesAndOversizedMoov() throws Exception {
+        try (FileChannel channel = open("video content".getBytes())) {
+            assertEquals(Optional.empty(), Mp4File.read(channel, MAX_MOOV_SIZE));
+        }
+        byte[] truncated = movie(true, false, IDENTITY, 0);
+        try (FileChannel channel = open(Arrays.copyOf(truncated, truncated.length - 1))) {
+            assertEquals(Optional.empty(), Mp4File.read(channel, MAX_MOOV_SIZE));
+        }
+        try (FileChannel channel = open(movie(true, false, IDENTITY, 0))) {
+            assertEquals(Optional.empty(), Mp4File.read(channel, 64));
+        }
+    }
+
+    @Test
+    public void testReadsMovieWithEmptyHeaderBoxes() throws Exception {
+        byte[] movie = movie(false, false, IDENTITY, 0);
+        String text = new String(movie, StandardCharsets.ISO_8859_1);
+        // mvhd and tkhd cut down to their 8-byte headers, the rest of moov
+        // shifted up and its size fixed to match
+        for (String type : new String[]{"mvhd", "tkhd"}) {
+            int header = text.indexOf(type) - 4;
+            int size = ByteBuffer.wrap(movie).getInt(header);
+            byte[] cut = concat(Arrays.copyOf(movie, header), ints(8), type.getBytes(StandardCharsets.US_ASCII),
+                    Arrays.copyOfRange(movie, header + size, movie.length));
+            ByteBuffer.wrap(cut).putInt(24, ByteBuffer.wrap(cut).getInt(24) - size + 8);
+            if (type.equals("tkhd")) {
+                int trak = text.indexOf("trak") - 4;
+                ByteBuffer.wrap(cut).putInt(trak, ByteBuffer.wrap(cut).getInt(trak) - size + 8);
+            }
+
+            try (FileChannel channel = open(cut)) {
+                VideoMetadata metadata = Mp4File.read(channel, MAX_MOOV_SIZE).orElseThrow().metadata();
+
+                // the coded size stands in for the missing track header
+                assertEquals(type.equals("mvhd") ? null : 12_345L, metadata.durationMillis());
+                assertEquals(1920, metadata.width());
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptedMoovIsNeverMoreThanUnparseable() throws Exception {
+        byte[] movie = movie(false, false, IDENTITY, 0);
+        var random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            byte[] corrupted = movie.clone();
+            for (int flips = 1 + random.nextInt(4); flips > 0; flips--) {
+                // inside moov, past its own header
+                corrupted[32 + random.nextInt(movie.length - 32 - MEDIA.length - 8)] = (byte) random.nextInt();
+            }
+
+            try (FileChannel channel = open(corrupted)) {
+                assertDoesNotThrow(() -> Mp4File.read(channel, MAX_MOOV_SIZE), "iteration " + i);
+            }
+        }
+    }
+
+    // ftyp, mdat and moov, with moov last or right after ftyp
+    static byte[] movie(boolean moovAtEnd, boolean wideOffsets, int matrixA, int matrixB) {
+        byte[] ftyp = box("ftyp", "isom".getBytes(), ints(0x200), "isomavc1".getBytes());
+        byte[] mdat = box("mdat", MEDIA);
+        int moovSize = moov(wideOffsets, 0, matrixA, matrixB).length;
+        int mediaStart = ftyp.length + (moovAtEnd ? 0 : moovSize) + 8;
+        byte[] moov = moov(wideOffsets, mediaStart, matrixA, matrixB);
+        return moovAtEnd ? concat(ftyp, mdat, moov) : concat(ftyp, moov, mdat);
+    }
+
+    private static byte[] moov(boolean wideOffsets, long mediaStart, int matrixA, int matrixB) {
+        byte[] mvhd = box("mvhd", ints(0, 0, 0, 1000, 12_345), new byte[80]);
+        ByteBuffer tkhd = ByteBuffer.allocate(84);
+        tkhd.putInt(40, matrixA).putInt(44, matrixB).putInt(76, 1920 << 16).putInt(80, 1080 << 16);
+        byte[] hdlr = box("hdlr", ints(0, 0), "vide".getBytes(), new byte[13]);
+        ByteBuffer visual = ByteBuffer.allocate(78);
+        visual.putShort(24, (short) 1920).putShort(26, (short) 1080);
+        byte[] avc1 = box("avc1", visual.array(), box("avcC", new byte[]{1, 0x64, 0x00, 0x1f}));
+        byte[] stsd = box("stsd", ints(0, 1), avc1);
+        byte[] offsets = wideOffsets
+                ? box("co64", ints(0, 2), ByteBuffer.allocate(16).putLong(mediaStart).putLong(mediaStart + 5).array())
+                : box("stco", ints(0, 2, (int) mediaStart, (int) mediaStart + 5));
+        byte[] stbl = box("stbl", stsd, offsets);
+        byte[] mdia = box("mdia", hdlr, box("minf", stbl));
+        return box("moov", mvhd, box("trak", box("tkhd", tkhd.array()), mdia));
+    }
+
+    private static long[] chunkOffsets(byte[] file, boolean wide) {
+        String type = wide ? "co64" : "stco";
+        String text = new String(file, StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        int entries = text.indexOf(type) + 4 + 8;
+        return wide
+                ? new long[]{buffer.getLong(entries), buffer.getLong(entries + 8)}
+                : new long[]{buffer.getInt(entries), buffer.getInt(entries + 4)};
+    }
+
+    private FileChannel open(byte[] content) throws Exception {
+        return FileChannel.open(Files.write(dir.resolve("movie.mp4"), content));
+    }
+
+    private static byte[] box(String type, byte[]... parts) {
+        byte[] content = concat(parts);
+        return concat(ints(content.length + 8), type.getBytes(StandardCharsets.US_ASCII), content);
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        var out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
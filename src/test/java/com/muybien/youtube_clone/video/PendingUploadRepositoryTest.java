@@ -0,0 +1,54 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.PresignedPut;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// against a real schema, so the columns the service leaves unset are caught
+@DataJpaTest
+public class PendingUploadRepositoryTest {
+
+    private static final String CHECKSUM = "a".repeat(43) + "=";
+
+    @Autowired private PendingUploadRepository pendingUploadRepository;
+    @Autowired private TestEntityManager entityManager;
+
+    @Test
+    public void testIssuedUploadIsStored() {
+        BlobStorage blobStorage = mock(BlobStorage.class);
+        when(blobStorage.newFileKey(anyString())).thenAnswer(invocation -> "key." + invocation.getArgument(0));
+        when(blobStorage.presignPut(anyString(), anyString(), anyLong(), anyString(), any(Duration.class)))
+                .thenReturn(new PresignedPut("http://bucket/signed", Map.of(), Instant.now()));
+        Authentication connectedUser = mock(Authentication.class);
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+        var service = new VideoPresignedUploadService(mock(VideoService.class), blobStorage, pendingUploadRepository,
+                Duration.ofMinutes(15), Duration.ofHours(1), DataSize.ofMegabytes(100));
+
+        var response = service.issue(new PresignedUploadRequest("Title", "Description",
+                new PresignedUploadRequest.DeclaredFile("video/mp4", 1000, CHECKSUM),
+                new PresignedUploadRequest.DeclaredFile("image/jpeg", 100, CHECKSUM)), connectedUser);
+        entityManager.flush();
+        entityManager.clear();
+
+        PendingUpload stored = pendingUploadRepository.findForUpdateByIdAndUserId(response.uploadId(), 7).orElseThrow();
+        assertEquals("key.mp4", stored.getVideoKey());
+        assertEquals(1, pendingUploadRepository.findByExpiresAtBefore(
+                LocalDateTime.now().plusHours(2), Limit.of(10)).size());
+    }
+}
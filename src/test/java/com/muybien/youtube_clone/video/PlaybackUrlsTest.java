@@ -0,0 +1,44 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.config.UrlSigner;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlaybackUrlsTest {
+
+    private static final String LOCAL_MEDIA_URL = "http://localhost:8080/api/v1/media";
+
+    private final UrlSigner urlSigner =
+            new UrlSigner("secret", "", "http://localhost:8080/api/v1", Duration.ofHours(1), Duration.ofMinutes(5));
+
+    @Test
+    public void testSignsLocalMediaUrlOfUpload() {
+        var playbackUrls = new PlaybackUrls(urlSigner, "local", LOCAL_MEDIA_URL);
+
+        String videoUrl = playbackUrls.forUpload(new VideoUploadResponse(LOCAL_MEDIA_URL + "/video.mp4")).videoUrl();
+
+        UriComponents signed = UriComponentsBuilder.fromUriString(videoUrl).build();
+        assertEquals("/api/v1/media/video.mp4", signed.getPath());
+        assertTrue(urlSigner.verify("/media/video.mp4",
+                signed.getQueryParams().getFirst(UrlSigner.EXPIRES_PARAM),
+                signed.getQueryParams().getFirst(UrlSigner.SIGNATURE_PARAM)).isPresent());
+    }
+
+    @Test
+    public void testLeavesOtherStorageUrlsAlone() {
+        var s3 = new PlaybackUrls(urlSigner, "s3", LOCAL_MEDIA_URL);
+        var local = new PlaybackUrls(urlSigner, "local", LOCAL_MEDIA_URL);
+        var status = VideoIngestStatus.builder().jobId("job-1").stage(VideoIngestStage.QUEUED).build();
+
+        assertEquals("https://bucket.s3.amazonaws.com/video.mp4",
+                s3.forUpload(new VideoUploadResponse("https://bucket.s3.amazonaws.com/video.mp4")).videoUrl());
+        assertEquals(LOCAL_MEDIA_URL + "/video.mp4",
+                s3.forUpload(new VideoUploadResponse(LOCAL_MEDIA_URL + "/video.mp4")).videoUrl());
+        assertSame(status, local.forIngest(status));
+    }
+}
@@ -0,0 +1,59 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// against a real schema in MySQL mode, for the native chunk upsert
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:resumable;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class ResumableUploadRepositoryTest {
+
+    @Autowired private ResumableUploadRepository resumableUploadRepository;
+    @Autowired private TestEntityManager entityManager;
+
+    @Test
+    public void testStartedUploadIsStoredWithItsChunks() {
+        BlobStorage blobStorage = mock(BlobStorage.class);
+        when(blobStorage.newFileKey("mp4")).thenReturn("video.mp4");
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg")))
+                .thenReturn(CompletableFuture.completedFuture("http://bucket/thumbnail.jpeg"));
+        when(blobStorage.startChunkedUpload("video.mp4", "video/mp4")).thenReturn("storage-upload-1");
+        Authentication connectedUser = mock(Authentication.class);
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+        var service = new VideoResumableUploadService(mock(VideoService.class), blobStorage, resumableUploadRepository,
+                DataSize.ofMegabytes(5), Duration.ofHours(1), DataSize.ofMegabytes(100));
+
+        var status = service.start(new ResumableUploadRequest(
+                new MockMultipartFile("thumbnail", "thumbnail.jpeg", "image/jpeg", new byte[]{1, 2, 3}),
+                "Title", "Description", "video/mp4", 6 * 1024 * 1024), connectedUser);
+        entityManager.flush();
+        resumableUploadRepository.recordChunk(status.uploadId(), 2, "etag-2");
+        resumableUploadRepository.recordChunk(status.uploadId(), 2, "etag-2b");
+        entityManager.clear();
+
+        ResumableUpload stored = resumableUploadRepository.findForUpdateByIdAndUserId(status.uploadId(), 7).orElseThrow();
+        assertEquals("storage-upload-1", stored.getStorageUploadId());
+        assertEquals(2, stored.chunkCount());
+        assertEquals(Map.of(2, "etag-2b"), stored.getChunks());
+    }
+}
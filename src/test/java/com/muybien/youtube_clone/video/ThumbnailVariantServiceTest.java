@@ -0,0 +1,99 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ThumbnailVariantServiceTest {
+
+    @Mock private BlobStorage blobStorage;
+    @TempDir private Path dir;
+
+    private ThumbnailVariantService thumbnailVariantService;
+    private final List<BufferedImage> uploaded = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        thumbnailVariantService = new ThumbnailVariantService(blobStorage, new int[]{640, 160, 320, 1280}, 2, 2);
+
+        var uploads = new AtomicInteger();
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg"))).thenAnswer(invocation -> {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(invocation.getArgument(0)));
+            uploaded.add(image);
+            return CompletableFuture.completedFuture("http://bucket/variant-" + image.getWidth() + "-" + uploads.incrementAndGet());
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        thumbnailVariantService.shutdown();
+    }
+
+    @Test
+    public void testMakesNarrowerWidthsAndPlaceholder() throws Exception {
+        ThumbnailVariants variants = thumbnailVariantService.generate(image(800, 450, BufferedImage.TYPE_INT_ARGB));
+
+        assertEquals(List.of(160, 320, 640), List.copyOf(variants.urls().keySet()));
+        variants.urls().forEach((width, url) -> assertTrue(url.startsWith("http://bucket/variant-" + width + "-")));
+        assertEquals(Map.of(160, 90, 320, 180, 640, 360), uploaded.stream()
+                .collect(Collectors.toMap(BufferedImage::getWidth, BufferedImage::getHeight)));
+        assertTrue(variants.placeholder().startsWith("data:image/jpeg;base64,"));
+        assertTrue(variants.placeholder().length() <= 2048);
+    }
+
+    @Test
+    public void testImageThatCannotBeDecodedGetsNoVariants() throws Exception {
+        Path notAnImage = Files.writeString(dir.resolve("thumbnail.jpg"), "not an image");
+
+        assertEquals(ThumbnailVariants.NONE, thumbnailVariantService.generate(notAnImage));
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testStoredVariantsAreDeletedWhenOneFails() throws Exception {
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg")))
+                .thenReturn(CompletableFuture.completedFuture("http://bucket/stored"))
+                .thenReturn(CompletableFuture.failedFuture(new FileUploadException("Failed to upload file", null)));
+
+        ThumbnailVariants variants = thumbnailVariantService.generate(image(400, 300, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(ThumbnailVariants.NONE, variants);
+        verify(blobStorage).deleteFile("http://bucket/stored");
+    }
+
+    @Test
+    public void testResizeKeepsAspectRatio() {
+        BufferedImage resized = ThumbnailVariantService.resize(new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB), 99);
+
+        assertEquals(99, resized.getWidth());
+        assertEquals(99, resized.getHeight());
+    }
+
+    private Path image(int width, int height, int type) throws Exception {
+        Path path = dir.resolve("thumbnail.png");
+        ImageIO.write(new BufferedImage(width, height, type), "png", path.toFile());
+        return path;
+    }
+}
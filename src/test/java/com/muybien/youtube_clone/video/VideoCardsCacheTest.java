@@ -0,0 +1,82 @@
+package com.muybien.youtube_clone.video;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class VideoCardsCacheTest {
+
+    @Mock private VideoRepository videoRepository;
+    private VideoCardsCache videoCardsCache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        videoCardsCache = new VideoCardsCache(videoRepository, new CaffeineCacheManager(VideoCardsCache.CACHE_NAME));
+    }
+
+    @Test
+    public void testGetAllLoadsMissesWithSingleQueryInRequestOrder() {
+        when(videoRepository.findCardsByIdIn(Set.of(1, 2, 3))).thenReturn(List.of(card(1), card(2), card(3)));
+
+        List<VideoCardDTO> result = videoCardsCache.getAll(List.of(3, 1, 2));
+
+        assertEquals(List.of(3, 1, 2), result.stream().map(VideoCardDTO::id).toList());
+        verify(videoRepository, times(1)).findCardsByIdIn(any());
+    }
+
+    @Test
+    public void testGetAllServesHitsFromCacheAndQueriesOnlyMisses() {
+        when(videoRepository.findCardsByIdIn(Set.of(1))).thenReturn(List.of(card(1)));
+        videoCardsCache.getAll(List.of(1));
+        when(videoRepository.findCardsByIdIn(Set.of(2))).thenReturn(List.of(card(2)));
+
+        List<VideoCardDTO> result = videoCardsCache.getAll(List.of(2, 1));
+
+        assertEquals(List.of(2, 1), result.stream().map(VideoCardDTO::id).toList());
+        verify(videoRepository, times(1)).findCardsByIdIn(Set.of(2));
+    }
+
+    @Test
+    public void testGetAllWhenEveryIdIsCached() {
+        when(videoRepository.findCardsByIdIn(Set.of(1, 2))).thenReturn(List.of(card(1), card(2)));
+        videoCardsCache.getAll(List.of(1, 2));
+
+        videoCardsCache.getAll(List.of(2, 1));
+
+        verify(videoRepository, times(1)).findCardsByIdIn(any());
+    }
+
+    @Test
+    public void testGetAllSkipsVideosThatDoNotExist() {
+        when(videoRepository.findCardsByIdIn(Set.of(1, 99))).thenReturn(List.of(card(1)));
+
+        List<VideoCardDTO> result = videoCardsCache.getAll(List.of(99, 1));
+
+        assertEquals(List.of(1), result.stream().map(VideoCardDTO::id).toList());
+    }
+
+    @Test
+    public void testEvictForcesReload() {
+        when(videoRepository.findCardsByIdIn(Set.of(1))).thenReturn(List.of(card(1)));
+        videoCardsCache.getAll(List.of(1));
+
+        videoCardsCache.evict(1);
+        videoCardsCache.getAll(List.of(1));
+
+        verify(videoRepository, times(2)).findCardsByIdIn(Set.of(1));
+    }
+
+    private VideoCardDTO card(int id) {
+        return VideoCardDTO.builder().id(id).title("Video " + id).build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.VideoNotFoundException;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig
+public class VideoDetailsCacheTest {
+
+    @MockBean private VideoRepository videoRepository;
+    @MockBean private VideoDTOMapper videoDTOMapper;
+    @Autowired private VideoDetailsCache videoDetailsCache;
+    @Autowired private CacheManager cacheManager;
+
+    private final int videoId = 1;
+    private Video video;
+    private VideoDTO videoDTO;
+
+    @Configuration
+    @EnableCaching
+    @Import(VideoDetailsCache.class)
+    static class Config {
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(VideoDetailsCache.CACHE_NAME, VideoDetailsCache.SUMMARY_CACHE_NAME);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(VideoDetailsCache.CACHE_NAME).clear();
+        cacheManager.getCache(VideoDetailsCache.SUMMARY_CACHE_NAME).clear();
+
+        video = Video.builder().user(User.builder().build()).title("Sample video").build();
+        videoDTO = VideoDTO.builder().title("Sample video").build();
+
+        when(videoDTOMapper.toDTO(video)).thenReturn(videoDTO);
+        when(videoDTOMapper.toSummaryDTO(video)).thenReturn(videoDTO);
+    }
+
+    @Test
+    public void testGetLoadsOnceAndServesFromCache() {
+        when(videoRepository.findDetailsById(videoId)).thenReturn(Optional.of(video));
+
+        assertEquals(videoDTO, videoDetailsCache.get(videoId));
+        assertEquals(videoDTO, videoDetailsCache.get(videoId));
+
+        verify(videoRepository, times(1)).findDetailsById(videoId);
+    }
+
+    @Test
+    public void testConcurrentMissesCollapseIntoSingleLoad() throws Exception {
+        var loadStarted = new CountDownLatch(1);
+        var releaseLoad = new CountDownLatch(1);
+        when(videoRepository.findDetailsById(videoId)).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.of(video);
+        });
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<VideoDTO>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> videoDetailsCache.get(videoId)));
+            }
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            releaseLoad.countDown();
+
+            for (Future<VideoDTO> result : results) {
+                assertEquals(videoDTO, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(videoRepository, times(1)).findDetailsById(videoId);
+    }
+
+    @Test
+    public void testGetSummaryDoesNotLoadComments() {
+        when(videoRepository.findSummaryById(videoId)).thenReturn(Optional.of(video));
+
+        assertEquals(videoDTO, videoDetailsCache.getSummary(videoId));
+        assertEquals(videoDTO, videoDetailsCache.getSummary(videoId));
+
+        verify(videoRepository, times(1)).findSummaryById(videoId);
+        verify(videoRepository, never()).findDetailsById(anyInt());
+    }
+
+    @Test
+    public void testEvictAfterCommitWaitsForCommit() {
+        when(videoRepository.findDetailsById(videoId)).thenReturn(Optional.of(video));
+        when(videoRepository.findSummaryById(videoId)).thenReturn(Optional.of(video));
+        videoDetailsCache.get(videoId);
+        videoDetailsCache.getSummary(videoId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            videoDetailsCache.evictAfterCommit(videoId);
+
+            assertNotNull(cacheManager.getCache(VideoDetailsCache.CACHE_NAME).get(videoId));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertNull(cacheManager.getCache(VideoDetailsCache.CACHE_NAME).get(videoId));
+        assertNull(cacheManager.getCache(VideoDetailsCache.SUMMARY_CACHE_NAME).get(videoId));
+    }
+
+    @Test
+    public void testEvictAfterCommitWithoutTransaction() {
+        when(videoRepository.findDetailsById(videoId)).thenReturn(Optional.of(video));
+        videoDetailsCache.get(videoId);
+
+        videoDetailsCache.evictAfterCommit(videoId);
+
+        assertNull(cacheManager.getCache(VideoDetailsCache.CACHE_NAME).get(videoId));
+    }
+
+    @Test
+    public void testEvictForcesReload() {
+        when(videoRepository.findDetailsById(videoId)).thenReturn(Optional.of(video));
+
+        when(videoRepository.findSummaryById(videoId)).thenReturn(Optional.of(video));
+
+        videoDetailsCache.get(videoId);
+        videoDetailsCache.getSummary(videoId);
+        videoDetailsCache.evict(videoId);
+        videoDetailsCache.get(videoId);
+        videoDetailsCache.getSummary(videoId);
+
+        verify(videoRepository, times(2)).findDetailsById(videoId);
+        verify(videoRepository, times(2)).findSummaryById(videoId);
+    }
+
+    @Test
+    public void testGetWhenVideoDoesNotExist() {
+        when(videoRepository.findDetailsById(videoId)).thenReturn(Optional.empty());
+
+        assertThrows(VideoNotFoundException.class, () -> videoDetailsCache.get(videoId));
+    }
+}
@@ -0,0 +1,82 @@
+package com.muybien.youtube_clone.video;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.muybien.youtube_clone.config.UrlSigner;
+import com.muybien.youtube_clone.handler.ExportBusyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class VideoExportServiceTest {
+
+    @Mock private VideoRepository videoRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private VideoExportService videoExportService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        var urlSigner = new UrlSigner("secret", "", "http://localhost/api/v1", Duration.ofHours(1), Duration.ofMinutes(5));
+        videoExportService = new VideoExportService(videoRepository, new PlaybackUrls(urlSigner, "s3", ""), objectMapper, 2);
+    }
+
+    @Test
+    public void testExportVideoCardsWritesJsonArrayAndClosesCursor() throws Exception {
+        var closed = new AtomicBoolean();
+        Stream<VideoCardDTO> cards = IntStream.rangeClosed(1, 1200)
+                .mapToObj(id -> VideoCardDTO.builder()
+                        .id(id)
+                        .title("Video " + id)
+                        .thumbnailUrl("http://bucket/" + id + ".png")
+                        .videoViewCounter(new AtomicInteger(id))
+                        .createdDate(LocalDateTime.of(2024, 1, 1, 0, 0))
+                        .build())
+                .onClose(() -> closed.set(true));
+        when(videoRepository.streamAllCards()).thenReturn(cards);
+        var out = new ByteArrayOutputStream();
+
+        videoExportService.exportVideoCards(out);
+
+        JsonNode result = objectMapper.readTree(out.toByteArray());
+        assertTrue(result.isArray());
+        assertEquals(1200, result.size());
+        assertEquals("Video 1", result.get(0).get("title").asText());
+        assertEquals(1200, result.get(1199).get("videoViewCounter").asInt());
+        assertTrue(result.get(0).get("thumbnailUrl").asText().startsWith("http://localhost/api/v1/videos/1/thumbnail?expires="));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testExportVideoCardsWhenThereAreNoVideos() throws Exception {
+        when(videoRepository.streamAllCards()).thenReturn(Stream.empty());
+        var out = new ByteArrayOutputStream();
+
+        videoExportService.exportVideoCards(out);
+
+        assertEquals("[]", out.toString());
+    }
+
+    @Test
+    public void testReserveExportRefusesExportsBeyondLimit() {
+        Runnable first = videoExportService.reserveExport();
+        videoExportService.reserveExport();
+
+        assertThrows(ExportBusyException.class, () -> videoExportService.reserveExport());
+
+        first.run();
+        assertNotNull(videoExportService.reserveExport());
+    }
+}
@@ -1,7 +1,9 @@
 package com.muybien.youtube_clone.video;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.muybien.youtube_clone.comment.Comment;
 import com.muybien.youtube_clone.config.JwtService;
+import com.muybien.youtube_clone.config.UrlSigner;
 import com.muybien.youtube_clone.token.TokenRepository;
 import com.muybien.youtube_clone.user.User;
 import com.muybien.youtube_clone.user.UserService;
@@ -10,22 +12,38 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(VideoGuestController.class)
+@Import({PlaybackUrls.class, UrlSigner.class})
 public class VideoGuestControllerTest {
 
     @MockBean private VideoService videoService;
+    @MockBean private VideoViewService videoViewService;
+    @MockBean private VideoStreamService videoStreamService;
     @MockBean private UserService userService;
     @MockBean private VideoDTOMapper videoDTOMapper;
     @MockBean private JwtService jwtService;
@@ -77,9 +95,8 @@ public class VideoGuestControllerTest {
 
     @Test
     @WithMockUser(username = "user")
-    public void testGetVideoDetailsWhenUserIsNotAuthenticated() throws Exception {
-        when(userService.isUserAuthenticated(any())).thenReturn(false);
-        when(videoService.getVideoDetails(anyInt(), any())).thenReturn(videoDTO);
+    public void testGetVideoDetails() throws Exception {
+        when(videoService.getVideoDetails(videoId, VideoFields.ALL)).thenReturn(videoDTO);
 
         mockMvc.perform(get("/videos/{videoId}", videoId))
                 .andExpect(status().isOk())
@@ -87,53 +104,204 @@ public class VideoGuestControllerTest {
                 .andExpect(jsonPath("$.username").value(videoDTO.username()))
                 .andExpect(jsonPath("$.title").value(videoDTO.title()))
                 .andExpect(jsonPath("$.description").value(videoDTO.description()))
-                .andExpect(jsonPath("$.videoUrl").value(videoDTO.videoUrl()))
-                .andExpect(jsonPath("$.thumbnailUrl").value(videoDTO.thumbnailUrl()))
+                .andExpect(jsonPath("$.videoUrl").value(startsWith("http://localhost:8080/api/v1/videos/1/stream?expires=")))
+                .andExpect(jsonPath("$.thumbnailUrl").value(startsWith("http://localhost:8080/api/v1/videos/1/thumbnail?expires=")))
                 .andExpect(jsonPath("$.videoViewCounter").value(videoDTO.videoViewCounter().get()))
                 .andExpect(jsonPath("$.likes").value(videoDTO.likes().get()))
                 .andExpect(jsonPath("$.disLikes").value(videoDTO.disLikes().get()))
                 .andExpect(jsonPath("$.comments").value(videoDTO.comments()))
                 .andReturn();
+
+        verifyNoInteractions(videoViewService);
     }
 
     @Test
     @WithMockUser(username = "user")
-    public void testGetVideoDetailsWhenUserIsAuthenticated() throws Exception {
-        when(userService.isUserAuthenticated(any())).thenReturn(true);
-        when(videoService.getVideoDetails(anyInt(), any())).thenReturn(videoDTO);
+    public void testGetVideoDetailsAsCbor() throws Exception {
+        when(videoService.getVideoDetails(videoId, VideoFields.ALL)).thenReturn(videoDTO);
 
-        mockMvc.perform(get("/videos/{videoId}", videoId))
+        byte[] body = mockMvc.perform(get("/videos/{videoId}", videoId).accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        VideoDTO result = new CBORMapper().readValue(body, VideoDTO.class);
+        assertEquals(videoDTO.title(), result.title());
+        assertEquals(videoDTO.likes().get(), result.likes().get());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testGetVideoDetailsWithFields() throws Exception {
+        when(videoService.getVideoDetails(videoId, VideoFields.parse("title,likes"))).thenReturn(videoDTO);
+
+        mockMvc.perform(get("/videos/{videoId}", videoId).param("fields", "title, likes"))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.username").value(videoDTO.username()))
                 .andExpect(jsonPath("$.title").value(videoDTO.title()))
-                .andExpect(jsonPath("$.description").value(videoDTO.description()))
-                .andExpect(jsonPath("$.videoUrl").value(videoDTO.videoUrl()))
-                .andExpect(jsonPath("$.thumbnailUrl").value(videoDTO.thumbnailUrl()))
-                .andExpect(jsonPath("$.videoViewCounter").value(videoDTO.videoViewCounter().get()))
                 .andExpect(jsonPath("$.likes").value(videoDTO.likes().get()))
-                .andExpect(jsonPath("$.disLikes").value(videoDTO.disLikes().get()))
-                .andExpect(jsonPath("$.comments").value(videoDTO.comments()))
+                .andExpect(jsonPath("$.description").doesNotExist())
+                .andExpect(jsonPath("$.comments").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testGetVideoDetailsWithUnknownField() throws Exception {
+        mockMvc.perform(get("/videos/{videoId}", videoId).param("fields", "title,password"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testGetVideoDetailsWhenETagMatches() throws Exception {
+        when(videoService.getVideoDetails(videoId, VideoFields.ALL)).thenReturn(videoDTO);
+
+        String eTag = mockMvc.perform(get("/videos/{videoId}", videoId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/videos/{videoId}", videoId).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testGetVideoDetailsWhenCountersChanged() throws Exception {
+        when(videoService.getVideoDetails(videoId, VideoFields.ALL)).thenReturn(videoDTO);
+        String eTag = mockMvc.perform(get("/videos/{videoId}", videoId))
+                .andReturn().getResponse().getHeader("ETag");
+
+        videoDTO.likes().incrementAndGet();
+
+        mockMvc.perform(get("/videos/{videoId}", videoId).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likes").value(1));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testFindVideoCards() throws Exception {
+        when(videoService.findVideoCards(List.of(3, 1))).thenReturn(List.of(
+                VideoCardDTO.builder().id(3).title("Third Video").build(),
+                VideoCardDTO.builder().id(1).title("First Video").build()
+        ));
+
+        mockMvc.perform(get("/videos/cards").param("ids", "3,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].title").value("First Video"));
+
+        verifyNoInteractions(videoViewService);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testStreamVideo() throws Exception {
+        StreamingResponseBody body = out -> out.write("2345".getBytes());
+        when(videoStreamService.stream(eq(videoId), any(HttpHeaders.class), eq(false)))
+                .thenReturn(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+                        .body(body));
+
+        MvcResult result = mockMvc.perform(get("/videos/{videoId}/stream", videoId)
+                        .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(request().asyncStarted())
                 .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().doesNotExist(HttpHeaders.VARY))
+                .andExpect(content().string("2345"));
+        verify(videoStreamService).stream(eq(videoId),
+                argThat(headers -> "bytes=2-5".equals(headers.getFirst(HttpHeaders.RANGE))), eq(false));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testStreamThumbnailHead() throws Exception {
+        when(videoStreamService.streamThumbnail(eq(videoId), any(HttpHeaders.class), eq(true)))
+                .thenReturn(ResponseEntity.ok().contentType(MediaType.IMAGE_PNG).contentLength(4).build());
+
+        mockMvc.perform(head("/videos/{videoId}/thumbnail", videoId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"));
+        verify(videoStreamService).streamThumbnail(eq(videoId), any(HttpHeaders.class), eq(true));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testRecordView() throws Exception {
+        mockMvc.perform(post("/videos/{videoId}/view", videoId)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isAccepted());
+
+        verify(videoViewService, times(1)).recordView(eq(videoId), any(), anyString());
     }
 
     @Test
     @WithMockUser(username = "user")
     public void testFindAllVideos() throws Exception {
-        List<VideoDTO> videos = List.of(
-          VideoDTO.builder().title("First Video").description("First Description").build(),
-          VideoDTO.builder().title("Second Video").description("Second Description").build()
+        List<VideoCardDTO> videos = List.of(
+          VideoCardDTO.builder().id(2).title("First Video").build(),
+          VideoCardDTO.builder().id(1).title("Second Video").build()
         );
 
-        when(videoService.findAllVideos()).thenReturn(videos);
+        when(videoService.findAllVideos(null, 20, VideoSort.NEWEST))
+                .thenReturn(new VideoCardPage(videos, "next-cursor"));
 
         mockMvc.perform(get("/videos"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$[0].title").value("First Video"))
-                .andExpect(jsonPath("$[1].title").value("Second Video"))
-                .andExpect(jsonPath("$[0].description").value("First Description"))
-                .andExpect(jsonPath("$[1].description").value("Second Description"))
+                .andExpect(jsonPath("$.videos[0].title").value("First Video"))
+                .andExpect(jsonPath("$.videos[1].title").value("Second Video"))
+                .andExpect(jsonPath("$.videos[0].id").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"))
                 .andReturn();
     }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testFindAllVideosWithCursorAndSort() throws Exception {
+        when(videoService.findAllVideos("cursor", 10, VideoSort.MOST_VIEWED))
+                .thenReturn(new VideoCardPage(List.of(), null));
+
+        mockMvc.perform(get("/videos")
+                        .param("cursor", "cursor")
+                        .param("limit", "10")
+                        .param("sort", "MOST_VIEWED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.videos").isEmpty());
+
+        verify(videoService, times(1)).findAllVideos("cursor", 10, VideoSort.MOST_VIEWED);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testFindAllVideosWhenETagMatches() throws Exception {
+        List<VideoCardDTO> videos = List.of(
+                VideoCardDTO.builder().id(1).title("First Video").videoViewCounter(new AtomicInteger(5)).build()
+        );
+        when(videoService.findAllVideos(null, 20, VideoSort.NEWEST))
+                .thenReturn(new VideoCardPage(videos, null));
+
+        String eTag = mockMvc.perform(get("/videos"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/videos").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        videos.getFirst().videoViewCounter().incrementAndGet();
+
+        mockMvc.perform(get("/videos").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.videos[0].videoViewCounter").value(6));
+    }
 }
@@ -0,0 +1,251 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.IngestJobNotFoundException;
+import com.muybien.youtube_clone.handler.IngestQueueFullException;
+import com.muybien.youtube_clone.storage.ContentHash;
+import com.muybien.youtube_clone.storage.ContentStore;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoIngestServiceTest {
+
+    private static final ThumbnailVariants THUMBNAIL_VARIANTS =
+            new ThumbnailVariants(Map.of(320, "http://jpg-320-url.com"), "data:image/jpeg;base64,AA==");
+
+    @Mock private VideoService videoService;
+    @Mock private ContentStore contentStore;
+    @Mock private ThumbnailVariantService thumbnailVariantService;
+    @Mock private Authentication connectedUser;
+    @TempDir private Path stagingDir;
+
+    private VideoIngestService videoIngestService;
+    private VideoUploadRequest request;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        videoIngestService = new VideoIngestService(videoService, contentStore, thumbnailVariantService, stagingDir, 1, 1, Duration.ofMinutes(5),
+                DataSize.ofMegabytes(1));
+        videoIngestService.prepareStagingDir();
+
+        request = new VideoUploadRequest(
+                new MockMultipartFile("video", "video.mp4", "video/mp4", "video content".getBytes()),
+                new MockMultipartFile("thumbnail", "thumbnail.jpg", "image/jpeg", "thumbnail".getBytes()),
+                "Title",
+                "Description");
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+        when(thumbnailVariantService.generate(any(Path.class))).thenReturn(THUMBNAIL_VARIANTS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        videoIngestService.shutdown();
+    }
+
+    @Test
+    public void testSubmitUploadsInBackgroundAndPublishesVideo() throws Exception {
+        when(contentStore.store(any(Path.class), anyString(), anyString(), any(ContentHash.class), any(LongConsumer.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<LongConsumer>getArgument(4).accept(Files.size(invocation.getArgument(0)));
+                    return CompletableFuture.completedFuture("http://" + invocation.getArgument(2) + "-url.com");
+                });
+
+        VideoIngestStatus submitted = videoIngestService.submit(request, connectedUser);
+        VideoIngestStatus status = awaitFinished(submitted.jobId());
+
+        assertEquals(VideoIngestStage.COMPLETED, status.stage());
+        assertEquals("http://mp4-url.com", status.videoUrl());
+        assertEquals(22, status.totalBytes());
+        assertEquals(22, status.bytesTransferred());
+        verify(videoService).publishVideo("http://mp4-url.com", "http://jpg-url.com", "Title", "Description",
+                VideoMetadata.UNKNOWN, THUMBNAIL_VARIANTS, connectedUser);
+        assertStagingDirIsEmpty();
+    }
+
+    @Test
+    public void testSubmitHashesFilesWhileStaging() throws Exception {
+        when(contentStore.store(any(Path.class), anyString(), anyString(), any(ContentHash.class), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://url.com"));
+
+        awaitFinished(videoIngestService.submit(request, connectedUser).jobId());
+
+        // SHA-256 and CRC32C of "video content"
+        verify(contentStore).store(any(Path.class), eq("video/mp4"), eq("mp4"), eq(new ContentHash(
+                "8b1026fe0fc95510d130d6ececa4462adb0995c7d77c5791703c45168ad43084", "OEFHOQ==", 13)), any(LongConsumer.class));
+    }
+
+    @Test
+    public void testSubmitMovesMoovInFrontAndPublishesMetadata() throws Exception {
+        byte[] movie = Mp4FileTest.movie(true, false, 0x00010000, 0);
+        var uploaded = new AtomicReference<byte[]>();
+        when(contentStore.store(any(Path.class), anyString(), eq("mp4"), any(ContentHash.class), any(LongConsumer.class)))
+                .thenAnswer(invocation -> {
+                    uploaded.set(Files.readAllBytes(invocation.getArgument(0)));
+                    return CompletableFuture.completedFuture("http://mp4-url.com");
+                });
+        when(contentStore.store(any(Path.class), anyString(), eq("jpg"), any(ContentHash.class), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://jpg-url.com"));
+        var mp4Request = new VideoUploadRequest(
+                new MockMultipartFile("video", "video.mp4", "video/mp4", movie),
+                request.thumbnail(), "Title", "Description");
+
+        awaitFinished(videoIngestService.submit(mp4Request, connectedUser).jobId());
+
+        assertEquals(movie.length, uploaded.get().length);
+        // moov follows the 24-byte ftyp
+        assertEquals("moov", new String(uploaded.get(), 28, 4));
+        verify(videoService).publishVideo("http://mp4-url.com", "http://jpg-url.com", "Title", "Description",
+                new VideoMetadata(12_345L, 1920, 1080, "avc1.64001f"), THUMBNAIL_VARIANTS, connectedUser);
+        assertStagingDirIsEmpty();
+    }
+
+    @Test
+    public void testSubmitUploadsUnparseableMp4AsItCame() throws Exception {
+        byte[] movie = Mp4FileTest.movie(true, false, 0x00010000, 0);
+        // moov cut short by a byte
+        movie = Arrays.copyOf(movie, movie.length - 1);
+        when(contentStore.store(any(Path.class), anyString(), anyString(), any(ContentHash.class), any(LongConsumer.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture("http://" + invocation.getArgument(2) + "-url.com"));
+        var mp4Request = new VideoUploadRequest(
+                new MockMultipartFile("video", "video.mp4", "video/mp4", movie),
+                request.thumbnail(), "Title", "Description");
+
+        VideoIngestStatus status = awaitFinished(videoIngestService.submit(mp4Request, connectedUser).jobId());
+
+        assertEquals(VideoIngestStage.COMPLETED, status.stage());
+        verify(videoService).publishVideo("http://mp4-url.com", "http://jpg-url.com", "Title", "Description",
+                VideoMetadata.UNKNOWN, THUMBNAIL_VARIANTS, connectedUser);
+        assertStagingDirIsEmpty();
+    }
+
+    @Test
+    public void testSubmitReportsFailureAndRemovesUploadedThumbnail() throws Exception {
+        when(contentStore.store(any(Path.class), anyString(), eq("jpg"), any(ContentHash.class), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://thumbnail-url.com"));
+        when(contentStore.store(any(Path.class), anyString(), eq("mp4"), any(ContentHash.class), any(LongConsumer.class)))
+                .thenReturn(CompletableFuture.failedFuture(new FileUploadException("Failed to upload file video.mp4", null)));
+
+        VideoIngestStatus status = awaitFinished(videoIngestService.submit(request, connectedUser).jobId());
+
+        assertEquals(VideoIngestStage.FAILED, status.stage());
+        assertEquals("Failed to transfer the files to storage.", status.failure());
+        verify(contentStore).release("http://thumbnail-url.com");
+        verify(contentStore).release("http://jpg-320-url.com");
+        verify(videoService, never()).publishVideo(any(), any(), any(), any(), any(), any(), any());
+        assertStagingDirIsEmpty();
+    }
+
+    @Test
+    public void testSubmitLeavesFilesToPublishVideoWhenPublishingFails() throws Exception {
+        when(contentStore.store(any(Path.class), anyString(), anyString(), any(ContentHash.class), any(LongConsumer.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture("http://" + invocation.getArgument(2) + "-url.com"));
+        when(videoService.publishVideo(any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("Connection to db-primary:3306 refused"));
+
+        VideoIngestStatus status = awaitFinished(videoIngestService.submit(request, connectedUser).jobId());
+
+        assertEquals(VideoIngestStage.FAILED, status.stage());
+        assertEquals("Failed to save the video.", status.failure());
+        verify(contentStore, never()).release(any(String[].class));
+        assertStagingDirIsEmpty();
+    }
+
+    @Test
+    public void testSubmitWhenQueueIsFull() throws Exception {
+        var release = new CountDownLatch(1);
+        when(contentStore.store(any(Path.class), anyString(), anyString(), any(ContentHash.class), any(LongConsumer.class)))
+                .thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "http://url.com";
+                }));
+
+        String running = videoIngestService.submit(request, connectedUser).jobId();
+        awaitStage(running, VideoIngestStage.UPLOADING);
+        String queued = videoIngestService.submit(request, connectedUser).jobId();
+
+        assertThrows(IngestQueueFullException.class, () -> videoIngestService.submit(request, connectedUser));
+        // only the staged files of the two accepted jobs remain
+        try (var staged = Files.list(stagingDir)) {
+            assertEquals(4, staged.count());
+        }
+
+        release.countDown();
+        awaitFinished(running);
+        assertEquals(VideoIngestStage.COMPLETED, awaitFinished(queued).stage());
+    }
+
+    @Test
+    public void testGetStatusOfAnotherUsersJob() {
+        String jobId = videoIngestService.submit(request, connectedUser).jobId();
+
+        var otherUser = mock(Authentication.class);
+        when(otherUser.getPrincipal()).thenReturn(User.builder().id(8).build());
+
+        assertThrows(IngestJobNotFoundException.class, () -> videoIngestService.getStatus(jobId, otherUser));
+        assertThrows(IngestJobNotFoundException.class, () -> videoIngestService.getStatus("missing", connectedUser));
+    }
+
+    private VideoIngestStatus awaitFinished(String jobId) throws InterruptedException {
+        return awaitStage(jobId, VideoIngestStage.COMPLETED, VideoIngestStage.FAILED);
+    }
+
+    private VideoIngestStatus awaitStage(String jobId, VideoIngestStage... stages) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            VideoIngestStatus status = videoIngestService.getStatus(jobId, connectedUser);
+            for (VideoIngestStage stage : stages) {
+                if (status.stage() == stage) {
+                    return status;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                fail("Job " + jobId + " is still " + status.stage());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void assertStagingDirIsEmpty() throws Exception {
+        // staged files are deleted right after the job finishes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try (var staged = Files.list(stagingDir)) {
+                if (staged.findAny().isEmpty()) {
+                    return;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                fail("Staged files were not deleted");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.DatabaseException;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
+import com.muybien.youtube_clone.handler.PresignedUploadNotFoundException;
+import com.muybien.youtube_clone.handler.StorageOperationNotSupportedException;
+import com.muybien.youtube_clone.handler.UploadVerificationException;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.PresignedPut;
+import com.muybien.youtube_clone.storage.StoredObject;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoPresignedUploadServiceTest {
+
+    private static final String VIDEO_CHECKSUM = "a".repeat(43) + "=";
+    private static final String THUMBNAIL_CHECKSUM = "b".repeat(43) + "=";
+
+    @Mock private VideoService videoService;
+    @Mock private BlobStorage blobStorage;
+    @Mock private PendingUploadRepository pendingUploadRepository;
+    @Mock private Authentication connectedUser;
+
+    private VideoPresignedUploadService videoPresignedUploadService;
+    private PendingUpload pendingUpload;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        videoPresignedUploadService = new VideoPresignedUploadService(videoService, blobStorage, pendingUploadRepository,
+                Duration.ofMinutes(15), Duration.ofHours(1), DataSize.ofMegabytes(100));
+
+        pendingUpload = PendingUpload.builder()
+                .id("upload-1")
+                .userId(7)
+                .title("Title")
+                .description("Description")
+                .videoKey("video.mp4")
+                .videoSize(1000)
+                .videoChecksum(VIDEO_CHECKSUM)
+                .thumbnailKey("thumbnail.jpeg")
+                .thumbnailSize(100)
+                .thumbnailChecksum(THUMBNAIL_CHECKSUM)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+        when(blobStorage.fetchFileUrl(anyString())).thenAnswer(invocation -> "http://bucket/" + invocation.getArgument(0));
+    }
+
+    @Test
+    public void testIssueSignsBothFilesAndRecordsPendingUpload() {
+        when(blobStorage.newFileKey("mp4")).thenReturn("video.mp4");
+        when(blobStorage.newFileKey("jpeg")).thenReturn("thumbnail.jpeg");
+        var presigned = new PresignedPut("http://bucket/signed", Map.of(), Instant.now());
+        when(blobStorage.presignPut(anyString(), anyString(), anyLong(), anyString(), any(Duration.class))).thenReturn(presigned);
+
+        PresignedUploadResponse response = videoPresignedUploadService.issue(request("video/mp4", 1000), connectedUser);
+
+        var saved = ArgumentCaptor.forClass(PendingUpload.class);
+        verify(pendingUploadRepository).save(saved.capture());
+        assertEquals(saved.getValue().getId(), response.uploadId());
+        assertEquals(7, saved.getValue().getUserId());
+        assertEquals(VIDEO_CHECKSUM, saved.getValue().getVideoChecksum());
+        verify(blobStorage).presignPut("video.mp4", "video/mp4", 1000, VIDEO_CHECKSUM, Duration.ofMinutes(15));
+        verify(blobStorage).presignPut("thumbnail.jpeg", "image/jpeg", 100, THUMBNAIL_CHECKSUM, Duration.ofMinutes(15));
+    }
+
+    @Test
+    public void testIssueWhenStorageCannotSign() {
+        when(blobStorage.presignPut(anyString(), anyString(), anyLong(), anyString(), any(Duration.class)))
+                .thenThrow(new StorageOperationNotSupportedException("Direct uploads aren't available."));
+        when(blobStorage.newFileKey(anyString())).thenReturn("file-key");
+
+        assertThrows(StorageOperationNotSupportedException.class, () ->
+                videoPresignedUploadService.issue(request("video/mp4", 1000), connectedUser));
+        verifyNoInteractions(pendingUploadRepository);
+    }
+
+    @Test
+    public void testIssueRejectsOversizedOrWrongTypeFiles() {
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoPresignedUploadService.issue(request("video/mp4", DataSize.ofMegabytes(101).toBytes()), connectedUser));
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoPresignedUploadService.issue(request("image/png", 1000), connectedUser));
+        verifyNoInteractions(pendingUploadRepository);
+    }
+
+    @Test
+    public void testCompleteCreatesVideoWhenObjectsMatch() {
+        when(pendingUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(pendingUpload));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.of(new StoredObject(1000, VIDEO_CHECKSUM)));
+        when(blobStorage.findObject("thumbnail.jpeg")).thenReturn(Optional.of(new StoredObject(100, THUMBNAIL_CHECKSUM)));
+
+        videoPresignedUploadService.complete("upload-1", connectedUser);
+
+        verify(videoService).publishVideo("http://bucket/video.mp4", "http://bucket/thumbnail.jpeg",
+                "Title", "Description", connectedUser);
+        verify(pendingUploadRepository).delete(pendingUpload);
+    }
+
+    @Test
+    public void testCompleteKeepsFilesWhenPublishingFails() {
+        when(pendingUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(pendingUpload));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.of(new StoredObject(1000, VIDEO_CHECKSUM)));
+        when(blobStorage.findObject("thumbnail.jpeg")).thenReturn(Optional.of(new StoredObject(100, THUMBNAIL_CHECKSUM)));
+        when(videoService.publishVideo(anyString(), anyString(), anyString(), anyString(), any(Authentication.class)))
+                .thenThrow(new DatabaseException("Failed to save the video.", null))
+                .thenReturn(new VideoUploadResponse("http://bucket/video.mp4"));
+
+        // the pending upload's delete rolls back with the failed publish,
+        // so the objects have to stay for the retry
+        assertThrows(DatabaseException.class, () ->
+                videoPresignedUploadService.complete("upload-1", connectedUser));
+        verify(blobStorage, never()).deleteFile(anyString());
+        verify(blobStorage, never()).deleteFiles(any(String[].class));
+
+        VideoUploadResponse response = videoPresignedUploadService.complete("upload-1", connectedUser);
+
+        assertEquals("http://bucket/video.mp4", response.videoUrl());
+        verify(blobStorage, never()).deleteFiles(any(String[].class));
+    }
+
+    @Test
+    public void testCompleteKeepsUploadPendingWhenObjectIsMissing() {
+        when(pendingUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(pendingUpload));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.empty());
+
+        assertThrows(UploadVerificationException.class, () ->
+                videoPresignedUploadService.complete("upload-1", connectedUser));
+        verify(pendingUploadRepository, never()).delete(any());
+        verify(blobStorage, never()).deleteFile(anyString());
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    public void testCompleteDiscardsUploadWithWrongChecksum() {
+        when(pendingUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(pendingUpload));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.of(new StoredObject(1000, THUMBNAIL_CHECKSUM)));
+
+        var e = assertThrows(UploadVerificationException.class, () ->
+                videoPresignedUploadService.complete("upload-1", connectedUser));
+        assertTrue(e.getMessage().contains("discarded"));
+        verify(blobStorage).deleteFiles("video.mp4", "thumbnail.jpeg");
+        verify(pendingUploadRepository).delete(pendingUpload);
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    public void testCompleteWhenUploadHasExpired() {
+        pendingUpload.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(pendingUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(pendingUpload));
+
+        assertThrows(PresignedUploadNotFoundException.class, () ->
+                videoPresignedUploadService.complete("upload-1", connectedUser));
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    public void testPurgeExpiredDeletesFilesAndPendingUploads() {
+        when(pendingUploadRepository.findByExpiresAtBefore(any(LocalDateTime.class), eq(Limit.of(100))))
+                .thenReturn(List.of(pendingUpload));
+
+        videoPresignedUploadService.purgeExpired();
+
+        verify(blobStorage).deleteFiles("video.mp4", "thumbnail.jpeg");
+        verify(pendingUploadRepository).deleteAll(List.of(pendingUpload));
+    }
+
+    private PresignedUploadRequest request(String videoContentType, long videoSize) {
+        return new PresignedUploadRequest("Title", "Description",
+                new PresignedUploadRequest.DeclaredFile(videoContentType, videoSize, VIDEO_CHECKSUM),
+                new PresignedUploadRequest.DeclaredFile("image/jpeg", 100, THUMBNAIL_CHECKSUM));
+    }
+}
@@ -0,0 +1,58 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.comment.CommentRepository;
+import com.muybien.youtube_clone.reaction.VideoReactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoPurgeWorkerTest {
+
+    @Mock private VideoRepository videoRepository;
+    @Mock private CommentRepository commentRepository;
+    @Mock private VideoReactionRepository videoReactionRepository;
+
+    private VideoPurgeWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        worker = new VideoPurgeWorker(videoRepository, commentRepository, videoReactionRepository, 2);
+    }
+
+    @Test
+    public void testDeletesCommentsAndReactionsInChunksBeforeVideo() {
+        when(videoRepository.findDeletedIds(VideoPurgeWorker.PURGE_BATCH_SIZE)).thenReturn(List.of(7));
+        when(commentRepository.deleteChunkByVideoId(7, 2)).thenReturn(2, 2, 1);
+        when(videoReactionRepository.deleteChunkByVideoId(7, 2)).thenReturn(0);
+
+        worker.purgeDeleted();
+
+        InOrder order = inOrder(commentRepository, videoReactionRepository, videoRepository);
+        order.verify(commentRepository, times(3)).deleteChunkByVideoId(7, 2);
+        order.verify(videoReactionRepository, times(1)).deleteChunkByVideoId(7, 2);
+        order.verify(videoRepository).purgeDeleted(7);
+    }
+
+    @Test
+    public void testFailedVideoIsLeftForNextRun() {
+        List<Integer> batch = IntStream.range(0, VideoPurgeWorker.PURGE_BATCH_SIZE).boxed().toList();
+        when(videoRepository.findDeletedIds(VideoPurgeWorker.PURGE_BATCH_SIZE)).thenReturn(batch);
+        when(commentRepository.deleteChunkByVideoId(eq(0), anyInt())).thenThrow(new QueryTimeoutException("Lock wait timeout"));
+
+        worker.purgeDeleted();
+
+        verify(videoRepository, times(1)).findDeletedIds(anyInt());
+        verify(videoRepository, never()).purgeDeleted(0);
+        verify(videoRepository).purgeDeleted(1);
+    }
+}
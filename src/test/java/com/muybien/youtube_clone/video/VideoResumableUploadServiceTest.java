@@ -0,0 +1,249 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.DatabaseException;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
+import com.muybien.youtube_clone.handler.ResumableUploadNotFoundException;
+import com.muybien.youtube_clone.handler.UploadVerificationException;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.StoredObject;
+import com.muybien.youtube_clone.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoResumableUploadServiceTest {
+
+    @Mock private VideoService videoService;
+    @Mock private BlobStorage blobStorage;
+    @Mock private ResumableUploadRepository resumableUploadRepository;
+    @Mock private Authentication connectedUser;
+
+    private VideoResumableUploadService videoResumableUploadService;
+    private ResumableUpload resumableUpload;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        videoResumableUploadService = new VideoResumableUploadService(videoService, blobStorage,
+                resumableUploadRepository, DataSize.ofBytes(4), Duration.ofHours(24), DataSize.ofKilobytes(1));
+
+        // 10 bytes in chunks of 4, 4 and 2
+        resumableUpload = ResumableUpload.builder()
+                .id("upload-1")
+                .userId(7)
+                .title("Title")
+                .description("Description")
+                .videoKey("video.mp4")
+                .videoContentType("video/mp4")
+                .videoSize(10)
+                .chunkSize(4)
+                .storageUploadId("storage-upload")
+                .thumbnailUrl("http://bucket/thumbnail.jpeg")
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .chunks(new HashMap<>())
+                .build();
+
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+        when(resumableUploadRepository.findByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(resumableUpload));
+        when(resumableUploadRepository.findForUpdateByIdAndUserId("upload-1", 7)).thenReturn(Optional.of(resumableUpload));
+    }
+
+    @Test
+    public void testStartStoresThumbnailAndOpensChunkedUpload() {
+        when(blobStorage.newFileKey("mp4")).thenReturn("video.mp4");
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg")))
+                .thenReturn(CompletableFuture.completedFuture("http://bucket/thumbnail.jpeg"));
+        when(blobStorage.startChunkedUpload("video.mp4", "video/mp4")).thenReturn("storage-upload");
+
+        ResumableUploadStatus status = videoResumableUploadService.start(request("video/mp4", 10), connectedUser);
+
+        var saved = ArgumentCaptor.forClass(ResumableUpload.class);
+        verify(resumableUploadRepository).save(saved.capture());
+        assertEquals(saved.getValue().getId(), status.uploadId());
+        assertEquals("storage-upload", saved.getValue().getStorageUploadId());
+        assertEquals("http://bucket/thumbnail.jpeg", saved.getValue().getThumbnailUrl());
+        assertEquals(3, status.chunkCount());
+        assertEquals(List.of(1, 2, 3), status.missingChunks());
+    }
+
+    @Test
+    public void testStartDeletesThumbnailWhenChunkedUploadCannotStart() {
+        when(blobStorage.newFileKey("mp4")).thenReturn("video.mp4");
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg")))
+                .thenReturn(CompletableFuture.completedFuture("http://bucket/thumbnail.jpeg"));
+        when(blobStorage.startChunkedUpload("video.mp4", "video/mp4"))
+                .thenThrow(new FileUploadException("Failed to start upload of video.mp4", null));
+
+        assertThrows(FileUploadException.class, () ->
+                videoResumableUploadService.start(request("video/mp4", 10), connectedUser));
+        verify(blobStorage).deleteFile("http://bucket/thumbnail.jpeg");
+        verifyNoInteractions(resumableUploadRepository);
+    }
+
+    @Test
+    public void testStartRejectsOversizedOrWrongTypeVideo() {
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoResumableUploadService.start(request("video/mp4", 2048), connectedUser));
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoResumableUploadService.start(request("image/png", 10), connectedUser));
+        verifyNoInteractions(blobStorage, resumableUploadRepository);
+    }
+
+    @Test
+    public void testUploadChunkStoresAndRecordsChunk() {
+        InputStream body = new ByteArrayInputStream("89".getBytes());
+        when(blobStorage.uploadChunk("video.mp4", "storage-upload", 3, body, 2)).thenReturn("etag-3");
+
+        videoResumableUploadService.uploadChunk("upload-1", 3, body, 2, connectedUser);
+
+        verify(resumableUploadRepository).recordChunk("upload-1", 3, "etag-3");
+        verify(resumableUploadRepository).extendExpiry(eq("upload-1"), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testUploadChunkRejectsWrongNumberOrLength() {
+        InputStream body = new ByteArrayInputStream("0123".getBytes());
+
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoResumableUploadService.uploadChunk("upload-1", 4, body, 4, connectedUser));
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoResumableUploadService.uploadChunk("upload-1", 3, body, 4, connectedUser));
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testUploadChunkWhenUploadHasExpired() {
+        resumableUpload.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+
+        assertThrows(ResumableUploadNotFoundException.class, () ->
+                videoResumableUploadService.uploadChunk("upload-1", 1, InputStream.nullInputStream(), 4, connectedUser));
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testGetStatusMergesAdjacentChunksIntoRanges() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 3, "etag-3"));
+
+        ResumableUploadStatus status = videoResumableUploadService.getStatus("upload-1", connectedUser);
+
+        assertEquals(List.of(new ResumableUploadStatus.ByteRange(0, 3), new ResumableUploadStatus.ByteRange(8, 9)),
+                status.receivedRanges());
+        assertEquals(List.of(2), status.missingChunks());
+
+        resumableUpload.getChunks().put(2, "etag-2");
+        assertEquals(List.of(new ResumableUploadStatus.ByteRange(0, 9)),
+                videoResumableUploadService.getStatus("upload-1", connectedUser).receivedRanges());
+    }
+
+    @Test
+    public void testCompleteAssemblesChunksAndCreatesVideo() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 2, "etag-2", 3, "etag-3"));
+        when(blobStorage.completeChunkedUpload("video.mp4", "storage-upload", List.of("etag-1", "etag-2", "etag-3")))
+                .thenReturn("http://bucket/video.mp4");
+
+        videoResumableUploadService.complete("upload-1", connectedUser);
+
+        verify(resumableUploadRepository).delete(resumableUpload);
+        verify(videoService).publishVideo("http://bucket/video.mp4", "http://bucket/thumbnail.jpeg",
+                "Title", "Description", connectedUser);
+    }
+
+    @Test
+    public void testCompleteRetryUsesVideoAssembledByFailedAttempt() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 2, "etag-2", 3, "etag-3"));
+        when(blobStorage.completeChunkedUpload(anyString(), anyString(), anyList()))
+                .thenThrow(new FileUploadException("Failed to complete upload of video.mp4", null));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.of(new StoredObject(resumableUpload.getVideoSize(), null)));
+        when(blobStorage.fetchFileUrl("video.mp4")).thenReturn("http://bucket/video.mp4");
+
+        videoResumableUploadService.complete("upload-1", connectedUser);
+
+        verify(resumableUploadRepository).delete(resumableUpload);
+        verify(videoService).publishVideo("http://bucket/video.mp4", "http://bucket/thumbnail.jpeg",
+                "Title", "Description", connectedUser);
+    }
+
+    @Test
+    public void testCompleteRetrySucceedsAfterPublishingFails() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 2, "etag-2", 3, "etag-3"));
+        when(blobStorage.completeChunkedUpload(anyString(), anyString(), anyList()))
+                .thenReturn("http://bucket/video.mp4")
+                .thenThrow(new FileUploadException("Failed to complete upload of video.mp4", null));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.of(new StoredObject(resumableUpload.getVideoSize(), null)));
+        when(blobStorage.fetchFileUrl("video.mp4")).thenReturn("http://bucket/video.mp4");
+        when(videoService.publishVideo(anyString(), anyString(), anyString(), anyString(), any(Authentication.class)))
+                .thenThrow(new DatabaseException("Failed to save the video.", null))
+                .thenReturn(new VideoUploadResponse("http://bucket/video.mp4"));
+
+        assertThrows(DatabaseException.class, () -> videoResumableUploadService.complete("upload-1", connectedUser));
+        verify(blobStorage, never()).deleteFile(anyString());
+
+        VideoUploadResponse response = videoResumableUploadService.complete("upload-1", connectedUser);
+
+        assertEquals("http://bucket/video.mp4", response.videoUrl());
+        verify(videoService, times(2)).publishVideo("http://bucket/video.mp4", "http://bucket/thumbnail.jpeg",
+                "Title", "Description", connectedUser);
+        verify(blobStorage, never()).deleteFile(anyString());
+    }
+
+    @Test
+    public void testCompleteFailsWhenVideoWasNotAssembled() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 2, "etag-2", 3, "etag-3"));
+        when(blobStorage.completeChunkedUpload(anyString(), anyString(), anyList()))
+                .thenThrow(new FileUploadException("Failed to complete upload of video.mp4", null));
+        when(blobStorage.findObject("video.mp4")).thenReturn(Optional.empty());
+
+        assertThrows(FileUploadException.class, () -> videoResumableUploadService.complete("upload-1", connectedUser));
+        verify(resumableUploadRepository, never()).delete(any());
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    public void testCompleteKeepsUploadOpenWhenChunksAreMissing() {
+        resumableUpload.getChunks().putAll(Map.of(1, "etag-1", 3, "etag-3"));
+
+        assertThrows(UploadVerificationException.class, () ->
+                videoResumableUploadService.complete("upload-1", connectedUser));
+        verify(resumableUploadRepository, never()).delete(any());
+        verifyNoInteractions(blobStorage, videoService);
+    }
+
+    @Test
+    public void testPurgeIdleAbortsUploadsAndDeletesTheirFiles() {
+        when(resumableUploadRepository.findByExpiresAtBefore(any(LocalDateTime.class), eq(Limit.of(100))))
+                .thenReturn(List.of(resumableUpload));
+
+        videoResumableUploadService.purgeIdle();
+
+        verify(blobStorage).abortChunkedUpload("video.mp4", "storage-upload");
+        verify(blobStorage).deleteFile("video.mp4");
+        verify(blobStorage).deleteFile("http://bucket/thumbnail.jpeg");
+        verify(resumableUploadRepository).deleteAll(List.of(resumableUpload));
+    }
+
+    private ResumableUploadRequest request(String videoContentType, long videoSize) {
+        var thumbnail = new MockMultipartFile("thumbnail", "thumbnail.jpg", "image/jpeg", "thumbnail".getBytes());
+        return new ResumableUploadRequest(thumbnail, "Title", "Description", videoContentType, videoSize);
+    }
+}
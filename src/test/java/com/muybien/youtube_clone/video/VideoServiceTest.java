@@ -3,9 +3,16 @@ package com.muybien.youtube_clone.video;
 import com.muybien.youtube_clone.comment.Comment;
 import com.muybien.youtube_clone.handler.DatabaseException;
 import com.muybien.youtube_clone.handler.FileDeletionForbiddenException;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.InvalidCursorException;
 import com.muybien.youtube_clone.handler.InvalidFileUrlException;
+import com.muybien.youtube_clone.handler.InvalidVideoIdsException;
+import com.muybien.youtube_clone.handler.InvalidVideoMetadataException;
 import com.muybien.youtube_clone.handler.VideoNotFoundException;
-import com.muybien.youtube_clone.s3aws.S3Service;
+import com.muybien.youtube_clone.reaction.ReactionType;
+import com.muybien.youtube_clone.reaction.VideoReactionRepository;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import com.muybien.youtube_clone.storage.ContentStore;
 import com.muybien.youtube_clone.user.User;
 import com.muybien.youtube_clone.user.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,31 +21,43 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.Authentication;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class VideoServiceTest {
 
     @Mock private UserService userService;
-    @Mock private S3Service s3Service;
+    @Mock private BlobStorage blobStorage;
+    @Mock private ContentStore contentStore;
     @Mock private VideoRepository videoRepository;
-    @Mock private VideoDTOMapper videoDTOMapper;
+    @Mock private VideoDetailsCache videoDetailsCache;
+    @Mock private VideoCardsCache videoCardsCache;
+    @Mock private VideoReactionRepository videoReactionRepository;
+    @Mock private TransactionTemplate transactionTemplate;
     @Mock private Authentication connectedUser;
     @InjectMocks private VideoService videoService;
 
     private final int videoId = 1;
+    private final int userId = 7;
     private Video video;
     private VideoDTO videoDTO;
+    private VideoCounters counters;
 
     @BeforeEach
     public void setUp() {
@@ -80,191 +99,279 @@ public class VideoServiceTest {
                 .disLikes(video.getDisLikes())
                 .build();
 
-        when(videoDTOMapper.toDTO(video)).thenReturn(videoDTO);
+        when(videoDetailsCache.get(videoId)).thenReturn(videoDTO);
+        when(videoDetailsCache.getSummary(videoId)).thenReturn(videoDTO);
+
+        counters = new VideoCounters(new AtomicInteger(10), new AtomicInteger(3), new AtomicInteger(1));
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(userId).build());
+        when(videoRepository.lockLiveById(videoId)).thenReturn(Optional.of(videoId));
+        when(videoRepository.adjustReactionCounters(anyInt(), anyInt(), anyInt())).thenReturn(1);
+        when(videoRepository.findCountersById(videoId)).thenReturn(Optional.of(counters));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
-    public void testGetVideoDetailsWhenSuccessAndUserIsAuthenticated() {
-        when(userService.isUserAuthenticated(any())).thenReturn(true);
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-
-        VideoDTO result = videoService.getVideoDetails(videoId, connectedUser);
+    public void testGetVideoDetailsWhenSuccess() {
+        VideoDTO result = videoService.getVideoDetails(videoId, VideoFields.ALL);
 
         assertEquals(videoDTO, result);
-        verify(userService, times(1)).addVideoToWatchedVideosHistory(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
+        verify(videoDetailsCache, times(1)).get(videoId);
+        verify(videoDetailsCache, never()).getSummary(anyInt());
+        verify(videoRepository, never()).save(any());
+        verify(userService, never()).addVideoToWatchedVideosHistory(anyInt(), any());
     }
 
     @Test
-    public void testGetVideoDetailsWhenSuccessAndUserIsNotAuthenticated() {
-        when(userService.isUserAuthenticated(any())).thenReturn(false);
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
+    public void testGetVideoDetailsWhenFailure() {
+        when(videoDetailsCache.get(videoId)).thenThrow(new VideoNotFoundException("Video not found"));
 
-        VideoDTO result = videoService.getVideoDetails(videoId, connectedUser);
+        assertThrows(VideoNotFoundException.class, () -> videoService.getVideoDetails(videoId, VideoFields.ALL));
+
+        verify(videoRepository, never()).save(any());
+    }
+
+    @Test
+    public void testGetVideoDetailsWhenCommentsAreNotRequested() {
+        VideoDTO result = videoService.getVideoDetails(videoId, VideoFields.parse("title,likes"));
 
         assertEquals(videoDTO, result);
-        verify(userService, never()).addVideoToWatchedVideosHistory(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
+        verify(videoDetailsCache, times(1)).getSummary(videoId);
+        verify(videoDetailsCache, never()).get(anyInt());
     }
 
     @Test
-    public void testGetVideoDetailsWhenFailure() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.empty());
+    public void testIncrementVideoLike() {
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.empty());
 
-        assertThrows(VideoNotFoundException.class, () -> videoService.getVideoDetails(videoId, connectedUser));
+        VideoDTO result = videoService.incrementVideoLike(videoId, VideoFields.ALL, connectedUser);
 
-        verify(userService, never()).addVideoToWatchedVideosHistory(videoId, connectedUser);
+        assertEquals(counters.likes(), result.likes());
+        var inOrder = inOrder(videoRepository, videoReactionRepository);
+        inOrder.verify(videoRepository).lockLiveById(videoId);
+        inOrder.verify(videoReactionRepository).findState(userId, videoId);
+        verify(videoReactionRepository, times(1)).upsertState(userId, videoId, "LIKE");
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, 1, 0);
         verify(videoRepository, never()).save(any());
+        verify(videoCardsCache, times(1)).evict(videoId);
+        verify(videoDetailsCache, times(1)).evictAfterCommit(videoId);
     }
 
     @Test
-    public void testIncrementVideoLike() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(false);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(false);
+    public void testIncrementVideoLikeWhenCommentsAreNotRequested() {
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.empty());
 
-        VideoDTO result = videoService.incrementVideoLike(videoId, connectedUser);
+        VideoDTO result = videoService.incrementVideoLike(videoId, VideoFields.parse("likes"), connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).addVideoToLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToDisLikedVideos(videoId, connectedUser);
+        assertEquals(counters.likes(), result.likes());
+        verify(videoDetailsCache, times(1)).getSummary(videoId);
+        verify(videoDetailsCache, never()).get(anyInt());
     }
 
     @Test
     public void testIncrementVideoLikeWhenVideoAlreadyLiked() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(true);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(false);
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.of(ReactionType.LIKE));
 
-        VideoDTO result = videoService.incrementVideoLike(videoId, connectedUser);
+        videoService.incrementVideoLike(videoId, VideoFields.ALL, connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).removeVideoFromLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToLikedVideos(videoId, connectedUser);
-        verify(userService, never()).addVideoToDisLikedVideos(videoId, connectedUser);
+        verify(videoReactionRepository, times(1)).deleteByUserIdAndVideoId(userId, videoId);
+        verify(videoReactionRepository, never()).upsertState(anyInt(), anyInt(), anyString());
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, -1, 0);
     }
 
     @Test
     public void testIncrementVideoLikeWhenVideoAlreadyDisliked() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(false);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(true);
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.of(ReactionType.DISLIKE));
 
-        VideoDTO result = videoService.incrementVideoLike(videoId, connectedUser);
+        videoService.incrementVideoLike(videoId, VideoFields.ALL, connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).addVideoToLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToDisLikedVideos(videoId, connectedUser);
-        verify(userService, never()).removeVideoFromLikedVideos(videoId, connectedUser);
+        verify(videoReactionRepository, times(1)).upsertState(userId, videoId, "LIKE");
+        verify(videoReactionRepository, never()).deleteByUserIdAndVideoId(anyInt(), anyInt());
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, 1, -1);
     }
 
     @Test
     public void testIncrementVideoDisLike() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(false);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(false);
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.empty());
 
-        VideoDTO result = videoService.incrementVideoDisLike(videoId, connectedUser);
+        VideoDTO result = videoService.incrementVideoDisLike(videoId, VideoFields.ALL, connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).addVideoToDisLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToLikedVideos(videoId, connectedUser);
-        verify(userService, never()).removeVideoFromDisLikedVideos(videoId, connectedUser);
+        assertEquals(counters.disLikes(), result.disLikes());
+        verify(videoReactionRepository, times(1)).upsertState(userId, videoId, "DISLIKE");
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, 0, 1);
+        verify(videoDetailsCache, times(1)).evictAfterCommit(videoId);
     }
 
     @Test
     public void testIncrementVideoDisLikeWhenVideoAlreadyDisliked() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(false);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(true);
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.of(ReactionType.DISLIKE));
 
-        VideoDTO result = videoService.incrementVideoDisLike(videoId, connectedUser);
+        videoService.incrementVideoDisLike(videoId, VideoFields.ALL, connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).removeVideoFromDisLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToLikedVideos(videoId, connectedUser);
-        verify(userService, never()).addVideoToDisLikedVideos(videoId, connectedUser);
+        verify(videoReactionRepository, times(1)).deleteByUserIdAndVideoId(userId, videoId);
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, 0, -1);
     }
 
     @Test
     public void testIncrementVideoDisLikeWhenVideoAlreadyLiked() {
-        when(videoRepository.findById(videoId)).thenReturn(Optional.of(video));
-        when(userService.isVideoLikedByUser(videoId, connectedUser)).thenReturn(true);
-        when(userService.isVideoDisLikedByUser(videoId, connectedUser)).thenReturn(false);
+        when(videoReactionRepository.findState(userId, videoId)).thenReturn(Optional.of(ReactionType.LIKE));
 
-        VideoDTO result = videoService.incrementVideoDisLike(videoId, connectedUser);
+        videoService.incrementVideoDisLike(videoId, VideoFields.ALL, connectedUser);
 
-        assertEquals(videoDTO, result);
-        verify(userService, times(1)).removeVideoFromLikedVideos(videoId, connectedUser);
-        verify(userService, times(1)).addVideoToDisLikedVideos(videoId, connectedUser);
-        verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).save(video);
-        verify(userService, never()).addVideoToLikedVideos(videoId, connectedUser);
-        verify(userService, never()).removeVideoFromDisLikedVideos(videoId, connectedUser);
+        verify(videoReactionRepository, times(1)).upsertState(userId, videoId, "DISLIKE");
+        verify(videoRepository, times(1)).adjustReactionCounters(videoId, -1, 1);
     }
 
     @Test
-    public void testUploadVideoWhenSuccess() {
-        var videoFile = mock(MultipartFile.class);
-        var thumbnailFile = mock(MultipartFile.class);
+    public void testIncrementVideoLikeWhenVideoDoesNotExist() {
+        when(videoRepository.lockLiveById(videoId)).thenReturn(Optional.empty());
 
-        when(s3Service.uploadFileAndFetchFileUrl(thumbnailFile)).thenReturn("http://thumbnail-url.com");
-        when(s3Service.uploadFileAndFetchFileUrl(videoFile)).thenReturn("http://video-url.com");
+        assertThrows(VideoNotFoundException.class, () -> videoService.incrementVideoLike(videoId, VideoFields.ALL, connectedUser));
+
+        verifyNoInteractions(videoReactionRepository);
+
+        verify(videoDetailsCache, never()).evictAfterCommit(anyInt());
+    }
+
+    @Test
+    public void testPublishVideoWhenSuccess() {
         when(videoRepository.save(any(Video.class))).thenReturn(video);
 
-        VideoUploadResponse result = videoService.uploadVideo(
-                videoFile, thumbnailFile, "Title", "Description", connectedUser);
+        VideoUploadResponse result = videoService.publishVideo(
+                "http://video-url.com", "http://thumbnail-url.com", "Title", "Description", connectedUser);
+
+        assertEquals("http://video-url.com", result.videoUrl());
+        verify(videoRepository, times(1)).save(any(Video.class));
+        verify(userService, times(1)).sendNotificationToSubscribers(connectedUser);
+
+    }
+
+    @Test
+    public void testUploadVideoStreamSplitsThumbnailFromVideo() throws Exception {
+        var request = streamUploadRequest(5);
+        var body = new ByteArrayInputStream("thumbvideo content".getBytes());
+
+        when(blobStorage.uploadBytesAsync(any(byte[].class), eq("image/jpeg")))
+                .thenReturn(CompletableFuture.completedFuture("http://thumbnail-url.com"));
+        when(blobStorage.uploadStreamAndFetchFileUrl(any(InputStream.class), eq("video/mp4")))
+                .thenAnswer(invocation -> {
+                    InputStream video = invocation.getArgument(0);
+                    assertEquals("video content", new String(video.readAllBytes()));
+                    return "http://video-url.com";
+                });
+
+        VideoUploadResponse result = videoService.uploadVideoStream(request, body, connectedUser);
 
         assertEquals("http://video-url.com", result.videoUrl());
-        verify(s3Service, times(1)).uploadFileAndFetchFileUrl(videoFile);
-        verify(s3Service, times(1)).uploadFileAndFetchFileUrl(thumbnailFile);
+        verify(blobStorage).uploadBytesAsync("thumb".getBytes(), "image/jpeg");
+        verify(transactionTemplate).execute(any());
         verify(videoRepository, times(1)).save(any(Video.class));
         verify(userService, times(1)).sendNotificationToSubscribers(connectedUser);
+    }
 
+    @Test
+    public void testUploadVideoStreamWhenBodyEndsInsideThumbnail() {
+        var request = streamUploadRequest(100);
+        var body = new ByteArrayInputStream("short".getBytes());
+
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoService.uploadVideoStream(request, body, connectedUser));
+        verifyNoInteractions(blobStorage);
     }
 
     @Test
-    public void testUploadVideoWhenInvalidReturnedUrl() {
-        var videoFile = mock(MultipartFile.class);
-        var thumbnailFile = mock(MultipartFile.class);
+    public void testUploadVideoStreamWhenTitleIsBlank() {
+        var request = new VideoStreamUploadRequest(" ", "Description", "video/mp4", "image/jpeg", 5);
+
+        assertThrows(InvalidVideoMetadataException.class, () ->
+                videoService.uploadVideoStream(request, InputStream.nullInputStream(), connectedUser));
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testUploadVideoStreamWhenThumbnailIsNotAnImage() {
+        for (String type : new String[] {"text/html", "image/svg+xml", "not a type"}) {
+            var request = new VideoStreamUploadRequest("Title", "Description", "video/mp4", type, 5);
+
+            assertThrows(InvalidVideoMetadataException.class, () ->
+                    videoService.uploadVideoStream(request, InputStream.nullInputStream(), connectedUser));
+        }
+        verifyNoInteractions(blobStorage);
+    }
+
+    @Test
+    public void testUploadVideoStreamDeletesThumbnailWhenVideoUploadFails() {
+        var request = streamUploadRequest(5);
+        var body = new ByteArrayInputStream("thumbvideo content".getBytes());
+
+        when(blobStorage.uploadBytesAsync(any(byte[].class), anyString()))
+                .thenReturn(CompletableFuture.completedFuture("http://thumbnail-url.com"));
+        when(blobStorage.uploadStreamAndFetchFileUrl(any(InputStream.class), anyString()))
+                .thenThrow(new FileUploadException("File exceeds the maximum upload size.", null));
+
+        assertThrows(FileUploadException.class, () ->
+                videoService.uploadVideoStream(request, body, connectedUser));
+        verify(blobStorage).deleteFile("http://thumbnail-url.com");
+        verify(videoRepository, never()).save(any(Video.class));
+    }
 
-        when(s3Service.uploadFileAndFetchFileUrl(videoFile)).thenReturn("hs:/invalid-url.com");
-        when(s3Service.uploadFileAndFetchFileUrl(thumbnailFile)).thenReturn("hs:/invalid-url.com");
+    private VideoStreamUploadRequest streamUploadRequest(long thumbnailLength) {
+        return VideoStreamUploadRequest.builder()
+                .title("Title")
+                .description("Description")
+                .videoContentType("video/mp4")
+                .thumbnailContentType("image/jpeg")
+                .thumbnailLength(thumbnailLength)
+                .build();
+    }
 
+    @Test
+    public void testPublishVideoWhenInvalidUrl() {
         assertThrows(InvalidFileUrlException.class, () ->
-                videoService.uploadVideo(videoFile, thumbnailFile, "Title", "Description", connectedUser));
+                videoService.publishVideo("hs:/invalid-url.com", "hs:/invalid-url.com", "Title", "Description", connectedUser));
 
         verify(videoRepository, never()).save(any(Video.class));
     }
 
     @Test
-    public void testUploadVideoWhenDatabaseException() {
+    public void testPublishVideoWhenDatabaseException() {
         String videoUrl = "http://video-url.com";
         String thumbnailUrl = "http://thumbnail-url.com";
-        var videoFile = mock(MultipartFile.class);
-        var thumbnailFile = mock(MultipartFile.class);
-
-        when(s3Service.uploadFileAndFetchFileUrl(videoFile)).thenReturn("http://video-url.com");
-        when(s3Service.uploadFileAndFetchFileUrl(thumbnailFile)).thenReturn("http://thumbnail-url.com");
 
         doThrow(new DataAccessException("Database error") {}).when(videoRepository).save(any(Video.class));
-        videoService.deleteVideoAndThumbnailFromS3(videoUrl, thumbnailUrl);
 
         assertThrows(DatabaseException.class, () ->
-                videoService.uploadVideo(videoFile, thumbnailFile, "Title", "Description", connectedUser));
-        verify(s3Service, times(2)).deleteFileFromS3(videoUrl); // 2 times because bc video and thumb delete separately
+                videoService.publishVideo(videoUrl, thumbnailUrl, "Title", "Description", connectedUser));
+        verify(contentStore, times(1)).release(videoUrl, thumbnailUrl);
+    }
+
+    @Test
+    public void testPublishVideoReleasesFilesWhenNotifyingFailsAfterSave() {
+        when(videoRepository.save(any(Video.class))).thenReturn(video);
+        doThrow(new IllegalStateException("Subscriber lookup failed"))
+                .when(userService).sendNotificationToSubscribers(connectedUser);
+
+        assertThrows(IllegalStateException.class, () -> videoService.publishVideo(
+                "http://video-url.com", "http://thumbnail-url.com", "Title", "Description", connectedUser));
+
+        verify(transactionTemplate).execute(any());
+        verify(videoRepository).save(any(Video.class));
+        verify(contentStore).release("http://video-url.com", "http://thumbnail-url.com");
+    }
+
+    @Test
+    public void testPublishVideoKeepsFilesWhenCallerOwnsTransaction() {
+        doThrow(new DataAccessException("Database error") {}).when(videoRepository).save(any(Video.class));
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(DatabaseException.class, () -> videoService.publishVideo(
+                    "http://video-url.com", "http://thumbnail-url.com", "Title", "Description", connectedUser));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        verify(contentStore, never()).release(any(String[].class));
     }
 
     @Test
@@ -274,10 +381,28 @@ public class VideoServiceTest {
         when(videoRepository.findById(videoId)).thenReturn(Optional.ofNullable(video));
         when(connectedUser.getPrincipal()).thenReturn(user);
 
+        when(videoRepository.markDeleted(eq(videoId), any(LocalDateTime.class))).thenReturn(1);
+
         videoService.deleteVideo(videoId, connectedUser);
 
         verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, times(1)).delete(video);
+        verify(videoRepository, never()).delete(any(Video.class));
+        verify(contentStore, times(1)).releaseLater("http://video-url.com", "http://thumbnail-url.com");
+        verify(contentStore, never()).release(any(String[].class));
+        verify(videoDetailsCache, times(1)).evict(videoId);
+        verify(videoCardsCache, times(1)).evict(videoId);
+    }
+
+    @Test
+    public void testDeleteVideoAlreadyDeletedConcurrently() {
+        var user =  User.builder().email("joe.smith@gmail.com").build();
+
+        when(videoRepository.findById(videoId)).thenReturn(Optional.ofNullable(video));
+        when(connectedUser.getPrincipal()).thenReturn(user);
+        when(videoRepository.markDeleted(eq(videoId), any(LocalDateTime.class))).thenReturn(0);
+
+        assertThrows(VideoNotFoundException.class, () -> videoService.deleteVideo(videoId, connectedUser));
+        verify(contentStore, never()).releaseLater(any(String[].class));
     }
 
     @Test
@@ -291,18 +416,76 @@ public class VideoServiceTest {
                 videoService.deleteVideo(videoId, connectedUser));
 
         verify(videoRepository, times(1)).findById(videoId);
-        verify(videoRepository, never()).delete(video);
+        verify(videoRepository, never()).markDeleted(anyInt(), any());
+        verify(videoDetailsCache, never()).evict(anyInt());
+    }
+
+    @Test
+    public void testFindVideoCards() {
+        List<Integer> ids = List.of(3, 1, 2);
+        List<VideoCardDTO> cards = ids.stream().map(id -> VideoCardDTO.builder().id(id).build()).toList();
+        when(videoCardsCache.getAll(ids)).thenReturn(cards);
+
+        assertEquals(cards, videoService.findVideoCards(ids));
+    }
+
+    @Test
+    public void testFindVideoCardsWhenNoIdsGiven() {
+        assertEquals(List.of(), videoService.findVideoCards(List.of()));
+
+        verifyNoInteractions(videoCardsCache);
+    }
+
+    @Test
+    public void testFindVideoCardsWhenTooManyIdsGiven() {
+        List<Integer> ids = IntStream.rangeClosed(1, VideoService.MAX_PAGE_SIZE + 1).boxed().toList();
+
+        assertThrows(InvalidVideoIdsException.class, () -> videoService.findVideoCards(ids));
+
+        verifyNoInteractions(videoCardsCache);
     }
 
     @Test
     public void findAllVideos() {
-        when(videoRepository.findAll()).thenReturn(List.of(video));
-        when(videoDTOMapper.toDTO(video)).thenReturn(videoDTO);
+        var newer = VideoCardDTO.builder().id(2).videoViewCounter(new AtomicInteger(5))
+                .createdDate(LocalDateTime.of(2024, 1, 2, 10, 0)).build();
+        var older = VideoCardDTO.builder().id(1).videoViewCounter(new AtomicInteger(9))
+                .createdDate(LocalDateTime.of(2024, 1, 1, 10, 0)).build();
+
+        when(videoRepository.findNewestCards(any(), eq(Integer.MAX_VALUE), eq(Limit.of(2))))
+                .thenReturn(List.of(newer, older));
+
+        VideoCardPage result = videoService.findAllVideos(null, 1, VideoSort.NEWEST);
+
+        assertEquals(List.of(newer), result.videos());
+        assertNotNull(result.nextCursor());
+
+        when(videoRepository.findNewestCards(newer.createdDate(), newer.id(), Limit.of(2)))
+                .thenReturn(List.of(older));
+
+        VideoCardPage nextPage = videoService.findAllVideos(result.nextCursor(), 1, VideoSort.NEWEST);
+
+        assertEquals(List.of(older), nextPage.videos());
+        assertNull(nextPage.nextCursor());
+    }
+
+    @Test
+    public void findAllVideosCapsPageSize() {
+        videoService.findAllVideos(null, 10_000, VideoSort.MOST_VIEWED);
+
+        verify(videoRepository, times(1)).findMostViewedCards(
+                any(AtomicInteger.class), eq(Integer.MAX_VALUE), eq(Limit.of(VideoService.MAX_PAGE_SIZE + 1)));
+    }
+
+    @Test
+    public void findAllVideosWhenCursorIsInvalid() {
+        assertThrows(InvalidCursorException.class, () ->
+                videoService.findAllVideos("not-a-cursor", 10, VideoSort.NEWEST));
 
-        List<VideoDTO> result = videoService.findAllVideos();
+        String newestCursor = VideoCursor.after(VideoSort.NEWEST, VideoCardDTO.builder().id(1)
+                .videoViewCounter(new AtomicInteger(0)).createdDate(LocalDateTime.now()).build()).encode();
 
-        assertEquals(1, result.size());
-        assertEquals(videoDTO, result.getFirst());
-        verify(videoRepository, times(1)).findAll();
+        assertThrows(InvalidCursorException.class, () ->
+                videoService.findAllVideos(newestCursor, 10, VideoSort.MOST_VIEWED));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.MediaNotFoundException;
+import com.muybien.youtube_clone.storage.BlobInfo;
+import com.muybien.youtube_clone.storage.BlobStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoStreamServiceTest {
+
+    private static final String VIDEO_URL = "http://bucket/video.mp4";
+    private static final String THUMBNAIL_URL = "http://bucket/thumbnail.png";
+    private static final String VARIANT_URL = "http://bucket/thumbnail-320.jpeg";
+    private static final byte[] CONTENT = "0123456789".getBytes();
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T12:00:00.250Z");
+
+    @Mock private VideoService videoService;
+    @Mock private BlobStorage blobStorage;
+
+    private SimpleMeterRegistry meterRegistry;
+    private VideoStreamService videoStreamService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        videoStreamService = new VideoStreamService(videoService, blobStorage, meterRegistry);
+
+        when(videoService.getVideoDetails(eq(1), any(VideoFields.class)))
+                .thenReturn(VideoDTO.builder().videoUrl(VIDEO_URL).thumbnailUrl(THUMBNAIL_URL)
+                        .thumbnailVariants(Map.of(320, VARIANT_URL)).build());
+        when(blobStorage.describe(VIDEO_URL))
+                .thenReturn(Optional.of(new BlobInfo(CONTENT.length, "\"v1\"", LAST_MODIFIED)));
+        doAnswer(invocation -> {
+            int start = Math.toIntExact(invocation.<Long>getArgument(1));
+            int length = Math.toIntExact(invocation.<Long>getArgument(2));
+            invocation.<WritableByteChannel>getArgument(3).write(ByteBuffer.wrap(CONTENT, start, length));
+            return null;
+        }).when(blobStorage).transferRange(eq(VIDEO_URL), anyLong(), anyLong(), any(WritableByteChannel.class));
+    }
+
+    @Test
+    public void testStreamWholeFileWithoutRange() throws Exception {
+        var response = videoStreamService.stream(1, new HttpHeaders(), false);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"v1\"", response.getHeaders().getETag());
+        assertEquals(MediaType.parseMediaType("video/mp4"), response.getHeaders().getContentType());
+        assertEquals(10, response.getHeaders().getContentLength());
+        assertEquals("0123456789", body(response));
+        assertEquals(1, meterRegistry.counter("video.stream.requests", "file", "video", "status", "200").count());
+    }
+
+    @Test
+    public void testStreamThumbnailVariantOfRequestedWidth() throws Exception {
+        when(blobStorage.describe(VARIANT_URL)).thenReturn(Optional.of(new BlobInfo(3, "\"t1\"", LAST_MODIFIED)));
+
+        var response = videoStreamService.streamThumbnailVariant(1, 320, new HttpHeaders(), true);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"t1\"", response.getHeaders().getETag());
+        assertThrows(MediaNotFoundException.class, () ->
+                videoStreamService.streamThumbnailVariant(1, 640, new HttpHeaders(), false));
+    }
+
+    @Test
+    public void testStreamRequestedRangeOnly() throws Exception {
+        var response = videoStreamService.stream(1, rangeHeaders("bytes=2-5"), false);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals("2345", body(response));
+        verify(blobStorage).transferRange(eq(VIDEO_URL), eq(2L), eq(4L), any(WritableByteChannel.class));
+        assertEquals(4, meterRegistry.summary("video.stream.bytes", "file", "video").totalAmount());
+    }
+
+    @Test
+    public void testStreamOpenAndSuffixRanges() throws Exception {
+        assertEquals("789", body(videoStreamService.stream(1, rangeHeaders("bytes=7-"), false)));
+        assertEquals("89", body(videoStreamService.stream(1, rangeHeaders("bytes=-2"), false)));
+        assertEquals("56789", body(videoStreamService.stream(1, rangeHeaders("bytes=5-100"), false)));
+    }
+
+    @Test
+    public void testStreamUnsatisfiableRange() throws Exception {
+        var response = videoStreamService.stream(1, rangeHeaders("bytes=10-20"), false);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(blobStorage, never()).transferRange(anyString(), anyLong(), anyLong(), any());
+        assertEquals(1, meterRegistry.counter("video.stream.requests", "file", "video", "status", "416").count());
+    }
+
+    @Test
+    public void testStreamIgnoresRangeForOtherVersionOrSeveralRanges() throws Exception {
+        var staleETag = rangeHeaders("bytes=2-5");
+        staleETag.set(HttpHeaders.IF_RANGE, "\"v0\"");
+        var staleDate = rangeHeaders("bytes=2-5");
+        staleDate.setZonedDateTime(HttpHeaders.IF_RANGE, ZonedDateTime.parse("2023-12-31T12:00:00Z"));
+
+        assertEquals(HttpStatus.OK, videoStreamService.stream(1, staleETag, false).getStatusCode());
+        assertEquals(HttpStatus.OK, videoStreamService.stream(1, staleDate, false).getStatusCode());
+        assertEquals(HttpStatus.OK, videoStreamService.stream(1, rangeHeaders("bytes=0-1,4-5"), false).getStatusCode());
+        assertEquals(HttpStatus.OK, videoStreamService.stream(1, rangeHeaders("lines=1-2"), false).getStatusCode());
+    }
+
+    @Test
+    public void testStreamHonorsMatchingIfRange() throws Exception {
+        var matchingETag = rangeHeaders("bytes=2-5");
+        matchingETag.set(HttpHeaders.IF_RANGE, "\"v1\"");
+        var matchingDate = rangeHeaders("bytes=2-5");
+        matchingDate.setZonedDateTime(HttpHeaders.IF_RANGE, ZonedDateTime.parse("2024-01-01T12:00:00Z"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, videoStreamService.stream(1, matchingETag, false).getStatusCode());
+        assertEquals(HttpStatus.PARTIAL_CONTENT, videoStreamService.stream(1, matchingDate, false).getStatusCode());
+    }
+
+    @Test
+    public void testStreamLooksUpFileOnceAndSkipsBodyForHead() throws Exception {
+        var response = videoStreamService.stream(1, rangeHeaders("bytes=0-3"), true);
+        videoStreamService.stream(1, new HttpHeaders(), true);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(blobStorage, times(1)).describe(VIDEO_URL);
+        verify(blobStorage, never()).transferRange(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void testStreamThumbnail() throws Exception {
+        when(blobStorage.describe(THUMBNAIL_URL))
+                .thenReturn(Optional.of(new BlobInfo(4, "\"t1\"", LAST_MODIFIED)));
+        doAnswer(invocation -> invocation.<WritableByteChannel>getArgument(3).write(ByteBuffer.wrap("abcd".getBytes())))
+                .when(blobStorage).transferRange(eq(THUMBNAIL_URL), eq(0L), eq(4L), any(WritableByteChannel.class));
+
+        var response = videoStreamService.streamThumbnail(1, new HttpHeaders(), false);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        assertEquals("abcd", body(response));
+        assertEquals(1, meterRegistry.counter("video.stream.requests", "file", "thumbnail", "status", "200").count());
+    }
+
+    @Test
+    public void testStreamWhenFileIsMissing() {
+        when(blobStorage.describe(VIDEO_URL)).thenReturn(Optional.empty());
+
+        assertThrows(MediaNotFoundException.class, () -> videoStreamService.stream(1, new HttpHeaders(), false));
+    }
+
+    private HttpHeaders rangeHeaders(String range) {
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, range);
+        return headers;
+    }
+
+    private String body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        var out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString();
+    }
+}
@@ -4,6 +4,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.muybien.youtube_clone.comment.CommentRequest;
 import com.muybien.youtube_clone.comment.CommentService;
 import com.muybien.youtube_clone.config.JwtService;
+import com.muybien.youtube_clone.config.UrlSigner;
+import com.muybien.youtube_clone.handler.ExportBusyException;
+import com.muybien.youtube_clone.handler.FileUploadException;
+import com.muybien.youtube_clone.handler.IngestQueueFullException;
 import com.muybien.youtube_clone.token.TokenRepository;
 import com.muybien.youtube_clone.user.User;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,29 +15,43 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(VideoUserController.class)
+@WebMvcTest(value = VideoUserController.class, properties = "spring.servlet.multipart.max-file-size=1KB")
+@Import({PlaybackUrls.class, UrlSigner.class})
 public class VideoUserControllerTest {
 
     @MockBean private VideoService videoService;
     @MockBean private CommentService commentService;
+    @MockBean private VideoExportService videoExportService;
+    @MockBean private VideoIngestService videoIngestService;
+    @MockBean private VideoPresignedUploadService videoPresignedUploadService;
+    @MockBean private VideoResumableUploadService videoResumableUploadService;
     @MockBean private User user;
     @MockBean private Authentication connectedUser;
     @MockBean private JwtService jwtService;
@@ -45,6 +63,7 @@ public class VideoUserControllerTest {
     private MockMultipartFile videoFile;
     private MockMultipartFile thumbnailFile;
     private VideoUploadResponse videoUploadResponse;
+    private VideoIngestStatus ingestStatus;
     private Video video;
 
     @BeforeEach
@@ -58,6 +77,11 @@ public class VideoUserControllerTest {
                 MediaType.IMAGE_JPEG_VALUE, "thumbnail content".getBytes());
 
         videoUploadResponse = new VideoUploadResponse("http://mockurl.com");
+        ingestStatus = VideoIngestStatus.builder()
+                .jobId("job-1")
+                .stage(VideoIngestStage.QUEUED)
+                .totalBytes(30)
+                .build();
 
         video = Video.builder()
                 .user(user)
@@ -82,15 +106,14 @@ public class VideoUserControllerTest {
                 .disLikes(video.getDisLikes())
                 .build();
 
-        when(videoService.incrementVideoLike(anyInt(), any(Authentication.class))).thenReturn(videoDTO);
-        when(videoService.incrementVideoDisLike(anyInt(), any(Authentication.class))).thenReturn(videoDTO);
+        when(videoService.incrementVideoLike(anyInt(), any(VideoFields.class), any(Authentication.class))).thenReturn(videoDTO);
+        when(videoService.incrementVideoDisLike(anyInt(), any(VideoFields.class), any(Authentication.class))).thenReturn(videoDTO);
     }
 
     @Test
     @WithMockUser(username = "user")
     public void testUploadVideoWhenUserIsAuthenticated() throws Exception {
-        when(videoService.uploadVideo(any(MultipartFile.class), any(MultipartFile.class),
-                anyString(), anyString(), any(Authentication.class))).thenReturn(videoUploadResponse);
+        when(videoIngestService.submit(any(VideoUploadRequest.class), any(Authentication.class))).thenReturn(ingestStatus);
 
         mockMvc.perform(MockMvcRequestBuilders.multipart("/videos")
                         .file(videoFile)
@@ -99,14 +122,162 @@ public class VideoUserControllerTest {
                         .param("description", video.getDescription())
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.MULTIPART_FORM_DATA))
-                .andExpect(status().isCreated());
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/videos/ingest/job-1"))
+                .andExpect(jsonPath("$.jobId").value("job-1"))
+                .andExpect(jsonPath("$.stage").value("QUEUED"));
     }
 
     @Test
-    public void testUploadVideoWhenUserIsNotAuthenticated() throws Exception {
-        when(videoService.uploadVideo(any(MultipartFile.class), any(MultipartFile.class),
-                anyString(), anyString(), any(Authentication.class))).thenReturn(videoUploadResponse);
+    @WithMockUser(username = "user")
+    public void testGetUploadStatus() throws Exception {
+        when(videoIngestService.getStatus(eq("job-1"), any(Authentication.class))).thenReturn(ingestStatus);
+
+        mockMvc.perform(get("/videos/ingest/{jobId}", "job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalBytes").value(30));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testUploadVideoWhenIngestQueueIsFull() throws Exception {
+        when(videoIngestService.submit(any(VideoUploadRequest.class), any(Authentication.class)))
+                .thenThrow(new IngestQueueFullException("Too many uploads in progress, please try again later."));
+
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/videos")
+                        .file(videoFile)
+                        .file(thumbnailFile)
+                        .param("title", video.getTitle())
+                        .param("description", video.getDescription())
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testCreatePresignedUploadValidatesChecksum() throws Exception {
+        String body = """
+                {"title": "Title", "description": "Description",
+                 "video": {"contentType": "video/mp4", "size": 1000, "checksumSha256": "not-base64"},
+                 "thumbnail": {"contentType": "image/jpeg", "size": 100, "checksumSha256": "not-base64"}}
+                """;
+
+        mockMvc.perform(post("/videos/presigned")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(videoPresignedUploadService);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testCompletePresignedUpload() throws Exception {
+        when(videoPresignedUploadService.complete(eq("upload-1"), any(Authentication.class))).thenReturn(videoUploadResponse);
+
+        mockMvc.perform(post("/videos/presigned/{uploadId}/complete", "upload-1")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.videoUrl").value("http://mockurl.com"));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testUploadResumableChunkPassesRawBody() throws Exception {
+        doAnswer(invocation -> {
+            InputStream body = invocation.getArgument(2);
+            assertEquals("chunk", new String(body.readAllBytes()));
+            return null;
+        }).when(videoResumableUploadService).uploadChunk(eq("upload-1"), eq(3), any(InputStream.class),
+                eq(5L), any(Authentication.class));
+
+        mockMvc.perform(put("/videos/resumable/{uploadId}/chunks/{chunkNumber}", "upload-1", 3)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("chunk".getBytes())
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isNoContent());
+
+        verify(videoResumableUploadService).uploadChunk(eq("upload-1"), eq(3), any(InputStream.class),
+                eq(5L), any(Authentication.class));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testUploadVideoStreamPassesRawBodyAndDecodedHeaders() throws Exception {
+        when(videoService.uploadVideoStream(any(VideoStreamUploadRequest.class), any(InputStream.class),
+                any(Authentication.class))).thenAnswer(invocation -> {
+                    InputStream body = invocation.getArgument(1);
+                    assertEquals("thumbvideo", new String(body.readAllBytes()));
+                    return videoUploadResponse;
+                });
+
+        mockMvc.perform(post("/videos/stream")
+                        .contentType("video/mp4")
+                        .header("X-Video-Title", "Caf%C3%A9%20video")
+                        .header("X-Video-Description", "Sample%20description")
+                        .header("X-Thumbnail-Length", 5)
+                        .header("X-Thumbnail-Content-Type", MediaType.IMAGE_JPEG_VALUE)
+                        .content("thumbvideo".getBytes())
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.videoUrl").value("http://mockurl.com"));
 
+        verify(videoService).uploadVideoStream(eq(VideoStreamUploadRequest.builder()
+                .title("Café video")
+                .description("Sample description")
+                .videoContentType("video/mp4")
+                .thumbnailContentType(MediaType.IMAGE_JPEG_VALUE)
+                .thumbnailLength(5)
+                .build()), any(InputStream.class), any(Authentication.class));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testUploadVideoStreamWhenHeaderIsBadlyEncoded() throws Exception {
+        mockMvc.perform(post("/videos/stream")
+                        .contentType("video/mp4")
+                        .header("X-Video-Title", "100%")
+                        .header("X-Video-Description", "Sample%20description")
+                        .header("X-Thumbnail-Length", 5)
+                        .header("X-Thumbnail-Content-Type", MediaType.IMAGE_JPEG_VALUE)
+                        .content("thumbvideo".getBytes())
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(videoService);
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testUploadVideoStreamWhenBodyIsTooLarge() throws Exception {
+        // the storage client wraps the failure raised while reading the body
+        when(videoService.uploadVideoStream(any(VideoStreamUploadRequest.class), any(InputStream.class),
+                any(Authentication.class))).thenAnswer(invocation -> {
+                    InputStream body = invocation.getArgument(1);
+                    try {
+                        body.readAllBytes();
+                    } catch (RuntimeException e) {
+                        throw new FileUploadException("Failed to upload file", e);
+                    }
+                    return videoUploadResponse;
+                });
+
+        mockMvc.perform(post("/videos/stream")
+                        .contentType("video/mp4")
+                        .header("X-Video-Title", "Title")
+                        .header("X-Video-Description", "Description")
+                        .header("X-Thumbnail-Length", 5)
+                        .header("X-Thumbnail-Content-Type", MediaType.IMAGE_JPEG_VALUE)
+                        .content(new byte[5 + 1025])
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    public void testUploadVideoWhenUserIsNotAuthenticated() throws Exception {
         mockMvc.perform(multipart("/authorized/video/upload")
                         .file(videoFile)
                         .file(thumbnailFile)
@@ -124,7 +295,22 @@ public class VideoUserControllerTest {
                         .with(SecurityMockMvcRequestPostProcessors.csrf()))
                 .andExpect(status().isOk());
 
-        verify(videoService, times(1)).incrementVideoLike(anyInt(), any(Authentication.class));
+        verify(videoService, times(1)).incrementVideoLike(anyInt(), any(VideoFields.class), any(Authentication.class));
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testLikeVideoWithFields() throws Exception {
+        mockMvc.perform(post("/videos/{videoId}/like", videoId)
+                        .param("fields", "likes,disLikes")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likes").value(0))
+                .andExpect(jsonPath("$.disLikes").value(0))
+                .andExpect(jsonPath("$.title").doesNotExist())
+                .andExpect(jsonPath("$.comments").doesNotExist());
+
+        verify(videoService, times(1)).incrementVideoLike(eq(videoId), eq(VideoFields.parse("likes,disLikes")), any(Authentication.class));
     }
 
     @Test
@@ -133,7 +319,7 @@ public class VideoUserControllerTest {
                         .with(SecurityMockMvcRequestPostProcessors.csrf()))
                 .andExpect(status().isUnauthorized());
 
-        verify(videoService, never()).incrementVideoLike(anyInt(), any(Authentication.class));
+        verify(videoService, never()).incrementVideoLike(anyInt(), any(VideoFields.class), any(Authentication.class));
     }
 
     @Test
@@ -143,7 +329,7 @@ public class VideoUserControllerTest {
                         .with(SecurityMockMvcRequestPostProcessors.csrf()))
                 .andExpect(status().isOk());
 
-        verify(videoService, times(1)).incrementVideoDisLike(anyInt(), any(Authentication.class));
+        verify(videoService, times(1)).incrementVideoDisLike(anyInt(), any(VideoFields.class), any(Authentication.class));
     }
 
     @Test
@@ -152,7 +338,7 @@ public class VideoUserControllerTest {
                         .with(SecurityMockMvcRequestPostProcessors.csrf()))
                 .andExpect(status().isUnauthorized());
 
-        verify(videoService, never()).incrementVideoDisLike(anyInt(), any(Authentication.class));
+        verify(videoService, never()).incrementVideoDisLike(anyInt(), any(VideoFields.class), any(Authentication.class));
     }
 
     @Test
@@ -177,4 +363,46 @@ public class VideoUserControllerTest {
 
         verify(commentService, never()).addComment(anyInt(), any(CommentRequest.class), any(Authentication.class));
     }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testExportVideos() throws Exception {
+        var released = new AtomicBoolean();
+        when(videoExportService.reserveExport()).thenReturn(() -> released.set(true));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("[{\"id\":1}]".getBytes());
+            return null;
+        }).when(videoExportService).exportVideoCards(any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/videos/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[{\"id\":1}]"));
+        assertTrue(released.get());
+    }
+
+    @Test
+    @WithMockUser(username = "user")
+    public void testExportVideosWhenTooManyAreRunning() throws Exception {
+        when(videoExportService.reserveExport())
+                .thenThrow(new ExportBusyException("Too many exports in progress, please try again later."));
+
+        mockMvc.perform(get("/videos/export"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+
+        verify(videoExportService, never()).exportVideoCards(any(OutputStream.class));
+    }
+
+    @Test
+    public void testExportVideosWhenUserIsNotAuthenticated() throws Exception {
+        mockMvc.perform(get("/videos/export"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(videoExportService);
+    }
 }
@@ -0,0 +1,128 @@
+package com.muybien.youtube_clone.video;
+
+import com.muybien.youtube_clone.handler.VideoNotFoundException;
+import com.muybien.youtube_clone.user.User;
+import com.muybien.youtube_clone.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VideoViewServiceTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private UserService userService;
+    @Mock private Authentication connectedUser;
+    private VideoViewService videoViewService;
+
+    private final int videoId = 1;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        videoViewService = new VideoViewService(jdbcTemplate, transactionManager, userService, Duration.ofMinutes(1), 1000, 1000);
+        when(jdbcTemplate.queryForObject(eq(VideoViewService.EXISTS_SQL), eq(Integer.class), anyInt()))
+                .thenAnswer(invocation -> invocation.<Integer>getArgument(2) < 100 ? 1 : 0);
+    }
+
+    @Test
+    public void testRecordViewWhenUserIsNotAuthenticated() {
+        when(userService.isUserAuthenticated(any())).thenReturn(false);
+
+        videoViewService.recordView(videoId, null, "10.0.0.1");
+        videoViewService.recordView(videoId, null, "10.0.0.2");
+
+        assertEquals(2, videoViewService.pendingViews(videoId));
+        verify(userService, never()).addVideoToWatchedVideosHistory(anyInt(), any());
+    }
+
+    @Test
+    public void testRecordViewWhenUserIsAuthenticated() {
+        when(userService.isUserAuthenticated(connectedUser)).thenReturn(true);
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+
+        videoViewService.recordView(videoId, connectedUser, "10.0.0.1");
+
+        assertEquals(1, videoViewService.pendingViews(videoId));
+        verify(userService, times(1)).addVideoToWatchedVideosHistory(videoId, connectedUser);
+    }
+
+    @Test
+    public void testRepeatViewsWithinWindowAreSuppressed() {
+        when(userService.isUserAuthenticated(connectedUser)).thenReturn(true);
+        when(connectedUser.getPrincipal()).thenReturn(User.builder().id(7).build());
+
+        videoViewService.recordView(videoId, connectedUser, "10.0.0.1");
+        videoViewService.recordView(videoId, connectedUser, "10.0.0.2");
+        videoViewService.recordView(2, connectedUser, "10.0.0.1");
+
+        assertEquals(1, videoViewService.pendingViews(videoId));
+        assertEquals(1, videoViewService.pendingViews(2));
+        verify(userService, times(1)).addVideoToWatchedVideosHistory(videoId, connectedUser);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushSendsBatchedRelativeUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 100; i++) {
+            String clientAddress = "10.0.0." + i;
+            executor.submit(() -> videoViewService.recordView(videoId, null, clientAddress));
+        }
+        videoViewService.recordView(2, null, "10.0.0.1");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        videoViewService.flush();
+
+        ArgumentCaptor<Collection<Map.Entry<Integer, Long>>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(
+                eq(VideoViewService.FLUSH_SQL), batch.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(List.of(Map.entry(videoId, 100L), Map.entry(2, 1L)), new ArrayList<>(batch.getValue()));
+        assertEquals(0, videoViewService.pendingViews(videoId));
+    }
+
+    @Test
+    public void testRecordViewOfUnknownVideo() {
+        assertThrows(VideoNotFoundException.class, () -> videoViewService.recordView(404, null, "10.0.0.1"));
+
+        assertEquals(0, videoViewService.pendingViews(404));
+    }
+
+    @Test
+    public void testFlushWhenNothingPending() {
+        videoViewService.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushFailureKeepsDeltasForRetry() {
+        videoViewService.recordView(videoId, null, "10.0.0.1");
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+        videoViewService.flush();
+
+        assertEquals(1, videoViewService.pendingViews(videoId));
+        verify(transactionManager).rollback(any());
+    }
+}